@@ -0,0 +1,335 @@
+package com.toomasr.sgf4j.parser;
+
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.BLACK_MOVE;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.FIRST_INDEX;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.HAS_NEXT;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.HAS_PROPERTIES;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.HAS_VARIATIONS;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.MAX_POINTS;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.NEW_STRING;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.NULL_STRING;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.NUMBER;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.NUMBERED;
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.WHITE_MOVE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the games written by {@link BinaryGameWriter}. Nothing is parsed
+ * and nothing is worked out again, the games are built straight from the
+ * stored nodes and numbers.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * try (BinaryGameReader reader = new BinaryGameReader(Files.newInputStream(path))) {
+ *   Game game;
+ *   while ((game = reader.read()) != null) {
+ *     // process game
+ *   }
+ * }
+ * </pre>
+ */
+public class BinaryGameReader implements Closeable {
+  private final InputStream in;
+  private final byte[] buf = new byte[8192];
+  private int pos = 0;
+  private int limit = 0;
+
+  private String[] strings = new String[64];
+  private int stringCount = 0;
+  private final int[] pointsPlayed = new int[MAX_POINTS * MAX_POINTS];
+  private int gamesRead = 0;
+
+  // the nodes that still have children to read, with the number of
+  // children left, the move number their children start from and their
+  // own node number and visual depth
+  private GameNode[] parents = new GameNode[16];
+  private int[] childrenLeft = new int[16];
+  private int[] nextMoveNos = new int[16];
+  private int[] nodeNos = new int[16];
+  private int[] visualDepths = new int[16];
+
+  // the nodes of the game and their numbers, stored as moveNo, nodeNo and
+  // visualDepth one after another
+  private GameNode[] nodes = new GameNode[256];
+  private int[] numbers = new int[256 * 3];
+
+  /**
+   * Creates a reader over a stream written by {@link BinaryGameWriter}.
+   * The magic bytes and the version are checked right away.
+   *
+   * @param in the stream to read from
+   * @throws SgfParseException if the stream is not in the binary format or
+   *           the version is not supported
+   */
+  public BinaryGameReader(InputStream in) {
+    this.in = in;
+    for (byte b : BinaryGameWriter.MAGIC) {
+      if (!hasMore() || buf[pos++] != b) {
+        throw new SgfParseException("Not a binary game stream");
+      }
+    }
+    int version = readVarint();
+    if (version != BinaryGameWriter.VERSION) {
+      throw new SgfParseException("Unsupported binary game version " + version);
+    }
+  }
+
+  /**
+   * Reads the next game.
+   *
+   * @return the game or null if there are no more games
+   * @throws SgfParseException if the stream ends in the middle of a game
+   */
+  public Game read() {
+    if (!hasMore()) {
+      return null;
+    }
+    stringCount = 0;
+    gamesRead++;
+
+    Game game = new Game();
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      String key = readString();
+      game.getProperties().put(key, readString());
+    }
+    game.setNoMoves(readVarint());
+    game.setNoNodes(readVarint());
+    if (readByte() == 1) {
+      MoveTimingInfo bTimings = readTimings();
+      MoveTimingInfo wTimings = readTimings();
+      game.setTimings(true, bTimings, wTimings);
+    }
+
+    game.setRootNode(readNodes());
+    return game;
+  }
+
+  /*
+   * The nodes come in depth first order, every node is a child of the
+   * deepest node that still has children left. The numbers are set once
+   * all the nodes are in place, the variations are ordered by them and
+   * setting them as we go would mix up the order they were written in.
+   */
+  private GameNode readNodes() {
+    GameNode root = null;
+    int count = 0;
+    int depth = 0;
+    do {
+      GameNode parent = depth == 0 ? null : parents[depth - 1];
+      int nextMoveNo = depth == 0 ? 1 : nextMoveNos[depth - 1];
+
+      int flags = readByte();
+      GameNode node = new GameNode(parent);
+      if ((flags & (BLACK_MOVE | WHITE_MOVE)) != 0) {
+        int x = readByte();
+        int y = readByte();
+        String point = point(x, y);
+        node.addProperty((flags & BLACK_MOVE) != 0 ? "B" : "W", point);
+        if (BinaryGameWriter.firstPlayed(pointsPlayed, gamesRead, x, y)) {
+          addString(point);
+        }
+      }
+      int moveNoDelta = 0;
+      int nodeNoDelta = 0;
+      int visualDepthDelta = 0;
+      if ((flags & NUMBERED) == 0) {
+        moveNoDelta = readSignedVarint();
+        nodeNoDelta = readSignedVarint();
+        visualDepthDelta = readSignedVarint();
+      }
+      if ((flags & HAS_PROPERTIES) != 0) {
+        int propertyCount = readVarint();
+        for (int i = 0; i < propertyCount; i++) {
+          String key = readString();
+          node.addProperty(key, readString());
+        }
+      }
+      int children = (flags & HAS_NEXT) != 0 ? 1 : 0;
+      if ((flags & HAS_VARIATIONS) != 0) {
+        children += readVarint();
+      }
+
+      int moveNo = (node.isMove() ? nextMoveNo : -1) + moveNoDelta;
+      int nodeNo = (parent == null ? 0 : nodeNos[depth - 1] + 1) + nodeNoDelta;
+      int visualDepth = (parent == null ? 0 : visualDepths[depth - 1]) + visualDepthDelta;
+      if (count == nodes.length) {
+        nodes = Arrays.copyOf(nodes, count * 2);
+        numbers = Arrays.copyOf(numbers, count * 2 * 3);
+      }
+      nodes[count] = node;
+      numbers[count * 3] = moveNo;
+      numbers[count * 3 + 1] = nodeNo;
+      numbers[count * 3 + 2] = visualDepth;
+      count++;
+
+      if (parent == null) {
+        root = node;
+      }
+      else {
+        parent.addChild(node);
+        if (--childrenLeft[depth - 1] == 0) {
+          depth--;
+        }
+      }
+
+      if (children > 0) {
+        if (depth == parents.length) {
+          int capacity = depth * 2;
+          parents = Arrays.copyOf(parents, capacity);
+          childrenLeft = Arrays.copyOf(childrenLeft, capacity);
+          nextMoveNos = Arrays.copyOf(nextMoveNos, capacity);
+          nodeNos = Arrays.copyOf(nodeNos, capacity);
+          visualDepths = Arrays.copyOf(visualDepths, capacity);
+        }
+        parents[depth] = node;
+        childrenLeft[depth] = children;
+        nextMoveNos[depth] = node.isMove() ? nextMoveNo + 1 : nextMoveNo;
+        nodeNos[depth] = nodeNo;
+        visualDepths[depth] = visualDepth;
+        depth++;
+      }
+    }
+    while (depth > 0);
+
+    for (int i = 0; i < count; i++) {
+      nodes[i].setMoveNo(numbers[i * 3]);
+      nodes[i].setNodeNo(numbers[i * 3 + 1]);
+      nodes[i].setVisualDepth(numbers[i * 3 + 2]);
+    }
+    Arrays.fill(parents, null);
+    Arrays.fill(nodes, 0, count, null);
+    return root;
+  }
+
+  private static String point(int x, int y) {
+    if (!isLetter(x) || !isLetter(y)) {
+      throw new SgfParseException("Malformed move in the binary game stream");
+    }
+    return StringCache.point(x, y);
+  }
+
+  private static boolean isLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private MoveTimingInfo readTimings() {
+    int min = readSignedVarint();
+    int max = readSignedVarint();
+    int avg = readSignedVarint();
+    int median = readSignedVarint();
+    return new MoveTimingInfo(min, max, avg, median);
+  }
+
+  private String readString() {
+    int ref = readVarint();
+    if (ref == NULL_STRING) {
+      return null;
+    }
+    if (ref == NUMBER) {
+      return BinaryGameWriter.decodeNumber(readVarlong());
+    }
+    if (ref != NEW_STRING) {
+      if (ref - FIRST_INDEX >= stringCount) {
+        throw new SgfParseException("Unknown string " + (ref - FIRST_INDEX) + " in the binary game stream");
+      }
+      return strings[ref - FIRST_INDEX];
+    }
+
+    int length = readVarint();
+    String rtrn;
+    if (limit - pos >= length) {
+      rtrn = new String(buf, pos, length, StandardCharsets.UTF_8);
+      pos += length;
+    }
+    else {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = (byte) readByte();
+      }
+      rtrn = new String(bytes, StandardCharsets.UTF_8);
+    }
+    addString(rtrn);
+    return rtrn;
+  }
+
+  private void addString(String value) {
+    if (stringCount == strings.length) {
+      strings = Arrays.copyOf(strings, stringCount * 2);
+    }
+    strings[stringCount++] = value;
+  }
+
+  private int readSignedVarint() {
+    int value = readVarint();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private int readVarint() {
+    int rtrn = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = readByte();
+      rtrn |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return rtrn;
+      }
+    }
+    throw new SgfParseException("Malformed number in the binary game stream");
+  }
+
+  private long readVarlong() {
+    long rtrn = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte();
+      rtrn |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return rtrn;
+      }
+    }
+    throw new SgfParseException("Malformed number in the binary game stream");
+  }
+
+  private int readByte() {
+    if (!hasMore()) {
+      throw new SgfParseException("Unexpected end of the binary game stream");
+    }
+    return buf[pos++] & 0xFF;
+  }
+
+  private boolean hasMore() {
+    if (pos < limit) {
+      return true;
+    }
+    try {
+      int read;
+      do {
+        read = in.read(buf, 0, buf.length);
+      }
+      while (read == 0);
+
+      if (read == -1) {
+        pos = limit = 0;
+        return false;
+      }
+      pos = 0;
+      limit = read;
+      return true;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,438 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes parsed games in a compact binary format that
+ * {@link BinaryGameReader} loads without parsing any SGF, for caching
+ * games that are read again and again. A game read back is the same game
+ * by {@link Game#isSameGame(Game)}, including the move and node numbers
+ * and the visual depths that are otherwise worked out after parsing.
+ *
+ * The format starts with {@link #MAGIC} and the {@link #VERSION}, then the
+ * games follow one after another. The numbers are varints and the strings
+ * go into a table, a key or value that has been seen before in the same
+ * game is written as its index. Values like the times left, BL[905.448],
+ * are written as numbers. Moves are written as two bytes, the points
+ * played go into the table too for the markup that repeats them, and the
+ * numbers of a node are left out when they follow from its parent.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * try (BinaryGameWriter writer = new BinaryGameWriter(Files.newOutputStream(path))) {
+ *   for (Game game : games) {
+ *     writer.write(game);
+ *   }
+ * }
+ * </pre>
+ */
+public class BinaryGameWriter implements Closeable, Flushable {
+  /** The bytes every stream starts with */
+  public static final byte[] MAGIC = { 'S', 'G', 'F', 'B' };
+  /** The version of the format written */
+  public static final int VERSION = 1;
+
+  // the flags of a node
+  static final int HAS_NEXT = 1;
+  static final int HAS_VARIATIONS = 1 << 1;
+  static final int BLACK_MOVE = 1 << 2;
+  static final int WHITE_MOVE = 1 << 3;
+  static final int NUMBERED = 1 << 4;
+  static final int HAS_PROPERTIES = 1 << 5;
+
+  // a string is written as 0 for null, 1 followed by the string when it
+  // is new, 2 followed by a decimal number and the index in the table
+  // plus 3 otherwise
+  static final int NULL_STRING = 0;
+  static final int NEW_STRING = 1;
+  static final int NUMBER = 2;
+  static final int FIRST_INDEX = 3;
+  // the digits that fit a number, the scale takes the last decimal digit
+  static final int MAX_DIGITS = 15;
+  static final int MAX_SCALE = 9;
+  // the points that fit the two bytes of a move, a-z and A-Z
+  static final int MAX_POINTS = 52;
+
+  private final OutputStream out;
+  private final byte[] buf = new byte[8192];
+  private int pos = 0;
+  private final Map<String, Integer> strings = new HashMap<>();
+  private int stringCount = 0;
+  // the points played in the current game, by the game they were last
+  // played in
+  private final int[] pointsPlayed = new int[MAX_POINTS * MAX_POINTS];
+  private int gamesWritten = 0;
+
+  /**
+   * Creates a writer that writes to a stream. The output is buffered, the
+   * magic bytes and the version are written right away.
+   *
+   * @param out the stream to write to
+   */
+  public BinaryGameWriter(OutputStream out) {
+    this.out = out;
+    for (byte b : MAGIC) {
+      writeByte(b);
+    }
+    writeVarint(VERSION);
+  }
+
+  /**
+   * Writes a game.
+   *
+   * @param game the game to write
+   * @throws RuntimeException if writing fails
+   */
+  public void write(Game game) {
+    strings.clear();
+    stringCount = 0;
+
+    writeVarint(game.getProperties().size());
+    for (Iterator<Map.Entry<String, String>> ite = game.getProperties().entrySet().iterator(); ite.hasNext();) {
+      Map.Entry<String, String> entry = ite.next();
+      writeString(entry.getKey());
+      writeString(entry.getValue());
+    }
+    writeVarint(game.getNoMoves());
+    writeVarint(game.getNoNodes());
+    if (game.getTimingInfoFound()) {
+      writeByte(1);
+      writeTimings(game.getBTimings());
+      writeTimings(game.getWTimings());
+    }
+    else {
+      writeByte(0);
+    }
+
+    writeNodes(game.getRootNode());
+    gamesWritten++;
+  }
+
+  /**
+   * Returns the number of games written so far.
+   *
+   * @return the number of games
+   */
+  public int getGamesWritten() {
+    return gamesWritten;
+  }
+
+  /*
+   * The nodes in depth first order: a node, the nodes of its line of play
+   * and then its variations. The next move number is kept on the stack
+   * with the node, the reader works out the same numbers.
+   */
+  private void writeNodes(GameNode root) {
+    Deque<GameNode> nodes = new ArrayDeque<>();
+    // the node a node hangs from, the root is its own parent here
+    Deque<GameNode> parents = new ArrayDeque<>();
+    Deque<Integer> nextMoveNos = new ArrayDeque<>();
+    nodes.push(root);
+    parents.push(root);
+    nextMoveNos.push(1);
+
+    while (!nodes.isEmpty()) {
+      GameNode node = nodes.pop();
+      GameNode parent = parents.pop();
+      int nextMoveNo = nextMoveNos.pop();
+      if (parent == node) {
+        parent = null;
+      }
+
+      int count = node.getPropertyCount();
+      int first = 0;
+      int flags = 0;
+      if (node.getNextNode() != null) {
+        flags |= HAS_NEXT;
+      }
+      if (node.hasChildren()) {
+        flags |= HAS_VARIATIONS;
+      }
+      if (count > 0 && isPoint(node.getPropertyValue(0))) {
+        String key = node.getPropertyKey(0);
+        if ("B".equals(key)) {
+          flags |= BLACK_MOVE;
+          first = 1;
+        }
+        else if ("W".equals(key)) {
+          flags |= WHITE_MOVE;
+          first = 1;
+        }
+      }
+      if (count > first) {
+        flags |= HAS_PROPERTIES;
+      }
+
+      int moveNo = node.isMove() ? nextMoveNo : -1;
+      int nodeNo = expectedNodeNo(parent);
+      int visualDepth = expectedVisualDepth(parent);
+      boolean numbered = node.getMoveNo() == moveNo && node.getNodeNo() == nodeNo && node.getVisualDepth() == visualDepth;
+      if (numbered) {
+        flags |= NUMBERED;
+      }
+
+      writeByte(flags);
+      if (first == 1) {
+        String point = node.getPropertyValue(0);
+        writeByte(point.charAt(0));
+        writeByte(point.charAt(1));
+        if (firstPlayed(pointsPlayed, gamesWritten + 1, point.charAt(0), point.charAt(1))) {
+          // the reader can't tell if the value is in the table already,
+          // both sides add the first move on a point
+          strings.put(point, stringCount++);
+        }
+      }
+      if (!numbered) {
+        writeSignedVarint(node.getMoveNo() - moveNo);
+        writeSignedVarint(node.getNodeNo() - nodeNo);
+        writeSignedVarint(node.getVisualDepth() - visualDepth);
+      }
+      if (count > first) {
+        writeVarint(count - first);
+        for (int i = first; i < count; i++) {
+          writeString(node.getPropertyKey(i));
+          writeString(node.getPropertyValue(i));
+        }
+      }
+
+      int childMoveNo = node.isMove() ? nextMoveNo + 1 : nextMoveNo;
+      if (node.hasChildren()) {
+        writeVarint(node.getChildren().size());
+        GameNode[] children = node.getChildren().toArray(new GameNode[0]);
+        for (int i = children.length - 1; i >= 0; i--) {
+          nodes.push(children[i]);
+          parents.push(node);
+          nextMoveNos.push(childMoveNo);
+        }
+      }
+      if (node.getNextNode() != null) {
+        nodes.push(node.getNextNode());
+        parents.push(node);
+        nextMoveNos.push(childMoveNo);
+      }
+    }
+  }
+
+  /*
+   * The numbers Game.postProcess gives, the moves are numbered along the
+   * lines of play and the nodes of a line are as deep as the first one.
+   * Only the numbers that are different from these are written.
+   */
+  private static int expectedNodeNo(GameNode parent) {
+    return parent == null ? 0 : parent.getNodeNo() + 1;
+  }
+
+  private static int expectedVisualDepth(GameNode parent) {
+    return parent == null ? 0 : parent.getVisualDepth();
+  }
+
+  // a point that fits the two bytes of a move
+  private static boolean isPoint(String value) {
+    return value != null && value.length() == 2 && isLetter(value.charAt(0)) && isLetter(value.charAt(1));
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /*
+   * Whether the point is played for the first time in the game. The games
+   * are counted from 1 so that the array doesn't have to be cleared.
+   */
+  static boolean firstPlayed(int[] pointsPlayed, int game, int x, int y) {
+    int index = coord(x) * MAX_POINTS + coord(y);
+    if (pointsPlayed[index] == game) {
+      return false;
+    }
+    pointsPlayed[index] = game;
+    return true;
+  }
+
+  static int coord(int c) {
+    return c >= 'a' ? c - 'a' : c - 'A' + 26;
+  }
+
+  /*
+   * Decimal numbers that are written back exactly the same, no leading
+   * zeros or signs, as the unscaled value in zigzag times ten plus the
+   * scale. Returns -1 for anything else.
+   */
+  static long encodeNumber(String value) {
+    int length = value.length();
+    int i = value.startsWith("-") ? 1 : 0;
+    int intStart = i;
+    while (i < length && isDigit(value.charAt(i))) {
+      i++;
+    }
+    int intDigits = i - intStart;
+    if (intDigits == 0 || (intDigits > 1 && value.charAt(intStart) == '0')) {
+      return -1;
+    }
+    int scale = 0;
+    if (i < length && value.charAt(i) == '.') {
+      int fractionStart = ++i;
+      while (i < length && isDigit(value.charAt(i))) {
+        i++;
+      }
+      scale = i - fractionStart;
+      if (scale == 0 || scale > MAX_SCALE) {
+        return -1;
+      }
+    }
+    if (i != length || intDigits + scale > MAX_DIGITS) {
+      return -1;
+    }
+
+    long unscaled = 0;
+    for (i = intStart; i < length; i++) {
+      char c = value.charAt(i);
+      if (c != '.') {
+        unscaled = unscaled * 10 + (c - '0');
+      }
+    }
+    if (intStart == 1) {
+      if (unscaled == 0) {
+        // -0 would come back as 0
+        return -1;
+      }
+      unscaled = -unscaled;
+    }
+    return ((unscaled << 1) ^ (unscaled >> 63)) * 10 + scale;
+  }
+
+  static String decodeNumber(long number) {
+    int scale = (int) (number % 10);
+    long zigzag = number / 10;
+    long unscaled = (zigzag >>> 1) ^ -(zigzag & 1);
+    if (scale == 0) {
+      return Long.toString(unscaled);
+    }
+
+    StringBuilder rtrn = new StringBuilder(MAX_DIGITS + 3);
+    if (unscaled < 0) {
+      rtrn.append('-');
+    }
+    String digits = Long.toString(Math.abs(unscaled));
+    for (int i = digits.length(); i <= scale; i++) {
+      rtrn.append('0');
+    }
+    rtrn.append(digits);
+    rtrn.insert(rtrn.length() - scale, '.');
+    return rtrn.toString();
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private void writeTimings(MoveTimingInfo timings) {
+    writeSignedVarint(timings.min);
+    writeSignedVarint(timings.max);
+    writeSignedVarint(timings.avg);
+    writeSignedVarint(timings.median);
+  }
+
+  private void writeString(String value) {
+    if (value == null) {
+      writeVarint(NULL_STRING);
+      return;
+    }
+    Integer index = strings.get(value);
+    if (index != null) {
+      writeVarint(index + FIRST_INDEX);
+      return;
+    }
+    long number = encodeNumber(value);
+    if (number >= 0) {
+      writeVarint(NUMBER);
+      writeVarlong(number);
+      return;
+    }
+    strings.put(value, stringCount++);
+    writeVarint(NEW_STRING);
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(bytes.length);
+    for (int i = 0; i < bytes.length; i++) {
+      writeByte(bytes[i]);
+    }
+  }
+
+  // zigzag, small negative numbers take a byte too
+  private void writeSignedVarint(int value) {
+    writeVarint((value << 1) ^ (value >> 31));
+  }
+
+  private void writeVarint(int value) {
+    while ((value & ~0x7F) != 0) {
+      writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    writeByte(value);
+  }
+
+  private void writeVarlong(long value) {
+    while ((value & ~0x7FL) != 0) {
+      writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    writeByte((int) value);
+  }
+
+  private void writeByte(int b) {
+    if (pos == buf.length) {
+      drain();
+    }
+    buf[pos++] = (byte) b;
+  }
+
+  private void drain() {
+    try {
+      out.write(buf, 0, pos);
+      pos = 0;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Writes out the buffered bytes and flushes the stream.
+   *
+   * @throws RuntimeException if flushing fails
+   */
+  @Override
+  public void flush() {
+    drain();
+    try {
+      out.flush();
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Writes out the buffered bytes and closes the stream.
+   *
+   * @throws RuntimeException if closing fails
+   */
+  @Override
+  public void close() {
+    drain();
+    try {
+      out.close();
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,470 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tokenizer working directly on encoded SGF bytes, for example a memory
+ * mapped file. All of the SGF syntax is ASCII so the structure can be
+ * found without decoding anything. Values are remembered as positions in
+ * the buffer and only decoded into Strings when asked for, values that
+ * are never looked at cost nothing.
+ *
+ * This only works for encodings where the ASCII characters are always
+ * single bytes that never show up inside a multi byte character, like
+ * UTF-8, EUC-KR and the ISO-8859 family. In Shift_JIS or GBK for example
+ * the second byte of a character can be <code>]</code>.
+ *
+ * When asked to honour the CA property the root node of each game is
+ * read ahead, its values are only located and not decoded, and the
+ * decoder is switched to the encoding CA names. If that encoding can't
+ * be tokenized as bytes the rest of the input, starting from the root
+ * node, is handed over to a {@link SgfLexer} with the right decoder.
+ *
+ * The rules are the same as in {@link SgfLexer}.
+ */
+class ByteSgfLexer implements SgfTokenizer {
+  private static final Logger log = LoggerFactory.getLogger(ByteSgfLexer.class);
+
+  private final ByteBuffer buf;
+  // used for bulk reads so that the position of buf is never touched
+  private final ByteBuffer view;
+  private final Charset defaultCharset;
+  private Charset charset;
+  private final int start;
+  private final int limit;
+  private int pos;
+  private boolean inNode = false;
+
+  private final boolean honourCharsetProperty;
+  private int depth = 0;
+  // the next node is the root node of a game
+  private boolean atRootNode = true;
+  // the properties of the root node that were read ahead, the positions
+  // are stored as start0, end0, start1, end1 etc.
+  private final List<String> queuedKeys = new ArrayList<>();
+  private final List<int[]> queuedValues = new ArrayList<>();
+  private int queuePos = 0;
+  // takes over when CA names an encoding we can't tokenize as bytes
+  private SgfLexer charLexer = null;
+
+  private char[] keyBuf = new char[16];
+  private int keyLength;
+  private String key;
+
+  // where each value of the current property starts and ends in buf
+  private int[] valueStarts = new int[8];
+  private int[] valueEnds = new int[8];
+  private int valueCount;
+
+  private byte[] decodeBuf = new byte[256];
+
+  /**
+   * Tokenizes the bytes between the position and the limit of the buffer.
+   * The buffer itself is not modified.
+   *
+   * @param buffer the SGF content
+   * @param charset the encoding of the content
+   */
+  ByteSgfLexer(ByteBuffer buffer, Charset charset) {
+    this(buffer, charset, false);
+  }
+
+  /**
+   * Tokenizes the bytes between the position and the limit of the buffer,
+   * optionally decoding each game with the encoding of its CA property.
+   *
+   * @param buffer the SGF content
+   * @param charset the encoding of the content, or the encoding to use
+   *          when a game has no CA property
+   * @param honourCharsetProperty whether to use the encoding from CA
+   */
+  ByteSgfLexer(ByteBuffer buffer, Charset charset, boolean honourCharsetProperty) {
+    if (!isAsciiSafe(charset)) {
+      throw new IllegalArgumentException("Charset " + charset + " can't be parsed as bytes");
+    }
+    this.buf = buffer;
+    this.view = buffer.duplicate();
+    this.defaultCharset = charset;
+    this.charset = charset;
+    this.honourCharsetProperty = honourCharsetProperty;
+    this.start = buffer.position();
+    this.limit = buffer.limit();
+    this.pos = start;
+  }
+
+  /**
+   * Returns the encoding the values are currently decoded with.
+   *
+   * @return the current encoding
+   */
+  Charset getCharset() {
+    return charset;
+  }
+
+  /*
+   * The EUC encodings only use bytes above 0x7F for the multi byte
+   * characters. GB2312 is too but files claiming to be GB2312 are often
+   * GBK in reality so we don't trust it.
+   */
+  static boolean isAsciiSafe(Charset charset) {
+    String name = charset.name();
+    return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+        || name.startsWith("ISO-8859-") || name.startsWith("windows-125") || name.startsWith("EUC-");
+  }
+
+  @Override
+  public SgfLexer.Token next() {
+    if (charLexer != null) {
+      return charLexer.next();
+    }
+    if (queuePos < queuedKeys.size()) {
+      return nextQueued();
+    }
+
+    if (inNode) {
+      SgfLexer.Token token = nextProperty();
+      if (token != null) {
+        return token;
+      }
+      inNode = false;
+    }
+
+    while (pos < limit) {
+      byte chr = buf.get(pos++);
+      if ('(' == chr) {
+        if (depth++ == 0) {
+          atRootNode = true;
+        }
+        return SgfLexer.Token.TREE_START;
+      }
+      else if (')' == chr) {
+        depth = Math.max(0, depth - 1);
+        return SgfLexer.Token.TREE_END;
+      }
+      else if (';' == chr && byteBefore(pos - 1) != '\\') {
+        inNode = true;
+        if (honourCharsetProperty && atRootNode) {
+          atRootNode = false;
+          readRootNode(pos - 1);
+        }
+        return SgfLexer.Token.NODE;
+      }
+    }
+    return SgfLexer.Token.EOF;
+  }
+
+  /*
+   * Reads the properties of the root node ahead and switches the decoder
+   * to the encoding from the CA property. The properties are then handed
+   * out from the queue.
+   */
+  private void readRootNode(int nodeStart) {
+    queuedKeys.clear();
+    queuedValues.clear();
+    queuePos = 0;
+
+    String charsetName = null;
+    while (nextProperty() != null) {
+      int[] positions = new int[valueCount * 2];
+      for (int i = 0; i < valueCount; i++) {
+        positions[i * 2] = valueStarts[i];
+        positions[i * 2 + 1] = valueEnds[i];
+      }
+      queuedKeys.add(key);
+      queuedValues.add(positions);
+      if ("CA".equals(key)) {
+        // the names of encodings are ASCII
+        charsetName = decode(valueStarts[0], valueEnds[0], StandardCharsets.ISO_8859_1).trim();
+      }
+    }
+    inNode = false;
+
+    Charset gameCharset = charsetName == null ? defaultCharset : forName(charsetName);
+    if (hasNonAscii(nodeStart, pos)) {
+      // in Shift_JIS and the like ] and \ can be the second byte of a
+      // character, a value before CA can swallow it. Such an encoding can't
+      // be tokenized as bytes anyway, so its name wins when found as is
+      String rawName = findCharsetName(nodeStart, Math.max(pos, nodeEnd(nodeStart)));
+      if (rawName != null && !rawName.equals(charsetName)) {
+        Charset rawCharset = forName(rawName);
+        if (!isAsciiSafe(rawCharset)) {
+          gameCharset = rawCharset;
+        }
+      }
+    }
+    if (isAsciiSafe(gameCharset)) {
+      charset = gameCharset;
+      return;
+    }
+
+    // start over from the root node with a character based lexer
+    queuedKeys.clear();
+    queuedValues.clear();
+    charset = gameCharset;
+    view.limit(limit).position(nodeStart);
+    charLexer = new SgfLexer(new InputStreamReader(new ByteBufferInputStream(view.slice()), gameCharset));
+    // this is the node we have already reported
+    charLexer.next();
+  }
+
+  private boolean hasNonAscii(int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buf.get(i) < 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Where the node would end if no value had a ; ( or ) in it. These are
+   * never the second byte of a character.
+   */
+  private int nodeEnd(int nodeStart) {
+    int rtrn = nodeStart + 1;
+    while (rtrn < limit && buf.get(rtrn) != ';' && buf.get(rtrn) != '(' && buf.get(rtrn) != ')') {
+      rtrn++;
+    }
+    return rtrn;
+  }
+
+  /*
+   * Looks for CA[ in the bytes without telling the values apart, the name
+   * of the encoding is ASCII up to the next ].
+   */
+  private String findCharsetName(int from, int to) {
+    for (int i = from + 1; i + 3 <= to; i++) {
+      if (buf.get(i) != 'C' || buf.get(i + 1) != 'A' || buf.get(i + 2) != '[') {
+        continue;
+      }
+      byte before = buf.get(i - 1);
+      if (before >= 'A' && before <= 'Z') {
+        // the end of another identifier
+        continue;
+      }
+      int end = i + 3;
+      while (end < to && buf.get(end) != ']') {
+        end++;
+      }
+      if (end < to) {
+        return decode(i + 3, end, StandardCharsets.ISO_8859_1).trim();
+      }
+    }
+    return null;
+  }
+
+  private SgfLexer.Token nextQueued() {
+    key = queuedKeys.get(queuePos);
+    int[] positions = queuedValues.get(queuePos);
+    queuePos++;
+
+    valueCount = 0;
+    for (int i = 0; i < positions.length; i += 2) {
+      addValue(positions[i], positions[i + 1]);
+    }
+    if (queuePos == queuedKeys.size()) {
+      queuedKeys.clear();
+      queuedValues.clear();
+      queuePos = 0;
+    }
+    return SgfLexer.Token.PROPERTY;
+  }
+
+  private Charset forName(String name) {
+    try {
+      return Charset.forName(name);
+    }
+    catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+      log.warn("Unknown charset '" + name + "', using " + defaultCharset);
+      return defaultCharset;
+    }
+  }
+
+  /*
+   * Finds the next property of the current node. Returns null if the node
+   * ends before another property is found.
+   */
+  private SgfLexer.Token nextProperty() {
+    keyLength = 0;
+    while (pos < limit) {
+      byte chr = buf.get(pos);
+      if ((chr >= 'A' && chr <= 'Z') || (chr >= 'a' && chr <= 'z')) {
+        if (keyLength == keyBuf.length) {
+          char[] tmp = new char[keyBuf.length * 2];
+          System.arraycopy(keyBuf, 0, tmp, 0, keyLength);
+          keyBuf = tmp;
+        }
+        keyBuf[keyLength++] = (char) chr;
+        pos++;
+      }
+      else if ('\n' == chr || '\r' == chr) {
+        // newlines between nodes and properties are meaningless
+        pos++;
+      }
+      else if ('[' == chr) {
+        if (!readValues()) {
+          return null;
+        }
+        if (keyLength == 0) {
+          // values without a property identifier, nothing to do with these
+          continue;
+        }
+        key = StringCache.key(keyBuf, keyLength);
+        return SgfLexer.Token.PROPERTY;
+      }
+      else if (';' == chr || '(' == chr || ')' == chr) {
+        return null;
+      }
+      else {
+        // any other character breaks the property identifier
+        keyLength = 0;
+        pos++;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Finds the end of one or more values starting at the current '['.
+   * Returns false if the input ended before the value was closed.
+   */
+  private boolean readValues() {
+    valueCount = 0;
+    while (pos < limit && buf.get(pos) == '[') {
+      pos++;
+
+      int valueStart = pos;
+      while (true) {
+        if (pos == limit) {
+          return false;
+        }
+        if (buf.get(pos) == ']' && byteBefore(pos) != '\\') {
+          break;
+        }
+        pos++;
+      }
+      addValue(valueStart, pos);
+      pos++;
+
+      // values can be split over many lines, AB[aa]\n[bb]
+      while (pos < limit && (buf.get(pos) == '\n' || buf.get(pos) == '\r')) {
+        pos++;
+      }
+    }
+    return true;
+  }
+
+  private byte byteBefore(int index) {
+    return index > start ? buf.get(index - 1) : 0;
+  }
+
+  private void addValue(int valueStart, int valueEnd) {
+    if (valueCount == valueEnds.length) {
+      int[] tmp = new int[valueEnds.length * 2];
+      System.arraycopy(valueEnds, 0, tmp, 0, valueEnds.length);
+      valueEnds = tmp;
+      tmp = new int[valueStarts.length * 2];
+      System.arraycopy(valueStarts, 0, tmp, 0, valueStarts.length);
+      valueStarts = tmp;
+    }
+    valueStarts[valueCount] = valueStart;
+    valueEnds[valueCount++] = valueEnd;
+  }
+
+  /*
+   * The positions in the buffer are bytes, not characters of the decoded
+   * text.
+   */
+  @Override
+  public int getOffset() {
+    return -1;
+  }
+
+  @Override
+  public String getKey() {
+    if (charLexer != null) {
+      return charLexer.getKey();
+    }
+    return key;
+  }
+
+  @Override
+  public int getValueCount() {
+    if (charLexer != null) {
+      return charLexer.getValueCount();
+    }
+    return valueCount;
+  }
+
+  @Override
+  public String getValue() {
+    return getValue("][");
+  }
+
+  @Override
+  public String getValue(String separator) {
+    if (charLexer != null) {
+      return charLexer.getValue(separator);
+    }
+    if (valueCount == 1) {
+      return decode(valueStarts[0], valueEnds[0], charset);
+    }
+
+    StringBuilder rtrn = new StringBuilder();
+    for (int i = 0; i < valueCount; i++) {
+      if (i > 0) {
+        rtrn.append(separator);
+      }
+      rtrn.append(decode(valueStarts[i], valueEnds[i], charset));
+    }
+    return rtrn.toString();
+  }
+
+  private String decode(int from, int to, Charset charset) {
+    int len = to - from;
+    if (buf.hasArray()) {
+      return new String(buf.array(), buf.arrayOffset() + from, len, charset);
+    }
+
+    if (len > decodeBuf.length) {
+      decodeBuf = new byte[Math.max(decodeBuf.length * 2, len)];
+    }
+    view.position(from);
+    view.get(decodeBuf, 0, len);
+    return new String(decodeBuf, 0, len, charset);
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int rtrn = Math.min(len, buffer.remaining());
+      buffer.get(b, off, rtrn);
+      return rtrn;
+    }
+  }
+}
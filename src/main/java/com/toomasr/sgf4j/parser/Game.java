@@ -1,9 +1,11 @@
 package com.toomasr.sgf4j.parser;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -50,6 +52,10 @@ public class Game {
 
   // great for debugging
   private String originalSgf = null;
+  // the SGF the nodes point into and the game properties as they were
+  // parsed, for saving only what has changed
+  private String source = null;
+  private Map<String, String> sourceProperties = null;
 
   private MoveTimingInfo wTimings = new MoveTimingInfo(0, 0, 0, 0);
 
@@ -148,6 +154,26 @@ public class Game {
     return rootNode;
   }
 
+  /**
+   * Returns the width of the board from the SZ property, 19 if there is no
+   * SZ property or it is not a size the SGF spec allows.
+   *
+   * @return the number of points on a row
+   */
+  public int getBoardWidth() {
+    return Util.parseBoardSize(getProperty("SZ"))[0];
+  }
+
+  /**
+   * Returns the height of the board from the SZ property. This is the same
+   * as the width unless the board is rectangular, <code>SZ[19:9]</code>.
+   *
+   * @return the number of rows
+   */
+  public int getBoardHeight() {
+    return Util.parseBoardSize(getProperty("SZ"))[1];
+  }
+
   /**
    * Returns the total number of moves in the main line of the game.
    * Does not count setup nodes or nodes in variations.
@@ -265,6 +291,9 @@ public class Game {
 
       newRoot.addChild(oldRoot);
       setRootNode(newRoot);
+      // the game properties were read from the old root, it can't be
+      // copied as it was when saving
+      oldRoot.markChanged();
     }
 
     GameNode node = getRootNode();
@@ -328,28 +357,40 @@ public class Game {
     } while (((node = node.getNextNode()) != null));
   }
 
+  /*
+   * Walks the lines of play in a loop and keeps the variations still to be
+   * numbered on a stack. None of the walks over the game tree recurse, a
+   * long game or deeply nested variations would overflow the stack.
+   */
   private void numberTheMoves(GameNode startNode, int moveNo, int nodeNo) {
-    GameNode node = startNode;
-    int nextMoveNo = moveNo;
-    int nextNodeNo = nodeNo;
-
-    if (node.isMove()) {
-      startNode.setMoveNo(moveNo);
-      nextMoveNo++;
-    }
+    Deque<GameNode> lines = new ArrayDeque<>();
+    Deque<int[]> lineNumbers = new ArrayDeque<>();
+    lines.push(startNode);
+    lineNumbers.push(new int[] { moveNo, nodeNo });
+
+    while (!lines.isEmpty()) {
+      GameNode node = lines.pop();
+      int[] numbers = lineNumbers.pop();
+      int nextMoveNo = numbers[0];
+      int nextNodeNo = numbers[1];
+
+      do {
+        if (node.isMove()) {
+          node.setMoveNo(nextMoveNo);
+          nextMoveNo++;
+        }
 
-    startNode.setNodeNo(nodeNo);
-    nextNodeNo++;
+        node.setNodeNo(nextNodeNo);
+        nextNodeNo++;
 
-    if (node.getNextNode() != null) {
-      numberTheMoves(node.getNextNode(), nextMoveNo, nextNodeNo);
-    }
-
-    if (node.hasChildren()) {
-      for (Iterator<GameNode> ite = node.getChildren().iterator(); ite.hasNext();) {
-        GameNode childNode = ite.next();
-        numberTheMoves(childNode, nextMoveNo, nextNodeNo);
+        if (node.hasChildren()) {
+          for (Iterator<GameNode> ite = node.getChildren().iterator(); ite.hasNext();) {
+            lines.push(ite.next());
+            lineNumbers.push(new int[] { nextMoveNo, nextNodeNo });
+          }
+        }
       }
+      while ((node = node.getNextNode()) != null);
     }
   }
 
@@ -396,12 +437,44 @@ public class Game {
   }
 
   /**
-   * Saves the game to an SGF file.
+   * Saves the game to an SGF file. The parts of a parsed game that have
+   * not been edited are copied from the original SGF as they were, only
+   * the edited nodes are generated again, see
+   * {@link SgfWriter.Mode#PRESERVE}.
    *
    * @param path the destination file path
    */
   public void saveToFile(Path path) {
-    Sgf.writeToFile(this, path);
+    Sgf.writeToFile(this, path, "UTF-8", false, false, SgfWriter.Mode.PRESERVE);
+  }
+
+  /**
+   * Returns whether the game has been edited since it was parsed. A game
+   * that was not parsed from a SGF string is always dirty.
+   *
+   * @return true if saving the game gives something else than the
+   *         original SGF
+   */
+  public boolean isDirty() {
+    return source == null || isPropertiesChanged() || rootNode.isDirty();
+  }
+
+  /*
+   * Called by the parser once the nodes know where they are in the
+   * source.
+   */
+  void setSource(String source) {
+    this.source = source;
+    this.sourceProperties = new LinkedHashMap<>(properties);
+  }
+
+  String getSource() {
+    return source;
+  }
+
+  // the map is handed out so the changes can't be tracked as they happen
+  boolean isPropertiesChanged() {
+    return !properties.equals(sourceProperties);
   }
 
   /**
@@ -481,79 +554,114 @@ public class Game {
     return true;
   }
 
-  private boolean doAllNodesEqual(Game game, GameNode node, Game otherGame, GameNode otherNode, final boolean verbose) {
-    if (!node.isSameNode(otherNode)) {
+  /*
+   * Compares the trees pair by pair. The pairs whose next nodes and children
+   * still need comparing are kept on a stack.
+   */
+  private boolean doAllNodesEqual(Game game, GameNode rootNode, Game otherGame, GameNode otherRootNode, final boolean verbose) {
+    if (!rootNode.isSameNode(otherRootNode)) {
       if (verbose) {
-        System.out.println("Nodes don't equal \na=" + node + "\nb=" + otherGame);
+        System.out.println("Nodes don't equal \na=" + rootNode + "\nb=" + otherGame);
       }
       return false;
     }
 
-    // First let's check the nextNode
-    GameNode nextNode = node.getNextNode();
-    GameNode nextOtherNode = otherNode.getNextNode();
+    Deque<GameNode[]> pairs = new ArrayDeque<>();
+    pairs.push(new GameNode[] { rootNode, otherRootNode });
 
-    if (nextNode != null) {
-      if (!nextNode.isSameNode(nextOtherNode)) {
+    while (!pairs.isEmpty()) {
+      GameNode[] pair = pairs.pop();
+      GameNode node = pair[0];
+      GameNode otherNode = pair[1];
+
+      // First let's check the nextNode
+      GameNode nextNode = node.getNextNode();
+      GameNode nextOtherNode = otherNode.getNextNode();
+
+      if (nextNode != null) {
+        if (!isSameChild(nextNode, nextOtherNode, node, otherNode)) {
+          if (verbose) {
+            System.out.println("Nodes don't equal");
+            System.out.println(nextNode);
+            System.out.println(nextOtherNode);
+            System.out.println();
+          }
+          return false;
+        }
+      } else if (nextNode == null && nextOtherNode != null) {
         if (verbose) {
-          System.out.println("Nodes don't equal");
-          System.out.println(nextNode);
-          System.out.println(nextOtherNode);
-          System.out.println();
+          System.out.println("Nodes don't equal node=" + nextNode + " otherNode=" + nextOtherNode);
         }
         return false;
       }
 
-      if (!doAllNodesEqual(game, nextNode, otherGame, nextOtherNode, verbose)) {
+      // Secondly let's check the children nodes
+      Set<GameNode> children = node.getChildren();
+      Set<GameNode> otherChildren = otherNode.getChildren();
+
+      if (children.size() != otherChildren.size()) {
+        if (verbose) {
+          System.out.println("Size of children don't equal node=" + children + " otherNode=" + otherChildren);
+        }
         return false;
       }
-    } else if (nextNode == null && nextOtherNode != null) {
-      if (verbose) {
-        System.out.println("Nodes don't equal node=" + nextNode + " otherNode=" + nextOtherNode);
-      }
-      return false;
-    }
-
-    // Secondly let's check the children nodes
-    Set<GameNode> children = node.getChildren();
-    Set<GameNode> otherChildren = otherNode.getChildren();
 
-    if (children.size() != otherChildren.size()) {
-      if (verbose) {
-        System.out.println("Size of children don't equal node=" + children + " otherNode=" + otherChildren);
+      for (Iterator<GameNode> ite = children.iterator(); ite.hasNext();) {
+        GameNode gameNode = ite.next();
+        boolean found = false;
+        for (Iterator<GameNode> ite2 = otherChildren.iterator(); ite2.hasNext();) {
+          GameNode gameNode2 = ite2.next();
+          if (isSameChild(gameNode, gameNode2, node, otherNode))
+            found = true;
+        }
+        if (!found) {
+          if (verbose) {
+            System.out.println("Children don't equal node=" + children + " otherNode=" + otherChildren);
+          }
+          return false;
+        }
       }
-      return false;
-    }
 
-    for (Iterator<GameNode> ite = children.iterator(); ite.hasNext();) {
-      GameNode gameNode = ite.next();
-      boolean found = false;
-      for (Iterator<GameNode> ite2 = otherChildren.iterator(); ite2.hasNext();) {
-        GameNode gameNode2 = ite2.next();
-        if (gameNode.isSameNode(gameNode2))
-          found = true;
-      }
-      if (!found) {
-        if (verbose) {
-          System.out.println("Children don't equal node=" + children + " otherNode=" + otherChildren);
+      // the children are pushed in reverse so that the next node is
+      // compared first and then the children in their order
+      List<GameNode[]> childPairs = new ArrayList<>(children.size());
+      Iterator<GameNode> ite = children.iterator();
+      Iterator<GameNode> otherIte = otherChildren.iterator();
+      for (; ite.hasNext();) {
+        GameNode childNode = ite.next();
+        GameNode otherChildNode = otherIte.next();
+        if (!isSameChild(childNode, otherChildNode, node, otherNode)) {
+          if (verbose) {
+            System.out.println("Nodes don't equal \na=" + childNode + "\nb=" + otherGame);
+          }
+          return false;
         }
-        return false;
+        childPairs.add(new GameNode[] { childNode, otherChildNode });
+      }
+      for (int i = childPairs.size() - 1; i >= 0; i--) {
+        pairs.push(childPairs.get(i));
       }
-    }
 
-    Iterator<GameNode> ite = children.iterator();
-    Iterator<GameNode> otherIte = otherChildren.iterator();
-    for (; ite.hasNext();) {
-      GameNode childNode = ite.next();
-      GameNode otherChildNode = otherIte.next();
-      if (!doAllNodesEqual(game, childNode, otherGame, otherChildNode, verbose)) {
-        return false;
+      if (nextNode != null) {
+        pairs.push(new GameNode[] { nextNode, nextOtherNode });
       }
     }
 
     return true;
   }
 
+  /*
+   * Same as isSameNode but when the parents of the nodes are the pair we
+   * have already found to be the same there is no need to walk all the
+   * ancestors again.
+   */
+  private boolean isSameChild(GameNode node, GameNode otherNode, GameNode parent, GameNode otherParent) {
+    if (node != null && otherNode != null && node.getParentNode() == parent && otherNode.getParentNode() == otherParent) {
+      return node.isSameNodeIgnoringParent(otherNode);
+    }
+    return node.isSameNode(otherNode);
+  }
+
   /**
    * Returns the original SGF string that was parsed to create this game.
    *
@@ -580,31 +688,23 @@ public class Game {
    */
   public String getGeneratedSgf() {
     StringBuilder rtrn = new StringBuilder();
-    rtrn.append("(");
-
-    // lets write all the root node properties
-    Map<String, String> props = getProperties();
-
-    rtrn.append(";");
-
-    for (Iterator<Map.Entry<String, String>> ite = props.entrySet().iterator(); ite.hasNext();) {
-      Map.Entry<String, String> entry = ite.next();
-
-      String[] toSplit = new String[] { "ab", "aw" };
-      
-      if (Arrays.asList(toSplit).contains(entry.getKey().toLowerCase()) && entry.getValue().indexOf(",") != -1) {
-        String entries[] = entry.getValue().split(",");
-        for (int i = 0; i < entries.length; i++) {
-          rtrn.append(entry.getKey() + "[" + entries[i] + "]");
-        }
-      } else {
-        rtrn.append(entry.getKey() + "[" + entry.getValue() + "]");
-      }
-    }
-
-    populateSgf(getRootNode(), rtrn);
+    new SgfWriter(rtrn).write(this);
+    return rtrn.toString();
+  }
 
-    rtrn.append(")");
+  /**
+   * Generates an SGF string representation of this game in one of the
+   * layouts of {@link SgfWriter.Mode}, the CANONICAL one is the same for
+   * games with the same content and can be used for finding duplicates.
+   *
+   * @param mode the layout of the output
+   * @return the game as an SGF-formatted string
+   */
+  public String getGeneratedSgf(SgfWriter.Mode mode) {
+    StringBuilder rtrn = new StringBuilder();
+    SgfWriter writer = new SgfWriter(rtrn);
+    writer.setMode(mode);
+    writer.write(this);
     return rtrn.toString();
   }
 
@@ -638,7 +738,7 @@ public class Game {
       if ("PL".equals(entry.getKey())) {
         continue;
       }
-      rtrn.append(entry.getKey() + "[" + entry.getValue().trim() + "]");
+      rtrn.append(entry.getKey()).append('[').append(entry.getValue().trim()).append(']');
     }
 
     StringBuffer AB = new StringBuffer();
@@ -667,53 +767,31 @@ public class Game {
     }
 
     if (node.getNextNode() != null) {
-      populateSgf(node.getNextNode(), rtrn);
+      try {
+        new SgfWriter(rtrn).writeNodes(node.getNextNode());
+      }
+      catch (IOException e) {
+        // a StringBuilder doesn't throw these
+        throw new RuntimeException(e);
+      }
     }
 
     rtrn.append(")");
     return rtrn.toString();
   }
 
-  private void populateSgf(GameNode node, StringBuilder sgfString) {
-    // print out the node (skip empty nodes that have no properties)
-    boolean hasProperties = false;
-    for (Map.Entry<String, String> entry : node.getProperties().entrySet()) {
-      if (!"TimeSpentOnMove".equals(entry.getKey())) {
-        hasProperties = true;
-        break;
-      }
-    }
-
-    if (hasProperties) {
-      sgfString.append(";");
-      for (Iterator<Map.Entry<String, String>> ite = node.getProperties().entrySet().iterator(); ite.hasNext();) {
-        Map.Entry<String, String> entry = ite.next();
-        if ("TimeSpentOnMove".equals(entry.getKey()))
-          continue;
-        sgfString.append(entry.getKey() + "[" + entry.getValue() + "]");
-      }
-      sgfString.append("\n");
-    }
+  /*
+   * For BinaryGameReader, the numbers are read instead of worked out by
+   * postProcess.
+   */
+  void setNoNodes(int noNodes) {
+    this.noNodes = noNodes;
+  }
 
-    // if we have children then first print out the
-    // getNextNode() and then the rest of the children
-    if (node.hasChildren()) {
-      sgfString.append("(");
-      populateSgf(node.getNextNode(), sgfString);
-      sgfString.append(")");
-      sgfString.append("\n");
-
-      for (GameNode childNode : node.getChildren()) {
-        sgfString.append("(");
-        populateSgf(childNode, sgfString);
-        sgfString.append(")");
-        sgfString.append("\n");
-      }
-    }
-    // we can just continue with the next elem
-    else if (node.getNextNode() != null) {
-      populateSgf(node.getNextNode(), sgfString);
-    }
+  void setTimings(boolean timingInfoFound, MoveTimingInfo bTimings, MoveTimingInfo wTimings) {
+    this.timingInfoFound = timingInfoFound;
+    this.bTimings = bTimings;
+    this.wTimings = wTimings;
   }
 
   /**
@@ -1,10 +1,19 @@
 package com.toomasr.sgf4j.parser;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.toomasr.sgf4j.parser.board.StoneState;
 
@@ -14,10 +23,26 @@ import com.toomasr.sgf4j.parser.board.StoneState;
  * https://www.red-bean.com/sgf/sgf4.html
  */
 public class GameNode implements Comparable<GameNode>, Cloneable {
-  private static int nextId = 0;
+  private static final AtomicInteger nextId = new AtomicInteger();
+  private static final String[] NO_STRINGS = new String[0];
 
-  private final Set<GameNode> children = new TreeSet<>();
-  private final Map<String, String> properties = new HashMap<>();
+  // most nodes have no variations, the set is created for the first one
+  private Set<GameNode> children = null;
+  // most nodes have a single B or W property and maybe a comment, small
+  // arrays take a fraction of the memory of a HashMap for these. The keys
+  // are interned so that all the nodes share the same "B" and "W"
+  private String[] keys = NO_STRINGS;
+  private String[] values = NO_STRINGS;
+  private int propertyCount = 0;
+
+  // the B or W property decoded when it is set so that replaying a game
+  // doesn't parse strings. The lowest byte is x, the next one y and the
+  // flags are above these. 0 means the node is not a move
+  private int move = 0;
+  private static final int HAS_POINT = 1 << 16;
+  private static final int BLACK = 1 << 17;
+  private static final int WHITE = 1 << 18;
+  private static final int PASS = 1 << 19;
 
   private int moveNo = -1;
   private int nodeNo = -1;
@@ -28,6 +53,15 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
   private GameNode prevNode = null;
   private final int id;
 
+  // where the node is in the SGF it was parsed from, see
+  // Game.getOriginalSgf(). Everything below the node ends at sourceEnd,
+  // the start is -1 for nodes that were not parsed
+  private int sourceStart = -1;
+  private int sourceEnd;
+  // the node has been edited since it was parsed, or a node below it
+  private boolean changed = false;
+  private boolean changedBelow = false;
+
   /**
    * Constructs a new node with the argument as the parent node. Besides a parent
    * node each node also has possibly a previous and next node. Branching is
@@ -51,7 +85,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
   }
 
   public static int getNextAvailableId() {
-    return ++nextId;
+    return nextId.incrementAndGet();
   }
 
   /**
@@ -62,6 +96,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @throws RuntimeException if the node already exists as a child
    */
   public void addChild(GameNode node) {
+    markChanged();
     if (nextNode == null) {
       nextNode = node;
       nextNode.setVisualDepth(0);
@@ -69,7 +104,10 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
       return;
     }
 
-    if (children.contains(node)) {
+    if (children == null) {
+      children = new TreeSet<>();
+    }
+    else if (children.contains(node)) {
       throw new RuntimeException("Node '" + node + "' already exists for " + this);
     }
 
@@ -82,6 +120,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @param nextNode the next node
    */
   public void setNextNode(GameNode nextNode) {
+    markChanged();
     this.nextNode = nextNode;
   }
 
@@ -101,6 +140,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    */
   public void setPrevNode(GameNode node) {
     this.prevNode = node;
+    markChanged();
   }
 
   /**
@@ -130,6 +170,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    */
   public void setParentNode(GameNode node) {
     parentNode = node;
+    markChanged();
   }
 
   /**
@@ -139,7 +180,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @param value the property value
    */
   public void addProperty(String key, String value) {
-    properties.put(key, value);
+    putProperty(key, value);
   }
 
   /**
@@ -149,7 +190,8 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return the property value, or null if not set
    */
   public String getProperty(String key) {
-    return properties.get(key);
+    int index = indexOf(key);
+    return index < 0 ? null : values[index];
   }
 
   /**
@@ -160,19 +202,209 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return the property value, or defaultValue if not set
    */
   public String getProperty(String key, String defaultValue) {
-    if (properties.get(key) == null)
+    String value = getProperty(key);
+    if (value == null)
       return defaultValue;
     else
-      return properties.get(key);
+      return value;
   }
 
   /**
-   * Returns all properties on this node.
+   * Returns all properties on this node. The map is a view of the node,
+   * changes to it are changes to the node. The properties are iterated in
+   * the order they were added.
    *
    * @return the properties map
    */
   public Map<String, String> getProperties() {
-    return properties;
+    return new PropertyMap();
+  }
+
+  /*
+   * Direct access to the properties for SgfWriter, without creating the
+   * map view and its entries.
+   */
+  int getPropertyCount() {
+    return propertyCount;
+  }
+
+  String getPropertyKey(int index) {
+    return keys[index];
+  }
+
+  String getPropertyValue(int index) {
+    return values[index];
+  }
+
+  private int indexOf(String key) {
+    for (int i = 0; i < propertyCount; i++) {
+      // the keys are interned, comparing references is usually enough
+      if (keys[i] == key || (key != null && key.equals(keys[i])))
+        return i;
+    }
+    return -1;
+  }
+
+  private String putProperty(String key, String value) {
+    int index = indexOf(key);
+    if (index >= 0) {
+      return setValue(index, value);
+    }
+
+    if (propertyCount == keys.length) {
+      int capacity = propertyCount == 0 ? 2 : propertyCount * 2;
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    keys[propertyCount] = key == null ? null : StringCache.key(key);
+    values[propertyCount] = value;
+    propertyCount++;
+    decodeMove(keys[propertyCount - 1]);
+    propertyChanged(key);
+    return null;
+  }
+
+  private String setValue(int index, String value) {
+    String previous = values[index];
+    values[index] = value;
+    decodeMove(keys[index]);
+    propertyChanged(keys[index]);
+    return previous;
+  }
+
+  private void removeProperty(int index) {
+    String key = keys[index];
+    propertyChanged(key);
+    int moved = propertyCount - index - 1;
+    System.arraycopy(keys, index + 1, keys, index, moved);
+    System.arraycopy(values, index + 1, values, index, moved);
+    propertyCount--;
+    keys[propertyCount] = null;
+    values[propertyCount] = null;
+    decodeMove(key);
+  }
+
+  // the time spent is worked out when parsing and is never written
+  private void propertyChanged(String key) {
+    if (!"TimeSpentOnMove".equals(key)) {
+      markChanged();
+    }
+  }
+
+  /*
+   * Marks the node as edited and the nodes above it as having an edited
+   * node below them. Nodes that were not parsed are always written out in
+   * full, there is nothing to mark.
+   */
+  void markChanged() {
+    if (sourceStart < 0) {
+      return;
+    }
+    // a node that was changed already can have been moved under a new
+    // parent, the walk up stops at the first node that is marked anyway
+    changed = true;
+    for (GameNode node = parentNode; node != null && !node.changedBelow; node = node.parentNode) {
+      node.changedBelow = true;
+    }
+  }
+
+  /**
+   * Returns whether this node or any node below it has been edited since
+   * the game was parsed. Nodes that were not parsed from a SGF string are
+   * always dirty.
+   *
+   * @return true if the node has to be written out again when saving
+   */
+  public boolean isDirty() {
+    return sourceStart < 0 || changed || changedBelow;
+  }
+
+  /*
+   * The SGF the node was parsed from, for SgfWriter to copy the parts that
+   * have not changed.
+   */
+  void setSource(int start, int end) {
+    sourceStart = start;
+    sourceEnd = end;
+  }
+
+  boolean hasSource() {
+    return sourceStart >= 0;
+  }
+
+  boolean isChanged() {
+    return sourceStart < 0 || changed;
+  }
+
+  int getSourceStart() {
+    return sourceStart;
+  }
+
+  int getSourceEnd() {
+    return sourceEnd;
+  }
+
+  /*
+   * Decodes the move again if the changed property was B or W. The keys
+   * are interned so comparing references is enough.
+   */
+  private void decodeMove(String changedKey) {
+    if (changedKey != "B" && changedKey != "W")
+      return;
+
+    move = 0;
+    String moveStr = getProperty("W");
+    if (moveStr != null) {
+      move = WHITE;
+    }
+    else if ((moveStr = getProperty("B")) != null) {
+      move = BLACK;
+    }
+    else {
+      return;
+    }
+
+    // tt means a pass and actually an empty [] also
+    if (moveStr.isEmpty() || "tt".equals(moveStr)) {
+      move |= PASS;
+    }
+    if (moveStr.length() >= 2) {
+      int x = coord(moveStr.charAt(0));
+      int y = coord(moveStr.charAt(1));
+      if (x >= 0 && y >= 0) {
+        move |= HAS_POINT | y << 8 | x;
+      }
+    }
+  }
+
+  // a-z are 0-25 and A-Z are 26-51 as in the SGF spec
+  private static int coord(char chr) {
+    if (chr >= 'a' && chr <= 'z')
+      return chr - 'a';
+    if (chr >= 'A' && chr <= 'Z')
+      return chr - 'A' + 26;
+    return -1;
+  }
+
+  // what getProperties().hashCode() would return
+  private int propertiesHashCode() {
+    int rtrn = 0;
+    for (int i = 0; i < propertyCount; i++) {
+      rtrn += Objects.hashCode(keys[i]) ^ Objects.hashCode(values[i]);
+    }
+    return rtrn;
+  }
+
+  // what getProperties().equals(other.getProperties()) would return
+  private boolean propertiesEqual(GameNode other) {
+    if (propertyCount != other.propertyCount)
+      return false;
+    for (int i = 0; i < propertyCount; i++) {
+      int index = other.indexOf(keys[i]);
+      if (index < 0 || !Objects.equals(values[i], other.values[index]))
+        return false;
+    }
+    return true;
   }
 
   /**
@@ -181,7 +413,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return true if this node is a move
    */
   public boolean isMove() {
-    return properties.get("W") != null || properties.get("B") != null;
+    return move != 0;
   }
 
   /**
@@ -190,10 +422,10 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return the move string, or null if not a move
    */
   public String getMoveString() {
-    if (properties.get("W") != null) {
-      return properties.get("W");
-    } else if (properties.get("B") != null) {
-      return properties.get("B");
+    if (getProperty("W") != null) {
+      return getProperty("W");
+    } else if (getProperty("B") != null) {
+      return getProperty("B");
     } else {
       return null;
     }
@@ -205,9 +437,53 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return coordinates array where x and y are 0-indexed board positions
    */
   public int[] getCoords() {
-    String moveStr = getMoveString();
-    int[] moveCoords = Util.alphaToCoords(moveStr);
-    return moveCoords;
+    return new int[] { getX(), getY() };
+  }
+
+  /**
+   * Returns the x coordinate of the move without parsing or allocating
+   * anything, the move is decoded when the B or W property is set.
+   *
+   * @return the 0-indexed x coordinate
+   * @throws RuntimeException if the node is not a move with coordinates
+   */
+  public int getX() {
+    return getPoint() & 0xff;
+  }
+
+  /**
+   * Returns the y coordinate of the move without parsing or allocating
+   * anything.
+   *
+   * @return the 0-indexed y coordinate
+   * @throws RuntimeException if the node is not a move with coordinates
+   */
+  public int getY() {
+    return getPoint() >> 8;
+  }
+
+  /**
+   * Returns whether the move has a point that can be read, two letters
+   * a-z or A-Z. A pass written as an empty value has none.
+   *
+   * @return true if {@link #getX()} and {@link #getY()} can be called
+   */
+  public boolean hasPoint() {
+    return (move & HAS_POINT) != 0;
+  }
+
+  /**
+   * Returns both coordinates of the move packed into a single int, x is the
+   * lowest byte and y is the next one: <code>y &lt;&lt; 8 | x</code>.
+   *
+   * @return the packed coordinates
+   * @throws RuntimeException if the node is not a move with coordinates
+   */
+  public int getPoint() {
+    if ((move & HAS_POINT) == 0) {
+      throw new RuntimeException("Coordinate cannot be less than 2 characters. Input '" + getMoveString() + "'");
+    }
+    return move & 0xffff;
   }
 
   /**
@@ -216,7 +492,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return true if this node has a W (White move) property
    */
   public boolean isWhite() {
-    return properties.get("W") != null;
+    return (move & WHITE) != 0;
   }
 
   /**
@@ -225,7 +501,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return true if this node has a B (Black move) property
    */
   public boolean isBlack() {
-    return properties.get("B") != null;
+    return (move & BLACK) != 0;
   }
 
   /**
@@ -234,7 +510,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return "W" for White, "B" for Black (defaults to "B" if not a move)
    */
   public String getColor() {
-    if (properties.get("W") != null)
+    if (isWhite())
       return "W";
     return "B";
   }
@@ -245,7 +521,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return StoneState.WHITE or StoneState.BLACK (defaults to BLACK if not a move)
    */
   public StoneState getColorAsEnum() {
-    if (properties.get("W") != null)
+    if (isWhite())
       return StoneState.WHITE;
     return StoneState.BLACK;
   }
@@ -256,16 +532,18 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return true if there are child variations
    */
   public boolean hasChildren() {
-    return children.size() > 0;
+    return children != null && children.size() > 0;
   }
 
   /**
    * Returns the child variation nodes (not including the main line nextNode).
+   * Adding and removing variations through the set marks the node as
+   * edited.
    *
    * @return set of child variation nodes
    */
   public Set<GameNode> getChildren() {
-    return children;
+    return new ChildrenView();
   }
 
   /**
@@ -292,14 +570,21 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return true if the node is empty
    */
   public boolean isEmpty() {
-    if (properties.isEmpty() && children.size() == 0)
+    if (propertyCount == 0 && !hasChildren())
       return true;
     return false;
   }
 
   @Override
   protected Object clone() throws CloneNotSupportedException {
-    return super.clone();
+    GameNode rtrn = (GameNode) super.clone();
+    // the arrays can't be shared like the map used to be, a property
+    // added to one node would only partly show up in the other
+    rtrn.keys = keys.clone();
+    rtrn.values = values.clone();
+    // a copy is not where the original is in the SGF
+    rtrn.sourceStart = -1;
+    return rtrn;
   }
 
   /**
@@ -318,38 +603,33 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
       return false;
     if (getClass() != otherNode.getClass())
       return false;
-    GameNode other = (GameNode) otherNode;
 
-    if (children == null) {
-      if (other.children != null)
+    // the ancestors have to be the same too, they are compared one pair
+    // at a time up to the root or to a parent both nodes share
+    GameNode node = this;
+    GameNode other = otherNode;
+    while (node != other) {
+      if (node == null || other == null)
         return false;
-    } else {
-      for (Iterator<GameNode> ite = children.iterator(); ite.hasNext();) {
-        GameNode gameNode = (GameNode) ite.next();
-        boolean found = false;
-        for (Iterator<GameNode> ite2 = children.iterator(); ite2.hasNext();) {
-          GameNode gameNode2 = (GameNode) ite2.next();
-          if (gameNode.isSameNode(gameNode2)) {
-            found = true;
-            break;
-          }
-        }
-        if (!found)
-          return false;
-      }
+      if (node.getClass() != other.getClass())
+        return false;
+      if (!node.isSameNodeIgnoringParent(other))
+        return false;
+      node = node.parentNode;
+      other = other.parentNode;
     }
+    return true;
+  }
 
+  /*
+   * The part of isSameNode that only looks at this node. This used to also
+   * compare the children with the children of this very same node, which
+   * always matched.
+   */
+  boolean isSameNodeIgnoringParent(GameNode other) {
     if (moveNo != other.moveNo)
       return false;
-    if (parentNode == null) {
-      if (other.parentNode != null)
-        return false;
-    } else if (!parentNode.isSameNode(other.parentNode))
-      return false;
-    if (properties == null) {
-      if (other.properties != null)
-        return false;
-    } else if (!properties.equals(other.properties))
+    if (!propertiesEqual(other))
       return false;
     if (visualDepth != other.visualDepth)
       return false;
@@ -371,10 +651,13 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
     if (this.moveNo > o.moveNo)
       return 1;
 
-    // so the move no is the same and the depth is the same
-    if (this.hashCode() < o.hashCode())
+    // so the move no is the same and the depth is the same, keep
+    // the order the nodes were created in. This used to compare the
+    // hashCodes but these overflow and the order of the variations
+    // would then depend on how many nodes were created before
+    if (this.id < o.id)
       return -1;
-    else if (this.hashCode() > o.hashCode())
+    else if (this.id > o.id)
       return 1;
 
     return 0;
@@ -399,21 +682,28 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
   }
 
   /**
-   * Returns whether this move is a pass (empty move or "tt").
+   * Returns whether this move is a pass (empty move or "tt"). This is right
+   * for boards up to 19x19, see {@link #isPass(int, int)} for bigger ones.
    *
    * @return true if this is a pass move
    */
   public boolean isPass() {
-    // tt means a pass and actually an empty [] also
-    // but right now not handling that because I don't know
-    // how exactly it looks like in a SGF
-    if (!isPlacementMove() && "tt".equals(getMoveString())) {
-      return true;
-    }
-    if (!isPlacementMove() && "".equals(getMoveString())) {
-      return true;
-    }
-    return false;
+    return (move & PASS) != 0;
+  }
+
+  /**
+   * Returns whether this move is a pass on a board of the given size. An
+   * empty move is always a pass but "tt" is only a pass when there is no
+   * such point on the board, on boards bigger than 19x19 it is a move.
+   *
+   * @param width the width of the board
+   * @param height the height of the board
+   * @return true if this is a pass move
+   */
+  public boolean isPass(int width, int height) {
+    if (!isPass())
+      return false;
+    return (move & HAS_POINT) == 0 || getX() >= width || getY() >= height;
   }
 
   /**
@@ -423,8 +713,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return true if this is a placement move and not a game move
    */
   public boolean isPlacementMove() {
-    return properties.get("W") == null && properties.get("B") == null
-        && (properties.get("AB") != null || properties.get("AW") != null);
+    return !isMove() && (getProperty("AB") != null || getProperty("AW") != null);
   }
 
   /**
@@ -451,7 +740,7 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
    * @return the comment text, or empty string if no comment
    */
   public String getSgfComment() {
-    return properties.getOrDefault("C", "");
+    return getProperty("C", "");
   }
 
   /**
@@ -467,19 +756,57 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
     String parentHashcode = "";
     if (getParentNode() != null)
       parentHashcode = "parentNode: " + getParentNode().hashCode();
+    Map<String, String> properties = getProperties();
     return "Props: keys=" + properties.keySet().toString() + " all=" + properties.toString() + " moveNo: " + moveNo
-        + " children: " + children.size() + " vdepth: " + visualDepth + parentHashcode;
+        + " children: " + getChildren().size() + " vdepth: " + visualDepth + parentHashcode;
   }
 
+  /*
+   * The hash includes the hashes of the children which in turn include the
+   * hashes of their children. For nested variations these are calculated
+   * bottom up with a stack instead of recursing.
+   */
   @Override
   public int hashCode() {
+    if (!hasChildren()) {
+      return hashCode(0);
+    }
+
+    Map<GameNode, Integer> hashes = new IdentityHashMap<>();
+    Deque<GameNode> stack = new ArrayDeque<>();
+    stack.push(this);
+    while (!stack.isEmpty()) {
+      GameNode node = stack.peek();
+      int childrenHash = 0;
+      boolean ready = true;
+      for (GameNode child : node.getChildren()) {
+        Integer childHash = hashes.get(child);
+        if (childHash == null) {
+          stack.push(child);
+          ready = false;
+        }
+        else {
+          childrenHash += childHash;
+        }
+      }
+
+      if (ready) {
+        stack.pop();
+        hashes.put(node, node.hashCode(childrenHash));
+      }
+    }
+    return hashes.get(this);
+  }
+
+  // childrenHash is what children.hashCode() would return
+  private int hashCode(int childrenHash) {
     final int prime = 31;
     int result = 1;
-    result = prime * result + ((children == null) ? 0 : children.hashCode());
+    result = prime * result + childrenHash;
     result = prime * result + moveNo;
     result = prime * result + id;
-    result = prime * result + ((parentNode == null) ? 0 : parentNode.properties.hashCode());
-    result = prime * result + ((properties == null) ? 0 : properties.hashCode());
+    result = prime * result + ((parentNode == null) ? 0 : parentNode.propertiesHashCode());
+    result = prime * result + propertiesHashCode();
     result = prime * result + visualDepth;
     return result;
   }
@@ -492,23 +819,30 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
       return false;
     if (getClass() != obj.getClass())
       return false;
+
+    // the parents have to be equal too, they are compared one pair at a
+    // time up to the root or to a parent both nodes share
+    GameNode node = this;
     GameNode other = (GameNode) obj;
-    if (children == null) {
-      if (other.children != null)
+    while (node != other) {
+      if (node == null || other == null)
         return false;
-    } else if (!children.equals(other.children))
+      if (node.getClass() != other.getClass())
+        return false;
+      if (!node.equalsIgnoringParent(other))
+        return false;
+      node = node.parentNode;
+      other = other.parentNode;
+    }
+    return true;
+  }
+
+  private boolean equalsIgnoringParent(GameNode other) {
+    if (!getChildren().equals(other.getChildren()))
       return false;
     if (moveNo != other.moveNo)
       return false;
-    if (parentNode == null) {
-      if (other.parentNode != null)
-        return false;
-    } else if (!parentNode.equals(other.parentNode))
-      return false;
-    if (properties == null) {
-      if (other.properties != null)
-        return false;
-    } else if (!properties.equals(other.properties))
+    if (!propertiesEqual(other))
       return false;
     if (visualDepth != other.visualDepth)
       return false;
@@ -516,4 +850,177 @@ public class GameNode implements Comparable<GameNode>, Cloneable {
       return false;
     return true;
   }
+
+  /*
+   * The map returned by getProperties, reads and writes go straight to
+   * the arrays of the node.
+   */
+  private class PropertyMap extends AbstractMap<String, String> {
+
+    @Override
+    public int size() {
+      return propertyCount;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+      return key instanceof String ? getProperty((String) key) : null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+      return putProperty(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+      if (!(key instanceof String))
+        return null;
+      int index = indexOf((String) key);
+      if (index < 0)
+        return null;
+      String rtrn = values[index];
+      removeProperty(index);
+      return rtrn;
+    }
+
+    @Override
+    public void clear() {
+      markChanged();
+      Arrays.fill(keys, 0, propertyCount, null);
+      Arrays.fill(values, 0, propertyCount, null);
+      propertyCount = 0;
+      move = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+      return new AbstractSet<Map.Entry<String, String>>() {
+        @Override
+        public int size() {
+          return propertyCount;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+          return new PropertyIterator();
+        }
+      };
+    }
+  }
+
+  private class PropertyIterator implements Iterator<Map.Entry<String, String>> {
+    private int next = 0;
+    private boolean canRemove = false;
+
+    @Override
+    public boolean hasNext() {
+      return next < propertyCount;
+    }
+
+    @Override
+    public Map.Entry<String, String> next() {
+      if (next >= propertyCount)
+        throw new NoSuchElementException();
+      canRemove = true;
+      return new PropertyEntry(next++);
+    }
+
+    @Override
+    public void remove() {
+      if (!canRemove)
+        throw new IllegalStateException();
+      canRemove = false;
+      removeProperty(--next);
+    }
+  }
+
+  private class PropertyEntry extends AbstractMap.SimpleEntry<String, String> {
+    private static final long serialVersionUID = 1L;
+    private final int index;
+
+    PropertyEntry(int index) {
+      super(keys[index], values[index]);
+      this.index = index;
+    }
+
+    @Override
+    public String setValue(String value) {
+      GameNode.this.setValue(index, value);
+      return super.setValue(value);
+    }
+  }
+
+  /*
+   * The variations as a set that tells the node when it is changed, the
+   * saved SGF would otherwise still have the removed variations. The
+   * TreeSet is created when the first variation is added.
+   */
+  private class ChildrenView extends AbstractSet<GameNode> {
+    @Override
+    public Iterator<GameNode> iterator() {
+      if (children == null)
+        return Collections.emptyIterator();
+      Iterator<GameNode> ite = children.iterator();
+      return new Iterator<GameNode>() {
+        @Override
+        public boolean hasNext() {
+          return ite.hasNext();
+        }
+
+        @Override
+        public GameNode next() {
+          return ite.next();
+        }
+
+        @Override
+        public void remove() {
+          ite.remove();
+          markChanged();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return children == null ? 0 : children.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return children != null && children.contains(o);
+    }
+
+    @Override
+    public boolean add(GameNode node) {
+      if (children == null) {
+        children = new TreeSet<>();
+      }
+      if (!children.add(node))
+        return false;
+      markChanged();
+      return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      if (children == null || !children.remove(o))
+        return false;
+      markChanged();
+      return true;
+    }
+
+    @Override
+    public void clear() {
+      if (children == null || children.isEmpty())
+        return;
+      children.clear();
+      markChanged();
+    }
+  }
 }
@@ -0,0 +1,207 @@
+package com.toomasr.sgf4j.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Hands out the games of a SGF collection one at a time. Each game is
+ * parsed only when it is asked for so the memory used is bounded by the
+ * biggest game and not by the size of the collection.
+ *
+ * When used in a parallel stream the reading thread only records the
+ * parsing events for a batch of games. Building the game trees and post
+ * processing them, which is the expensive part, is done by the worker
+ * threads.
+ */
+class GameSpliterator implements Spliterator<Game> {
+  private static final int BATCH_SIZE = 16;
+
+  private final SgfReader reader;
+
+  GameSpliterator(SgfReader reader) {
+    this.reader = reader;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Game> action) {
+    Game game = new Game();
+    if (!Parser.parseGame(reader, new Parser.GameBuilder(game))) {
+      return false;
+    }
+    action.accept(finish(game));
+    return true;
+  }
+
+  @Override
+  public Spliterator<Game> trySplit() {
+    List<RecordedGame> batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      RecordedGame recorded = new RecordedGame();
+      if (!Parser.parseGame(reader, recorded)) {
+        break;
+      }
+      batch.add(recorded);
+    }
+
+    if (batch.isEmpty()) {
+      return null;
+    }
+    return new BatchSpliterator(batch);
+  }
+
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  private static Game finish(Game game) {
+    // the game tree was empty, same as Parser.parse() does
+    if (game.getRootNode() == null) {
+      game.setRootNode(new GameNode(null));
+    }
+    game.postProcess();
+    return game;
+  }
+
+  /*
+   * Builds the games of an already read batch.
+   */
+  private static class BatchSpliterator implements Spliterator<Game> {
+    private final List<RecordedGame> batch;
+    private int index = 0;
+
+    BatchSpliterator(List<RecordedGame> batch) {
+      this.batch = batch;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Game> action) {
+      if (index == batch.size()) {
+        return false;
+      }
+      RecordedGame recorded = batch.get(index);
+      // let the recording be garbage collected as soon as possible
+      batch.set(index++, null);
+
+      Game game = new Game();
+      recorded.replay(new Parser.GameBuilder(game));
+      action.accept(finish(game));
+      return true;
+    }
+
+    @Override
+    public Spliterator<Game> trySplit() {
+      return null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return batch.size() - index;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | NONNULL | SIZED | SUBSIZED;
+    }
+  }
+
+  /*
+   * Keeps the parsing events of a game so that they can be replayed later
+   * on a different thread.
+   */
+  private static class RecordedGame implements SgfHandler {
+    private static final byte START_GAME = 0;
+    private static final byte END_GAME = 1;
+    private static final byte START_VARIATION = 2;
+    private static final byte END_VARIATION = 3;
+    private static final byte START_NODE = 4;
+    private static final byte END_NODE = 5;
+    private static final byte PROPERTY = 6;
+
+    private byte[] events = new byte[64];
+    private int noEvents = 0;
+    private final List<String> values = new ArrayList<>();
+
+    void replay(SgfHandler handler) {
+      int valueIndex = 0;
+      for (int i = 0; i < noEvents; i++) {
+        switch (events[i]) {
+          case START_GAME:
+            handler.startGame();
+            break;
+          case END_GAME:
+            handler.endGame();
+            break;
+          case START_VARIATION:
+            handler.startVariation();
+            break;
+          case END_VARIATION:
+            handler.endVariation();
+            break;
+          case START_NODE:
+            handler.startNode();
+            break;
+          case END_NODE:
+            handler.endNode();
+            break;
+          default:
+            handler.property(values.get(valueIndex), values.get(valueIndex + 1));
+            valueIndex += 2;
+            break;
+        }
+      }
+    }
+
+    private void add(byte event) {
+      if (noEvents == events.length) {
+        events = Arrays.copyOf(events, events.length * 2);
+      }
+      events[noEvents++] = event;
+    }
+
+    @Override
+    public void startGame() {
+      add(START_GAME);
+    }
+
+    @Override
+    public void endGame() {
+      add(END_GAME);
+    }
+
+    @Override
+    public void startVariation() {
+      add(START_VARIATION);
+    }
+
+    @Override
+    public void endVariation() {
+      add(END_VARIATION);
+    }
+
+    @Override
+    public void startNode() {
+      add(START_NODE);
+    }
+
+    @Override
+    public void endNode() {
+      add(END_NODE);
+    }
+
+    @Override
+    public void property(String key, String value) {
+      add(PROPERTY);
+      values.add(key);
+      values.add(value);
+    }
+  }
+}
@@ -1,10 +1,12 @@
 package com.toomasr.sgf4j.parser;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -267,8 +269,6 @@ public class Parser {
     nodeProps.add("IT");
   }
 
-  private Stack<GameNode> treeStack = new Stack<>();
-
   public Parser(String game) {
     originalGame = game;
   }
@@ -276,138 +276,289 @@ public class Parser {
   public Game parse() {
     Game game = new Game(originalGame);
 
-    // the root node
-    GameNode parentNode = null;
-    // replace token delimiters
-
-    int moveNo = 1;
-    int id = 10000;
-
     if (originalGame.trim().length() == 0) {
       GameNode rootNode = new GameNode(null);
       game.setRootNode(rootNode);
       return game;
     }
-    
-    for (int i = 0; i < originalGame.length(); i++) {
-      char chr = originalGame.charAt(i);
-      if (';' == chr && (i == 0 || originalGame.charAt(i - 1) != '\\')) {
-        String nodeContents = consumeUntil(originalGame, i);
-        i = i + nodeContents.length();
-
-        GameNode node = parseToken(nodeContents, parentNode, game, id++);
-        if (node.isMove()) {
-          node.setMoveNo(moveNo++);
-        }
 
-        if (parentNode == null) {
-          parentNode = node;
-          game.setRootNode(parentNode);
-        }
-        else if (!node.isEmpty()) {
-          parentNode.addChild(node);
-          parentNode = node;
-        }
-      }
-      else if ('(' == chr && parentNode != null) {
-        treeStack.push(parentNode);
-      }
-      else if (')' == chr) {
-        if (treeStack.size() > 0) {
-          parentNode = treeStack.pop();
-          moveNo = parentNode.getMoveNo() + 1;
-        }
-      }
-      else {
-      }
+    SgfReader reader = new SgfReader(new StringReader(originalGame));
+    parse(reader, new GameBuilder(game, reader));
+    if (game.getRootNode() != null && game.getRootNode().hasSource()) {
+      game.setSource(originalGame);
     }
+    return game;
+  }
 
+  /**
+   * Builds a game out of everything the cursor has left. Same as
+   * {@link #parse()} but the content doesn't have to be a String.
+   *
+   * @param reader the SGF cursor
+   * @return the game, not post processed yet
+   */
+  static Game parse(SgfReader reader) {
+    Game game = new Game();
+    parse(reader, new GameBuilder(game));
+    if (game.getRootNode() == null) {
+      game.setRootNode(new GameNode(null));
+    }
     return game;
   }
 
-  private String consumeUntil(String gameStr, int i) {
-    StringBuffer rtrn = new StringBuffer();
-    boolean insideComment = false;
-    boolean insideValue = false;
-    for (int j = i + 1; j < gameStr.length(); j++) {
-      char chr = gameStr.charAt(j);
-      if (insideComment) {
-        if (']' == chr && gameStr.charAt(j - 1) != '\\') {
-          insideComment = false;
-        }
-        rtrn.append(chr);
+  /**
+   * Parses the SGF content and reports it to the handler as it is being
+   * read. The input is read in chunks and no game tree is built so this
+   * works with inputs of any size.
+   *
+   * @param reader the SGF content
+   * @param handler the handler to report the events to
+   */
+  public static void parse(Reader reader, SgfHandler handler) {
+    parse(new SgfReader(reader), handler);
+  }
+
+  /**
+   * Reads the rest of the content from the cursor and reports it to the
+   * handler.
+   *
+   * @param reader the SGF cursor
+   * @param handler the handler to report the events to
+   */
+  public static void parse(SgfReader reader, SgfHandler handler) {
+    parse(reader, handler, false);
+  }
+
+  /**
+   * Reads the next game from the cursor and reports it to the handler.
+   * Anything before the start of the game is skipped and the cursor is
+   * left right after the end of the game.
+   *
+   * @param reader the SGF cursor
+   * @param handler the handler to report the events to
+   * @return true if a game was found, false if the input had no more games
+   */
+  public static boolean parseGame(SgfReader reader, SgfHandler handler) {
+    SgfReader.Token token;
+    do {
+      token = reader.next();
+    }
+    while (token != SgfReader.Token.GAME_START && token != SgfReader.Token.END);
+
+    if (token == SgfReader.Token.END) {
+      return false;
+    }
+
+    handler.startGame();
+    parse(reader, handler, true);
+    return true;
+  }
+
+  private static void parse(SgfReader reader, SgfHandler handler, boolean singleGame) {
+    boolean inNode = false;
+
+    SgfReader.Token token;
+    do {
+      token = reader.next();
+      if (token == SgfReader.Token.PROPERTY) {
+        handler.property(reader.getKey(), reader.getValue());
+        continue;
       }
-      else {
-        if ('C' == chr && '[' == gameStr.charAt(j + 1)) {
-          insideComment = true;
-          rtrn.append(chr);
-        }
-        else if ('[' == chr) {
-          insideValue = true;
-          rtrn.append(chr);
-        }
-        else if (']' == chr) {
-          insideValue = false;
-          rtrn.append(chr);
-        }
-        // while inside the value lets consume everything -
-        // even chars that otherwise would have special meaning
-        // like ;()
-        else if (insideValue) {
-          rtrn.append(chr);
-        }
-        else if ('\n' == chr) {
-          // skip newlines
-        }
-        else if ('\r' == chr) {
-          // skip newlines
-        }
-        else if (';' != chr && ')' != chr && '(' != chr) {
-          rtrn.append(chr);
-        }
-        else {
+
+      // anything other than a property means the node is finished
+      if (inNode) {
+        handler.endNode();
+        inNode = false;
+      }
+
+      switch (token) {
+        case NODE:
+          handler.startNode();
+          inNode = true;
+          break;
+        case GAME_START:
+          handler.startGame();
+          break;
+        case GAME_END:
+          handler.endGame();
+          if (singleGame) {
+            return;
+          }
+          break;
+        case VARIATION_START:
+          handler.startVariation();
+          break;
+        case VARIATION_END:
+          handler.endVariation();
+          break;
+        default:
           break;
-        }
       }
     }
-    return rtrn.toString().trim();
+    while (token != SgfReader.Token.END);
   }
 
-  private GameNode parseToken(String token, final GameNode parentNode, Game game, int id) {
-    GameNode rtrnNode = new GameNode(parentNode);
-    // replace delimiters
-    token = Parser.prepareToken("'" + token + "'");
-
-    // lets find all the properties
-    Pattern p = Pattern.compile("([a-zA-Z]{1,})((\\[[^\\]]*\\]){1,})");
-    Matcher m = p.matcher(token);
-    while (m.find()) {
-      String group = m.group();
-      if (group.length() == 0)
-        continue;
+  /**
+   * Reads the game properties from the root node and stops, the rest of
+   * the input is not read. The properties are the same as the full
+   * parse would give via {@link Game#getProperties()}.
+   *
+   * @param reader the SGF content
+   * @return the game properties, empty if there are no nodes
+   */
+  public static Map<String, String> parseHeader(Reader reader) {
+    Game game = new Game();
+    GameBuilder builder = new GameBuilder(game);
+    SgfReader sgfReader = new SgfReader(reader);
+
+    SgfReader.Token token;
+    do {
+      token = sgfReader.next();
+    }
+    while (token != SgfReader.Token.NODE && token != SgfReader.Token.END);
 
-      String key = m.group(1);
-      String value = m.group(2);
-      if (value.startsWith("[")) {
-        value = value.substring(1, value.length() - 1);
+    if (token == SgfReader.Token.NODE) {
+      builder.startNode();
+      while (sgfReader.next() == SgfReader.Token.PROPERTY) {
+        builder.property(sgfReader.getKey(), sgfReader.getValue());
       }
+    }
+    return game.getProperties();
+  }
+
+  /*
+   * Builds the Game object out of the parsing events.
+   */
+  static class GameBuilder implements SgfHandler {
+    private final Game game;
+    private final Stack<GameNode> treeStack = new Stack<>();
+    // with a reader the nodes are told where they are in the SGF
+    private final SgfReader reader;
+
+    // the nodes of the variations that haven't ended yet, with where they
+    // start and how deep they are. A node gets its place only
+    // once everything below it has been read, otherwise adding the
+    // children would mark it as changed
+    private GameNode[] openNodes = new GameNode[16];
+    private int[] openStarts = new int[16];
+    private int[] openDepths = new int[16];
+    private int openCount = 0;
+    private int nodeStart;
+    private int nodeDepth;
 
-      value = Parser.normaliseToken(value);
+    // the node the next node will be attached to
+    private GameNode parentNode = null;
+    // the node we are currently reading the properties for
+    private GameNode node = null;
+    private int moveNo = 1;
+
+    GameBuilder(Game game) {
+      this(game, null);
+    }
+
+    GameBuilder(Game game, SgfReader reader) {
+      this.game = game;
+      this.reader = reader;
+    }
+
+    @Override
+    public void startGame() {
+      startVariation();
+    }
 
+    @Override
+    public void endGame() {
+      endVariation();
+    }
+
+    @Override
+    public void startVariation() {
+      if (parentNode != null) {
+        treeStack.push(parentNode);
+      }
+    }
+
+    @Override
+    public void endVariation() {
+      if (reader != null) {
+        closeOpenNodes(reader.getDepth(), reader.getOffset());
+      }
+      if (treeStack.size() > 0) {
+        parentNode = treeStack.pop();
+        moveNo = parentNode.getMoveNo() + 1;
+      }
+    }
+
+    @Override
+    public void startNode() {
+      node = new GameNode(parentNode);
+      if (reader != null) {
+        nodeStart = reader.getOffset();
+        nodeDepth = reader.getDepth();
+      }
+    }
+
+    @Override
+    public void endNode() {
+      if (node.isMove()) {
+        node.setMoveNo(moveNo++);
+      }
+
+      if (parentNode == null) {
+        parentNode = node;
+        game.setRootNode(parentNode);
+        open(node);
+      }
+      else if (!node.isEmpty()) {
+        parentNode.addChild(node);
+        parentNode = node;
+        open(node);
+      }
+      node = null;
+    }
+
+    private void open(GameNode node) {
+      if (reader == null || nodeStart < 0) {
+        return;
+      }
+      if (openCount == openNodes.length) {
+        int capacity = openCount * 2;
+        openNodes = Arrays.copyOf(openNodes, capacity);
+        openStarts = Arrays.copyOf(openStarts, capacity);
+        openDepths = Arrays.copyOf(openDepths, capacity);
+      }
+      openNodes[openCount] = node;
+      openStarts[openCount] = nodeStart;
+      openDepths[openCount] = nodeDepth;
+      openCount++;
+    }
+
+    /*
+     * Everything below the nodes of a variation ends with the variation.
+     */
+    private void closeOpenNodes(int depth, int end) {
+      while (openCount > 0 && openDepths[openCount - 1] > depth) {
+        openCount--;
+        openNodes[openCount].setSource(openStarts[openCount], end);
+        openNodes[openCount] = null;
+      }
+    }
+
+    @Override
+    public void property(String key, String value) {
       // these properties require some cleanup
       // they are for adding black, white stones or making them empty
       // they can be in the format of AE[ab][dd:ff][aa,bb]
       if ("AB".equals(key) || "AW".equals(key) || "AE".equals(key)) {
-        // these come in as a list of coordinates while the first [ is cut off
-        // and also the last ], easy to split by ][
-        String[] list = value.split("\\]\\[");
+        // multiple values come in as aa][bb, we keep them as aa,bb
+        value = value.replace("][", ",");
         // if the parent node is null then these are
         // game properties, if not null then the node properties
         if (parentNode == null) {
-          game.addProperty(key, String.join(",", list));
+          game.addProperty(key, value);
         }
         else {
-          rtrnNode.addProperty(key, String.join(",", list));
+          node.addProperty(key, value);
         }
       }
       else if ("C".equals(key) || "N".equals(key)) {
@@ -417,7 +568,7 @@ public class Parser {
           game.addProperty(key, value);
         }
         else {
-          rtrnNode.addProperty(key, value);
+          node.addProperty(key, value);
         }
       }
       else if (generalProps.contains(key) || nodeProps.contains(key)) {
@@ -428,27 +579,20 @@ public class Parser {
         }
 
         if (nodeProps.contains(key) && !addedToGame) {
-          rtrnNode.addProperty(key, cleanValue(value));
+          node.addProperty(key, cleanValue(value));
         }
       }
       else {
-        log.info("Not able to parse property '" + m.group(1) + "'=" + m.group(2) + ". Found it from " + m.group(0));
-        //throw new SgfParseException("Ignoring property '" + m.group(1) + "'=" + m.group(2) + " Found it from '" + m.group(0) + "'");
+        log.info("Not able to parse property '" + key + "'=" + value);
       }
     }
 
-    return rtrnNode;
-  }
-
-  private String cleanValue(String value) {
-    String cleaned = value.replaceAll("\\\\;", ";");
-    return cleaned;
-  }
-
-  private static String prepareToken(String token) {
-    token = token.replaceAll("\\\\\\[", "@@@@@");
-    token = token.replaceAll("\\\\\\]", "#####");
-    return token;
+    private String cleanValue(String value) {
+      if (value.indexOf("\\;") == -1) {
+        return value;
+      }
+      return value.replace("\\;", ";");
+    }
   }
 
   public static String normaliseToken(String token) {
@@ -7,11 +7,25 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Main entry point for parsing and writing SGF (Smart Game Format) files.
@@ -79,6 +93,53 @@ public class Sgf {
     }
   }
 
+  /**
+   * Creates a Game from a memory mapped SGF file using the encoding named
+   * by the CA property of the game, or UTF-8 if there is no CA. The file
+   * is parsed as bytes and only the property values are decoded, so the
+   * content is never held in memory as a String. The game has no original
+   * SGF attached.
+   *
+   * @param path the path to the SGF file
+   * @return a parsed Game object
+   * @throws RuntimeException if the file cannot be read
+   * @see SgfReader#SgfReader(ByteBuffer)
+   */
+  public static Game createFromMappedPath(Path path) {
+    Game game = Parser.parse(new SgfReader(map(path)));
+    game.postProcess();
+    return game;
+  }
+
+  /**
+   * Creates a Game from a memory mapped SGF file using the specified
+   * character encoding.
+   *
+   * @param path the path to the SGF file
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   * @return a parsed Game object
+   * @throws RuntimeException if the file cannot be read
+   * @throws IllegalArgumentException if the encoding is not supported, see {@link SgfReader#SgfReader(ByteBuffer, Charset)}
+   */
+  public static Game createFromMappedPath(Path path, String charSet) {
+    return createFromByteBuffer(map(path), charSet);
+  }
+
+  /**
+   * Creates a Game from encoded SGF content. The bytes between the position
+   * and the limit of the buffer are parsed, the buffer is not modified.
+   *
+   * @param buffer the SGF content
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   * @return a parsed Game object
+   * @throws IllegalArgumentException if the encoding is not supported, see {@link SgfReader#SgfReader(ByteBuffer, Charset)}
+   */
+  public static Game createFromByteBuffer(ByteBuffer buffer, String charSet) {
+    Game game = Parser.parse(new SgfReader(buffer, Charset.forName(charSet)));
+    game.postProcess();
+    return game;
+  }
+
   /**
    * Creates a Game by parsing an SGF string.
    *
@@ -113,6 +174,191 @@ public class Sgf {
 
   }
 
+  /**
+   * Creates an iterator over all the games in a SGF collection. Each game
+   * is parsed only when the iterator gets to it, so the memory needed is
+   * bounded by the biggest game and not by the size of the collection.
+   * The games have no original SGF attached.
+   *
+   * @param reader the SGF content, not closed by the iterator
+   * @return an iterator of the games
+   */
+  public static Iterator<Game> createIterator(Reader reader) {
+    return Spliterators.iterator(new GameSpliterator(new SgfReader(reader)));
+  }
+
+  /**
+   * Creates a stream of all the games in a SGF file using UTF-8 encoding.
+   * The games are parsed lazily, see {@link #createIterator(Reader)}. The
+   * stream holds the file open and has to be closed:
+   *
+   * <pre>
+   * try (Stream&lt;Game&gt; games = Sgf.createStreamFromPath(path)) {
+   *   games.parallel().forEach(game -&gt; ...);
+   * }
+   * </pre>
+   *
+   * For a parallel stream the file is still read by a single thread but
+   * building the games is spread between the worker threads.
+   *
+   * @param path the path to the SGF file
+   * @return a stream of the games
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static Stream<Game> createStreamFromPath(Path path) {
+    return createStreamFromPath(path, "UTF-8");
+  }
+
+  /**
+   * Creates a stream of all the games in a SGF file using the specified
+   * character encoding.
+   *
+   * @param path the path to the SGF file
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   * @return a stream of the games
+   * @throws RuntimeException if the file cannot be read
+   * @see #createStreamFromPath(Path)
+   */
+  public static Stream<Game> createStreamFromPath(Path path, String charSet) {
+    // an unknown charset fails here, before there is a file to close
+    Charset charset = Charset.forName(charSet);
+    try {
+      InputStream in = Files.newInputStream(path);
+      return createStream(new InputStreamReader(in, charset)).onClose(() -> {
+        try {
+          in.close();
+        }
+        catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Creates a stream of all the games in SGF content read from an
+   * InputStream using UTF-8 encoding. The stream is not closed.
+   *
+   * @param in the input stream containing SGF content
+   * @return a stream of the games
+   * @see #createStreamFromPath(Path)
+   */
+  public static Stream<Game> createStreamFromInputStream(InputStream in) {
+    return createStream(new InputStreamReader(in, Charset.forName("UTF-8")));
+  }
+
+  /**
+   * Creates a stream of all the games in a memory mapped SGF file. Each
+   * game is decoded with the encoding named by its CA property, or UTF-8
+   * if there is no CA. See {@link #createFromMappedPath(Path)} and
+   * {@link #createStreamFromPath(Path)}.
+   *
+   * @param path the path to the SGF file
+   * @return a stream of the games
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static Stream<Game> createStreamFromMappedPath(Path path) {
+    return StreamSupport.stream(new GameSpliterator(new SgfReader(map(path))), false);
+  }
+
+  /**
+   * Creates a stream of all the games in a memory mapped SGF file using
+   * the specified character encoding.
+   *
+   * @param path the path to the SGF file
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   * @return a stream of the games
+   * @throws RuntimeException if the file cannot be read
+   * @throws IllegalArgumentException if the encoding is not supported, see {@link SgfReader#SgfReader(ByteBuffer, Charset)}
+   */
+  public static Stream<Game> createStreamFromMappedPath(Path path, String charSet) {
+    SgfReader reader = new SgfReader(map(path), Charset.forName(charSet));
+    return StreamSupport.stream(new GameSpliterator(reader), false);
+  }
+
+  private static Stream<Game> createStream(Reader reader) {
+    return StreamSupport.stream(new GameSpliterator(new SgfReader(reader)), false);
+  }
+
+  /**
+   * Parses an SGF file using UTF-8 encoding and reports its contents to the
+   * handler. The file is read in small chunks and no {@link Game} is built,
+   * so this works for collections of any size.
+   *
+   * @param path the path to the SGF file
+   * @param handler the handler receiving the parsing events
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static void parse(Path path, SgfHandler handler) {
+    parse(path, "UTF-8", handler);
+  }
+
+  /**
+   * Parses an SGF file using the specified character encoding and reports
+   * its contents to the handler.
+   *
+   * @param path the path to the SGF file
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   * @param handler the handler receiving the parsing events
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static void parse(Path path, String charSet, SgfHandler handler) {
+    try (InputStream in = Files.newInputStream(path)) {
+      Parser.parse(new InputStreamReader(in, charSet), handler);
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Parses SGF content from an InputStream using UTF-8 encoding and reports
+   * it to the handler. The stream is not closed.
+   *
+   * @param in the input stream containing SGF content
+   * @param handler the handler receiving the parsing events
+   */
+  public static void parse(InputStream in, SgfHandler handler) {
+    Parser.parse(new InputStreamReader(in, Charset.forName("UTF-8")), handler);
+  }
+
+  /**
+   * Reads only the game properties (player names, date, result etc.) from
+   * an SGF file using UTF-8 encoding. Reading stops at the end of the
+   * first node so only the beginning of the file is read and no moves are
+   * parsed. The result is the same as
+   * <code>createFromPath(path).getProperties()</code>.
+   *
+   * @param path the path to the SGF file
+   * @return the game properties
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static Map<String, String> readHeader(Path path) {
+    return readHeader(path, "UTF-8");
+  }
+
+  /**
+   * Reads only the game properties from an SGF file using the specified
+   * character encoding.
+   *
+   * @param path the path to the SGF file
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   * @return the game properties
+   * @throws RuntimeException if the file cannot be read
+   * @see #readHeader(Path)
+   */
+  public static Map<String, String> readHeader(Path path, String charSet) {
+    try (InputStream in = Files.newInputStream(path)) {
+      return Parser.parseHeader(new InputStreamReader(in, charSet));
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Writes a Game to an SGF file using UTF-8 encoding.
    *
@@ -134,16 +380,7 @@ public class Sgf {
    * @throws RuntimeException if the file cannot be written
    */
   public static void writeToFile(Game game, Path destination, String encoding, boolean keepOriginal) {
-    if (keepOriginal) {
-      Path copyOfOriginal = Paths.get(destination.toString() + ".orig." + System.currentTimeMillis());
-      try {
-        Files.copy(destination, copyOfOriginal);
-      }
-      catch (IOException e) {
-        throw new RuntimeException(e);
-      }
-    }
-    writeToFile(game, destination, encoding);
+    writeToFile(game, destination, encoding, keepOriginal, false);
   }
 
   /**
@@ -155,13 +392,160 @@ public class Sgf {
    * @throws RuntimeException if the file cannot be written
    */
   public static void writeToFile(Game game, Path destination, String encoding) {
-    try (
-        OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(destination.toFile()), Charset.forName(encoding).newEncoder())) {
-      osw.write(game.getGeneratedSgf());
+    writeToFile(game, destination, encoding, false, false);
+  }
+
+  /**
+   * Writes a Game to an SGF file so that the file has either the old or
+   * the new content even if the program or the machine dies half way. The
+   * game is written to a temporary file next to the destination that is
+   * then moved over the destination in one step.
+   *
+   * The backup of the original file is a hard link to it or, where links
+   * are not supported, the original file renamed, the content is never
+   * copied.
+   *
+   * If the destination is a symbolic link the file it points to is
+   * replaced and the link is kept, the temporary file and the backup are
+   * next to that file.
+   *
+   * @param game the game to write
+   * @param destination the path where the SGF file will be written
+   * @param encoding the character encoding to use
+   * @param keepOriginal if true, keeps the original file with a timestamp suffix
+   * @param sync if true, the file is forced to the disk before it replaces
+   *          the original, slower but survives a power loss
+   * @throws RuntimeException if the file cannot be written, the original
+   *           file is left as it was
+   */
+  public static void writeToFile(Game game, Path destination, String encoding, boolean keepOriginal, boolean sync) {
+    writeToFile(game, destination, encoding, keepOriginal, sync, SgfWriter.Mode.DEFAULT);
+  }
+
+  static void writeToFile(Game game, Path destination, String encoding, boolean keepOriginal, boolean sync, SgfWriter.Mode mode) {
+    Path tmpFile = null;
+    try {
+      Path target = resolveLinks(destination);
+      tmpFile = createTempFileNextTo(target);
+      try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE);
+          SgfWriter writer = new SgfWriter(Channels.newOutputStream(channel), encoding)) {
+        writer.setMode(mode);
+        writer.write(game);
+        writer.flush();
+        if (sync) {
+          channel.force(true);
+        }
+      }
+
+      if (Files.exists(target)) {
+        copyPermissions(target, tmpFile);
+        if (keepOriginal) {
+          backup(target);
+        }
+      }
+      moveAtomically(tmpFile, target);
+      tmpFile = null;
+      if (sync) {
+        syncDirectory(target.getParent());
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
     }
+    finally {
+      if (tmpFile != null) {
+        try {
+          Files.deleteIfExists(tmpFile);
+        }
+        catch (IOException e) {
+          // the exception that got us here is more interesting
+        }
+      }
+    }
+  }
+
+  /*
+   * The file a symbolic link points to, the rename would otherwise replace
+   * the link with a regular file. A link to a file that doesn't exist yet
+   * is followed too, writing through it creates the file.
+   */
+  private static Path resolveLinks(Path destination) throws IOException {
+    if (Files.exists(destination)) {
+      return destination.toRealPath();
+    }
+    Path rtrn = destination.toAbsolutePath();
+    for (int i = 0; i < 40 && Files.isSymbolicLink(rtrn); i++) {
+      rtrn = rtrn.resolveSibling(Files.readSymbolicLink(rtrn)).normalize();
+    }
+    return rtrn;
+  }
+
+  /*
+   * A hidden file in the same directory, a move to another file system
+   * would be a copy.
+   */
+  private static Path createTempFileNextTo(Path target) throws IOException {
+    String name = "." + target.getFileName() + ".";
+    while (true) {
+      Path rtrn = target.resolveSibling(name + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      try {
+        // not Files.createTempFile, the file would be readable only by
+        // the owner
+        FileChannel.open(rtrn, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+        return rtrn;
+      }
+      catch (FileAlreadyExistsException e) {
+        // try another name
+      }
+    }
+  }
+
+  private static void copyPermissions(Path from, Path to) throws IOException {
+    try {
+      Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+    }
+    catch (UnsupportedOperationException e) {
+      // not a POSIX file system
+    }
+  }
+
+  /*
+   * A link keeps the destination in place until it is replaced, a rename
+   * leaves no file at the destination until the move.
+   */
+  private static void backup(Path target) throws IOException {
+    Path copyOfOriginal = Paths.get(target.toString() + ".orig." + System.currentTimeMillis());
+    try {
+      Files.createLink(copyOfOriginal, target);
+    }
+    catch (FileAlreadyExistsException e) {
+      throw e;
+    }
+    catch (UnsupportedOperationException | IOException e) {
+      Files.move(target, copyOfOriginal);
+    }
+  }
+
+  private static void moveAtomically(Path from, Path to) throws IOException {
+    try {
+      Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /*
+   * The rename is durable only when the directory is forced too. Not all
+   * platforms can open a directory, there it is left to the file system.
+   */
+  private static void syncDirectory(Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+    catch (IOException e) {
+      // the file itself is on the disk already
+    }
   }
 
   /**
@@ -194,6 +578,19 @@ public class Sgf {
     }
   }
 
+  /*
+   * The mapping stays valid after the channel is closed. Files bigger
+   * than 2GB can't be mapped in one go.
+   */
+  private static MappedByteBuffer map(Path path) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private Game getGame() {
     return game;
   }
@@ -0,0 +1,72 @@
+package com.toomasr.sgf4j.parser;
+
+/**
+ * Receives the contents of a SGF file as a stream of events. This is
+ * handy when you don't need the full {@link Game} object, for example
+ * when indexing big collections you might only need a couple of header
+ * properties and the main line. No game tree is built and the memory
+ * used does not depend on the size of the input.
+ *
+ * <p>For the SGF <code>(;GM[1];B[aa](;W[bb])(;W[cc]))</code> the events
+ * are:</p>
+ * <pre>
+ * startGame
+ *   startNode property(GM, 1) endNode
+ *   startNode property(B, aa) endNode
+ *   startVariation
+ *     startNode property(W, bb) endNode
+ *   endVariation
+ *   startVariation
+ *     startNode property(W, cc) endNode
+ *   endVariation
+ * endGame
+ * </pre>
+ *
+ * <p>A file can hold many games, each of them gets its own startGame and
+ * endGame.</p>
+ *
+ * @see Sgf#parse(java.nio.file.Path, SgfHandler)
+ * @see Parser#parse(java.io.Reader, SgfHandler)
+ */
+public interface SgfHandler {
+  /**
+   * A new game tree starts, this is a top level <code>(</code>.
+   */
+  void startGame();
+
+  /**
+   * The game tree ends.
+   */
+  void endGame();
+
+  /**
+   * A variation starts, this is any <code>(</code> inside a game tree.
+   */
+  void startVariation();
+
+  /**
+   * The variation ends.
+   */
+  void endVariation();
+
+  /**
+   * A new node starts.
+   */
+  void startNode();
+
+  /**
+   * The current node ends, all its properties have been reported.
+   */
+  void endNode();
+
+  /**
+   * A property of the current node. The value is passed as it is in the
+   * file, escapes are not removed. If the property has multiple values
+   * they are joined with "][", for example AB[aa][bb] is reported as
+   * "aa][bb".
+   *
+   * @param key the property identifier
+   * @param value the raw value of the property
+   */
+  void property(String key, String value);
+}
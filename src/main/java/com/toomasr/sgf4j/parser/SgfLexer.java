@@ -0,0 +1,297 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Single pass tokenizer for SGF text. It walks the characters once and
+ * hands out the structure of the file (game trees, nodes) and the raw
+ * property identifiers and values. No regular expressions and no
+ * placeholder replacing is involved.
+ *
+ * The input is read in fixed size chunks so the memory used does not
+ * depend on the size of the input, only on the size of the largest
+ * property value.
+ *
+ * The rules follow what the regex based parser used to accept:
+ * <ul>
+ * <li>a property identifier is the run of letters right before the first
+ * <code>[</code>, newlines inside or after the identifier are ignored</li>
+ * <li>a <code>]</code> preceded by a backslash does not end a value</li>
+ * <li>consecutive values of a property may be separated by newlines but
+ * not by other whitespace</li>
+ * <li>values without an identifier and values that never end are dropped</li>
+ * </ul>
+ */
+class SgfLexer implements SgfTokenizer {
+  enum Token {
+    TREE_START, TREE_END, NODE, PROPERTY, EOF
+  }
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Reader reader;
+  private final char[] buf = new char[BUFFER_SIZE];
+  private int pos = 0;
+  private int limit = 0;
+  // the number of characters before the start of buf and where the last
+  // token started
+  private int bufOffset = 0;
+  private int tokenOffset = 0;
+  // the last character consumed, needed to detect escapes when
+  // the escape character was at the end of the previous chunk
+  private char prev = 0;
+  private boolean inNode = false;
+
+  private char[] keyBuf = new char[16];
+  private int keyLength;
+  private String key;
+
+  // the values of the current property are concatenated into valueBuf
+  // and valueEnds marks where each of them ends
+  private char[] valueBuf = new char[256];
+  private int valueLength;
+  private int[] valueEnds = new int[8];
+  private int valueCount;
+
+  public SgfLexer(String sgf) {
+    this(new StringReader(sgf));
+  }
+
+  public SgfLexer(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Advances to the next token.
+   *
+   * @return the type of the token found
+   */
+  @Override
+  public Token next() {
+    if (inNode) {
+      Token token = nextProperty();
+      if (token != null) {
+        return token;
+      }
+      inNode = false;
+    }
+
+    while (pos < limit || fill()) {
+      char chr = buf[pos++];
+      char before = prev;
+      prev = chr;
+      if ('(' == chr) {
+        tokenOffset = bufOffset + pos - 1;
+        return Token.TREE_START;
+      }
+      else if (')' == chr) {
+        tokenOffset = bufOffset + pos - 1;
+        return Token.TREE_END;
+      }
+      else if (';' == chr && before != '\\') {
+        tokenOffset = bufOffset + pos - 1;
+        inNode = true;
+        return Token.NODE;
+      }
+    }
+    tokenOffset = bufOffset;
+    return Token.EOF;
+  }
+
+  @Override
+  public int getOffset() {
+    return tokenOffset;
+  }
+
+  /*
+   * Finds the next property of the current node. Returns null if the node
+   * ends before another property is found.
+   */
+  private Token nextProperty() {
+    keyLength = 0;
+    while (pos < limit || fill()) {
+      char chr = buf[pos];
+      if ((chr >= 'A' && chr <= 'Z') || (chr >= 'a' && chr <= 'z')) {
+        if (keyLength == keyBuf.length) {
+          keyBuf = grow(keyBuf, keyLength);
+        }
+        keyBuf[keyLength++] = chr;
+        consume(chr);
+      }
+      else if ('\n' == chr || '\r' == chr) {
+        // newlines between nodes and properties are meaningless
+        consume(chr);
+      }
+      else if ('[' == chr) {
+        if (!readValues()) {
+          return null;
+        }
+        if (keyLength == 0) {
+          // values without a property identifier, nothing to do with these
+          continue;
+        }
+        key = StringCache.key(keyBuf, keyLength);
+        return Token.PROPERTY;
+      }
+      else if (';' == chr || '(' == chr || ')' == chr) {
+        return null;
+      }
+      else {
+        // any other character breaks the property identifier
+        keyLength = 0;
+        consume(chr);
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Reads one or more values starting at the current '['. Returns false if
+   * the input ended before the value was closed.
+   */
+  private boolean readValues() {
+    valueCount = 0;
+    valueLength = 0;
+    while ((pos < limit || fill()) && buf[pos] == '[') {
+      consume('[');
+
+      boolean closed = false;
+      while (!closed) {
+        if (pos == limit && !fill()) {
+          return false;
+        }
+
+        int start = pos;
+        char before = prev;
+        while (pos < limit) {
+          char chr = buf[pos];
+          if (chr == ']' && before != '\\') {
+            closed = true;
+            break;
+          }
+          before = chr;
+          pos++;
+        }
+        prev = before;
+        appendValue(start, pos);
+      }
+      consume(']');
+      addValueEnd();
+
+      // values can be split over many lines, AB[aa]\n[bb]
+      while ((pos < limit || fill()) && (buf[pos] == '\n' || buf[pos] == '\r')) {
+        consume(buf[pos]);
+      }
+    }
+    return true;
+  }
+
+  private void consume(char chr) {
+    pos++;
+    prev = chr;
+  }
+
+  private boolean fill() {
+    bufOffset += limit;
+    try {
+      int read;
+      do {
+        read = reader.read(buf, 0, buf.length);
+      }
+      while (read == 0);
+
+      if (read == -1) {
+        pos = limit = 0;
+        return false;
+      }
+      pos = 0;
+      limit = read;
+      return true;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void appendValue(int start, int end) {
+    int len = end - start;
+    if (valueLength + len > valueBuf.length) {
+      valueBuf = grow(valueBuf, valueLength + len);
+    }
+    System.arraycopy(buf, start, valueBuf, valueLength, len);
+    valueLength += len;
+  }
+
+  private void addValueEnd() {
+    if (valueCount == valueEnds.length) {
+      int[] tmp = new int[valueEnds.length * 2];
+      System.arraycopy(valueEnds, 0, tmp, 0, valueEnds.length);
+      valueEnds = tmp;
+    }
+    valueEnds[valueCount++] = valueLength;
+  }
+
+  /**
+   * Returns the identifier of the current property.
+   *
+   * @return the property identifier, for example "B" or "AB"
+   */
+  @Override
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the number of values the current property has.
+   *
+   * @return number of values
+   */
+  @Override
+  public int getValueCount() {
+    return valueCount;
+  }
+
+  /**
+   * Returns the raw value of the current property. Multiple values are
+   * joined with "][" which is the way they are kept in {@link GameNode}.
+   *
+   * @return the raw property value
+   */
+  @Override
+  public String getValue() {
+    return getValue("][");
+  }
+
+  /**
+   * Returns the raw value of the current property with multiple values
+   * joined by the given separator.
+   *
+   * @param separator the string to put between values
+   * @return the raw property value
+   */
+  @Override
+  public String getValue(String separator) {
+    if (valueCount == 1) {
+      return new String(valueBuf, 0, valueLength);
+    }
+
+    StringBuilder rtrn = new StringBuilder(valueLength + valueCount * separator.length());
+    int start = 0;
+    for (int i = 0; i < valueCount; i++) {
+      if (i > 0) {
+        rtrn.append(separator);
+      }
+      rtrn.append(valueBuf, start, valueEnds[i] - start);
+      start = valueEnds[i];
+    }
+    return rtrn.toString();
+  }
+
+  private static char[] grow(char[] array, int minLength) {
+    char[] rtrn = new char[Math.max(array.length * 2, minLength)];
+    System.arraycopy(array, 0, rtrn, 0, array.length);
+    return rtrn;
+  }
+}
@@ -0,0 +1,224 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A cursor over SGF content. Each call to {@link #next()} reads just
+ * enough of the input to find the next token, so you can stop at any
+ * point without paying for the rest of the file. For example to read
+ * the root node properties only:
+ *
+ * <pre>
+ * try (SgfReader reader = new SgfReader(Files.newBufferedReader(path))) {
+ *   SgfReader.Token token = reader.next(); // GAME_START
+ *   token = reader.next(); // NODE
+ *   while ((token = reader.next()) == SgfReader.Token.PROPERTY) {
+ *     System.out.println(reader.getKey() + "=" + reader.getValue());
+ *   }
+ * }
+ * </pre>
+ *
+ * A node ends when any token other than {@link Token#PROPERTY} is
+ * returned.
+ *
+ * @see SgfHandler for the push style alternative
+ */
+public class SgfReader implements Closeable {
+  public enum Token {
+    /** A top level <code>(</code> */
+    GAME_START,
+    /** The <code>)</code> closing the game */
+    GAME_END,
+    /** A <code>(</code> inside a game */
+    VARIATION_START,
+    /** The <code>)</code> closing a variation */
+    VARIATION_END,
+    /** A <code>;</code> starting a new node */
+    NODE,
+    /** A property of the current node */
+    PROPERTY,
+    /** There is nothing more to read */
+    END
+  }
+
+  private final Reader reader;
+  private final SgfTokenizer lexer;
+  private Token token = null;
+  private int depth = 0;
+
+  /**
+   * Creates a reader over the given SGF content. The content is read in
+   * chunks as the cursor advances.
+   *
+   * @param reader the SGF content
+   */
+  public SgfReader(Reader reader) {
+    this.reader = reader;
+    this.lexer = new SgfLexer(reader);
+  }
+
+  /**
+   * Creates a reader over a SGF string.
+   *
+   * @param sgf the SGF content
+   */
+  public SgfReader(String sgf) {
+    this(new StringReader(sgf));
+  }
+
+  /**
+   * Creates a reader over encoded SGF content that decodes each game with
+   * the encoding named by the CA property of its root node, UTF-8 is used
+   * when there is no CA. The content is read only once, the root node is
+   * looked at before any of its properties are handed out.
+   *
+   * If CA names an encoding where ASCII characters can be part of a multi
+   * byte character, for example Shift_JIS, the rest of the content is
+   * decoded with it as text and any following games in the same buffer
+   * are decoded with it too.
+   *
+   * @param buffer the SGF content
+   */
+  public SgfReader(ByteBuffer buffer) {
+    this.reader = null;
+    this.lexer = new ByteSgfLexer(buffer, StandardCharsets.UTF_8, true);
+  }
+
+  /**
+   * Creates a reader over encoded SGF content, for example a memory mapped
+   * file. The bytes between the position and the limit of the buffer are
+   * read, the buffer itself is not modified. Values are decoded only when
+   * {@link #getValue()} is called.
+   *
+   * Only encodings where ASCII characters can't be part of a multi byte
+   * character are supported, for example UTF-8 and ISO-8859-1.
+   *
+   * @param buffer the SGF content
+   * @param charset the encoding of the content
+   * @throws IllegalArgumentException if the charset is not supported
+   */
+  public SgfReader(ByteBuffer buffer, Charset charset) {
+    this.reader = null;
+    this.lexer = new ByteSgfLexer(buffer, charset);
+  }
+
+  /**
+   * Advances to the next token. Once {@link Token#END} is returned all
+   * subsequent calls return it too. Games or variations that are not
+   * closed at the end of the input are closed before END is returned.
+   *
+   * @return the type of the token found
+   */
+  public Token next() {
+    if (token == Token.END) {
+      return token;
+    }
+
+    while (true) {
+      SgfLexer.Token lexerToken = lexer.next();
+      if (lexerToken == SgfLexer.Token.PROPERTY) {
+        token = Token.PROPERTY;
+      }
+      else if (lexerToken == SgfLexer.Token.NODE) {
+        token = Token.NODE;
+      }
+      else if (lexerToken == SgfLexer.Token.TREE_START) {
+        token = depth == 0 ? Token.GAME_START : Token.VARIATION_START;
+        depth++;
+      }
+      else if (lexerToken == SgfLexer.Token.TREE_END) {
+        // a stray ) outside of any game, nothing to report
+        if (depth == 0) {
+          continue;
+        }
+        depth--;
+        token = depth == 0 ? Token.GAME_END : Token.VARIATION_END;
+      }
+      else if (depth > 0) {
+        depth--;
+        token = depth == 0 ? Token.GAME_END : Token.VARIATION_END;
+      }
+      else {
+        token = Token.END;
+      }
+      return token;
+    }
+  }
+
+  /**
+   * Returns the token the cursor is at.
+   *
+   * @return the current token or null if {@link #next()} has not been called
+   */
+  public Token getToken() {
+    return token;
+  }
+
+  /**
+   * Returns how many games and variations the cursor is in. Nodes of the
+   * game itself are at depth 1, nodes of a variation at depth 2 etc.
+   *
+   * @return the nesting depth
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns where the current token starts in the input, the length of
+   * the input at {@link Token#END}. For a property it is the start of the
+   * node it belongs to. Only text input keeps track of the offsets.
+   *
+   * @return the offset in characters or -1 for encoded input
+   */
+  public int getOffset() {
+    return lexer.getOffset();
+  }
+
+  /**
+   * Returns the identifier of the current property. Only valid when the
+   * cursor is at a {@link Token#PROPERTY}.
+   *
+   * @return the property identifier, for example "B" or "AB"
+   */
+  public String getKey() {
+    return lexer.getKey();
+  }
+
+  /**
+   * Returns the raw value of the current property, escapes are not
+   * removed. Multiple values are joined with "][", for example AB[aa][bb]
+   * is returned as "aa][bb". Only valid when the cursor is at a
+   * {@link Token#PROPERTY}.
+   *
+   * @return the raw property value
+   */
+  public String getValue() {
+    return lexer.getValue();
+  }
+
+  /**
+   * Returns the number of values the current property has.
+   *
+   * @return number of values
+   */
+  public int getValueCount() {
+    return lexer.getValueCount();
+  }
+
+  /**
+   * Closes the underlying reader, if there is one.
+   */
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.toomasr.sgf4j.parser;
+
+/**
+ * The tokens of SGF content, see {@link SgfLexer} for text and
+ * {@link ByteSgfLexer} for encoded bytes.
+ */
+interface SgfTokenizer {
+  /**
+   * Advances to the next token.
+   *
+   * @return the type of the token found
+   */
+  SgfLexer.Token next();
+
+  /**
+   * Returns where the last token other than a property starts in the
+   * input, the length of the input at the end.
+   *
+   * @return the offset in characters or -1 if it is not known
+   */
+  int getOffset();
+
+  /**
+   * Returns the identifier of the current property.
+   *
+   * @return the property identifier, for example "B" or "AB"
+   */
+  String getKey();
+
+  /**
+   * Returns the number of values the current property has.
+   *
+   * @return number of values
+   */
+  int getValueCount();
+
+  /**
+   * Returns the raw value of the current property. Multiple values are
+   * joined with "][" which is the way they are kept in {@link GameNode}.
+   *
+   * @return the raw property value
+   */
+  String getValue();
+
+  /**
+   * Returns the raw value of the current property with multiple values
+   * joined by the given separator.
+   *
+   * @param separator the string to put between values
+   * @return the raw property value
+   */
+  String getValue(String separator);
+}
@@ -0,0 +1,772 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes games as SGF straight to an {@link Appendable}, a
+ * {@link java.io.Writer}, a {@link StringBuilder} or an
+ * {@link OutputStream}. The nodes are written one property at a time, the
+ * SGF of the whole game is never in memory so writing a big game or a lot
+ * of games takes the same amount of memory as writing a small one.
+ *
+ * Every call to {@link #write(Game)} adds a game, a stream with more than
+ * one game is a SGF collection that {@link Sgf#createStreamFromPath} reads
+ * back.
+ *
+ * The layout of the output is set with {@link #setMode(Mode)}, see
+ * {@link Mode} for the choices.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * try (SgfWriter writer = new SgfWriter(Files.newOutputStream(path))) {
+ *   for (Game game : games) {
+ *     writer.write(game);
+ *   }
+ * }
+ * </pre>
+ */
+public class SgfWriter implements Closeable, Flushable {
+  private static final String TIME_SPENT = "TimeSpentOnMove";
+  // the properties that have a list of points as the value
+  private static final Set<String> POINT_LISTS = new HashSet<>(
+      Arrays.asList("AB", "AW", "AE", "CR", "MA", "SQ", "TR", "SL", "DD", "TB", "TW", "VW"));
+  // the points are kept separated by commas in these, "][" in the others
+  private static final Set<String> COMMA_LISTS = new HashSet<>(Arrays.asList("AB", "AW", "AE"));
+  // the values of these are two values separated by a colon, in the others
+  // a colon is just text
+  private static final Set<String> COMPOSED = new HashSet<>(Arrays.asList("AP", "AR", "FG", "LB", "LN", "SZ"));
+  private static final int MAX_POINTS = 52;
+
+  private static final Object OPEN = new Object();
+  private static final Object CLOSE = new Object();
+
+  /**
+   * The layouts of the SGF written.
+   */
+  public enum Mode {
+    /**
+     * The same output as the earlier versions, a node on every line with
+     * the properties in the order they were added. This is what
+     * {@link Game#getGeneratedSgf()} gives.
+     */
+    DEFAULT,
+    /**
+     * As few characters as possible: no line breaks and the lists of
+     * points compressed into rectangles, AB[aa:ac] instead of
+     * AB[aa][ab][ac].
+     */
+    COMPACT,
+    /**
+     * The same game is always written the same way so the output can be
+     * hashed or compared: no line breaks, the properties of a node sorted
+     * by key, the lists of points as single points in order and only the
+     * escapes that are needed, line breaks in text as \n.
+     */
+    CANONICAL,
+    /**
+     * For reading, every node and every parenthesis on a line of its own
+     * and the variations indented.
+     */
+    PRETTY,
+    /**
+     * For saving a game that was parsed from a SGF string: what has not
+     * been edited since is copied from {@link Game#getOriginalSgf()} with
+     * its formatting and only the edited nodes are generated, in the
+     * layout of the DEFAULT mode. Other games are written like in the
+     * DEFAULT mode.
+     */
+    PRESERVE
+  }
+
+  private final Appendable out;
+  private int gamesWritten = 0;
+  private Mode mode = Mode.DEFAULT;
+  // the points of a list while it is written, see writePoints
+  private final boolean[] points = new boolean[MAX_POINTS * MAX_POINTS];
+  private boolean lineStarted = false;
+
+  /**
+   * Creates a writer that appends to a {@link java.io.Writer},
+   * {@link StringBuilder} or any other {@link Appendable}. Wrap a
+   * {@link java.io.Writer} into a {@link BufferedWriter} unless it
+   * buffers itself.
+   *
+   * @param out where to write the games
+   */
+  public SgfWriter(Appendable out) {
+    this.out = out;
+  }
+
+  /**
+   * Creates a writer that writes to a stream using UTF-8 encoding.
+   *
+   * @param out the stream to write the games to
+   */
+  public SgfWriter(OutputStream out) {
+    this(out, "UTF-8");
+  }
+
+  /**
+   * Creates a writer that writes to a stream using the specified character
+   * encoding. Characters that can't be encoded are an error.
+   *
+   * @param out the stream to write the games to
+   * @param charSet the character encoding to use (e.g., "UTF-8", "ISO-8859-1")
+   */
+  public SgfWriter(OutputStream out, String charSet) {
+    this(new BufferedWriter(new OutputStreamWriter(out, Charset.forName(charSet).newEncoder())));
+  }
+
+  /**
+   * Sets the layout of the games written after this.
+   *
+   * @param mode the layout, DEFAULT if not set
+   */
+  public void setMode(Mode mode) {
+    this.mode = mode;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Writes a game. The games after the first one are put on a line of
+   * their own, in the COMPACT and CANONICAL modes they follow right after
+   * the previous one.
+   *
+   * @param game the game to write
+   * @throws RuntimeException if writing fails
+   */
+  public void write(Game game) {
+    if (mode == Mode.PRESERVE && game.getSource() != null) {
+      writePreserved(game);
+      return;
+    }
+    if (mode != Mode.DEFAULT && mode != Mode.PRESERVE) {
+      writeInMode(game);
+      return;
+    }
+    try {
+      if (gamesWritten > 0) {
+        out.append('\n');
+      }
+      out.append("(;");
+      for (Iterator<Map.Entry<String, String>> ite = game.getProperties().entrySet().iterator(); ite.hasNext();) {
+        Map.Entry<String, String> entry = ite.next();
+        String key = entry.getKey();
+        // the setup stones are kept as a comma separated list
+        if (key.equalsIgnoreCase("AB") || key.equalsIgnoreCase("AW")) {
+          writeList(key, entry.getValue());
+        }
+        else {
+          writeProperty(key, entry.getValue());
+        }
+      }
+      writeNodes(game.getRootNode());
+      out.append(')');
+      gamesWritten++;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the number of games written so far.
+   *
+   * @return the number of games
+   */
+  public int getGamesWritten() {
+    return gamesWritten;
+  }
+
+  /**
+   * Flushes the underlying output if it can be flushed.
+   *
+   * @throws RuntimeException if flushing fails
+   */
+  @Override
+  public void flush() {
+    try {
+      if (out instanceof Flushable) {
+        ((Flushable) out).flush();
+      }
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Closes the underlying output if it can be closed.
+   *
+   * @throws RuntimeException if closing fails
+   */
+  @Override
+  public void close() {
+    try {
+      if (out instanceof Closeable) {
+        ((Closeable) out).close();
+      }
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /*
+   * Writes a node, the nodes after it and all the variations. The work
+   * still to be done is kept on a stack, it holds the nodes to write out
+   * and the parentheses between the variations.
+   */
+  void writeNodes(GameNode startNode) throws IOException {
+    Deque<Object> work = new ArrayDeque<>();
+    work.push(startNode);
+
+    while (!work.isEmpty()) {
+      Object item = work.pop();
+      if (item instanceof String) {
+        out.append((String) item);
+        continue;
+      }
+
+      GameNode node = (GameNode) item;
+      while (node != null) {
+        writeNode(node);
+
+        // if we have children then first write out the getNextNode() and
+        // then the rest of the children
+        if (node.hasChildren()) {
+          List<GameNode> variations = new ArrayList<>();
+          variations.add(node.getNextNode());
+          variations.addAll(node.getChildren());
+          // pushed in reverse so that they are popped in order
+          for (int i = variations.size() - 1; i >= 0; i--) {
+            work.push(")\n");
+            work.push(variations.get(i));
+            work.push("(");
+          }
+          node = null;
+        }
+        // we can just continue with the next elem
+        else {
+          node = node.getNextNode();
+        }
+      }
+    }
+  }
+
+  /*
+   * Nodes without properties are skipped, the time spent on a move is
+   * worked out when parsing and is not written.
+   */
+  private void writeNode(GameNode node) throws IOException {
+    int count = node.getPropertyCount();
+    boolean hasProperties = false;
+    for (int i = 0; i < count && !hasProperties; i++) {
+      hasProperties = !TIME_SPENT.equals(node.getPropertyKey(i));
+    }
+    if (!hasProperties) {
+      return;
+    }
+
+    out.append(';');
+    for (int i = 0; i < count; i++) {
+      String key = node.getPropertyKey(i);
+      if (!TIME_SPENT.equals(key)) {
+        writeProperty(key, node.getPropertyValue(i));
+      }
+    }
+    out.append('\n');
+  }
+
+  private void writeProperty(String key, String value) throws IOException {
+    out.append(key).append('[').append(value).append(']');
+  }
+
+  // every value of a comma separated list in brackets of its own, the
+  // same values as String.split(",") gives
+  private void writeList(String key, String values) throws IOException {
+    if (values.indexOf(',') < 0) {
+      writeProperty(key, values);
+      return;
+    }
+    int last = values.length();
+    while (last > 0 && values.charAt(last - 1) == ',') {
+      last--;
+    }
+    for (int start = 0; start < last;) {
+      int end = values.indexOf(',', start);
+      if (end < 0 || end > last) {
+        end = last;
+      }
+      out.append(key).append('[').append(values, start, end).append(']');
+      start = end + 1;
+    }
+  }
+
+  /*
+   * Writes a game in the PRESERVE mode. A node with nothing changed in or
+   * below it is copied from the source together with everything below
+   * it, a node that has not changed itself is copied without the nodes
+   * below it. The root node holds the game properties too.
+   */
+  private void writePreserved(Game game) {
+    String source = game.getSource();
+    GameNode root = game.getRootNode();
+    try {
+      if (gamesWritten > 0) {
+        out.append('\n');
+      }
+      out.append('(');
+
+      Deque<Object> work = new ArrayDeque<>();
+      work.push(root);
+      while (!work.isEmpty()) {
+        Object item = work.pop();
+        if (item instanceof String) {
+          out.append((String) item);
+          continue;
+        }
+
+        GameNode node = (GameNode) item;
+        while (node != null) {
+          boolean changed = node.isChanged() || (node == root && game.isPropertiesChanged());
+          if (!changed && !node.isDirty()) {
+            // the rest of the line of play and its variations
+            out.append(source, node.getSourceStart(), node.getSourceEnd());
+            break;
+          }
+
+          if (!changed) {
+            out.append(source, node.getSourceStart(), nodeEnd(source, node.getSourceStart()));
+          }
+          else if (node == root) {
+            writeProperties(game.getProperties(), node);
+            out.append('\n');
+          }
+          else if (hasProperties(node)) {
+            writeProperties(null, node);
+            out.append('\n');
+          }
+
+          if (node.hasChildren()) {
+            List<GameNode> variations = new ArrayList<>();
+            variations.add(node.getNextNode());
+            variations.addAll(node.getChildren());
+            for (int i = variations.size() - 1; i >= 0; i--) {
+              work.push(")\n");
+              work.push(variations.get(i));
+              work.push("(");
+            }
+            node = null;
+          }
+          else {
+            node = node.getNextNode();
+          }
+        }
+      }
+      out.append(')');
+      gamesWritten++;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /*
+   * Finds where a node in the source ends, the same way SgfLexer does: at
+   * the first ; ( or ) that is not in a value. The whitespace after the
+   * node is kept with it.
+   */
+  private static int nodeEnd(String source, int start) {
+    boolean inValue = false;
+    char before = 0;
+    for (int i = start + 1; i < source.length(); i++) {
+      char chr = source.charAt(i);
+      if (inValue) {
+        inValue = chr != ']' || before == '\\';
+      }
+      else if (chr == '[') {
+        inValue = true;
+      }
+      else if (chr == ';' || chr == '(' || chr == ')') {
+        return i;
+      }
+      before = chr;
+    }
+    return source.length();
+  }
+
+  /*
+   * Writes a game in the COMPACT, CANONICAL or PRETTY mode. Unlike the
+   * DEFAULT mode the properties of the root node go into the same node as
+   * the properties of the game and the setup stones of the other nodes
+   * are written as lists too.
+   */
+  private void writeInMode(Game game) {
+    try {
+      lineStarted = false;
+      Deque<Object> work = new ArrayDeque<>();
+      work.push(CLOSE);
+      work.push(game.getRootNode());
+      work.push(OPEN);
+      int depth = 0;
+      while (!work.isEmpty()) {
+        Object item = work.pop();
+        if (item == OPEN) {
+          newLine(depth);
+          out.append('(');
+          depth++;
+          continue;
+        }
+        if (item == CLOSE) {
+          depth--;
+          newLine(depth);
+          out.append(')');
+          continue;
+        }
+
+        GameNode node = (GameNode) item;
+        while (node != null) {
+          if (node == game.getRootNode()) {
+            newLine(depth);
+            writeProperties(game.getProperties(), node);
+          }
+          else if (hasProperties(node)) {
+            newLine(depth);
+            writeProperties(null, node);
+          }
+
+          if (node.hasChildren()) {
+            List<GameNode> variations = new ArrayList<>();
+            variations.add(node.getNextNode());
+            variations.addAll(node.getChildren());
+            for (int i = variations.size() - 1; i >= 0; i--) {
+              work.push(CLOSE);
+              work.push(variations.get(i));
+              work.push(OPEN);
+            }
+            node = null;
+          }
+          else {
+            node = node.getNextNode();
+          }
+        }
+      }
+      if (mode == Mode.PRETTY) {
+        out.append('\n');
+      }
+      gamesWritten++;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // only the pretty output has line breaks, every game starts on the
+  // first line
+  private void newLine(int depth) throws IOException {
+    if (mode != Mode.PRETTY) {
+      return;
+    }
+    if (lineStarted) {
+      out.append('\n');
+    }
+    lineStarted = true;
+    for (int i = 0; i < depth; i++) {
+      out.append("  ");
+    }
+  }
+
+  private static boolean hasProperties(GameNode node) {
+    for (int i = 0; i < node.getPropertyCount(); i++) {
+      if (!TIME_SPENT.equals(node.getPropertyKey(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Writes a node with the properties of the game and of the node, in the
+   * order they were added or sorted by key in the CANONICAL mode.
+   */
+  private void writeProperties(Map<String, String> gameProperties, GameNode node) throws IOException {
+    int gameCount = gameProperties == null ? 0 : gameProperties.size();
+    int count = gameCount + node.getPropertyCount();
+    String[] keys = new String[count];
+    String[] values = new String[count];
+    int i = 0;
+    if (gameProperties != null) {
+      for (Map.Entry<String, String> entry : gameProperties.entrySet()) {
+        keys[i] = entry.getKey();
+        values[i++] = entry.getValue();
+      }
+    }
+    for (int j = 0; j < node.getPropertyCount(); j++) {
+      keys[i] = node.getPropertyKey(j);
+      values[i++] = node.getPropertyValue(j);
+    }
+    if (mode == Mode.CANONICAL) {
+      sortByKey(keys, values);
+    }
+
+    out.append(';');
+    for (i = 0; i < count; i++) {
+      if (TIME_SPENT.equals(keys[i])) {
+        continue;
+      }
+      if (POINT_LISTS.contains(keys[i]) && writePoints(keys[i], values[i])) {
+        continue;
+      }
+      out.append(keys[i]).append('[');
+      if (mode == Mode.CANONICAL) {
+        appendCanonical(values[i], COMPOSED.contains(keys[i]));
+      }
+      else {
+        out.append(values[i]);
+      }
+      out.append(']');
+    }
+  }
+
+  // insertion sort, nodes have only a few properties
+  private static void sortByKey(String[] keys, String[] values) {
+    for (int i = 1; i < keys.length; i++) {
+      String key = keys[i];
+      String value = values[i];
+      int j = i - 1;
+      while (j >= 0 && keys[j].compareTo(key) > 0) {
+        keys[j + 1] = keys[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      keys[j + 1] = key;
+      values[j + 1] = value;
+    }
+  }
+
+  /*
+   * Writes a list of points, compressed into rectangles in the COMPACT
+   * mode, as single points in order in the CANONICAL mode and as they are
+   * in the PRETTY mode. Returns false without writing anything if the
+   * value is not a list of points.
+   */
+  private boolean writePoints(String key, String value) throws IOException {
+    String separator = COMMA_LISTS.contains(key) ? "," : "][";
+    if (value.isEmpty()) {
+      out.append(key).append("[]");
+      return true;
+    }
+    if (mode == Mode.PRETTY || mode == Mode.PRESERVE) {
+      if (!separator.equals("][")) {
+        out.append(key).append('[').append(value.replace(separator, "][")).append(']');
+      }
+      else {
+        out.append(key).append('[').append(value).append(']');
+      }
+      return true;
+    }
+
+    try {
+      if (!readPoints(value, separator)) {
+        return false;
+      }
+      out.append(key);
+      if (mode == Mode.COMPACT) {
+        writeRectangles();
+      }
+      else {
+        for (int x = 0; x < MAX_POINTS; x++) {
+          for (int y = 0; y < MAX_POINTS; y++) {
+            if (points[x * MAX_POINTS + y]) {
+              out.append('[').append(letter(x)).append(letter(y)).append(']');
+            }
+          }
+        }
+      }
+      return true;
+    }
+    finally {
+      Arrays.fill(points, false);
+    }
+  }
+
+  // marks the points and rectangles of a list, false if the list has
+  // something else in it
+  private boolean readPoints(String value, String separator) {
+    int start = 0;
+    while (start <= value.length()) {
+      int end = value.indexOf(separator, start);
+      if (end < 0) {
+        end = value.length();
+      }
+      if (end - start == 2) {
+        if (!mark(value, start, start)) {
+          return false;
+        }
+      }
+      else if (end - start == 5 && value.charAt(start + 2) == ':') {
+        if (!mark(value, start, start + 3)) {
+          return false;
+        }
+      }
+      // lists kept with commas can end with one
+      else if (end != start || end != value.length()) {
+        return false;
+      }
+      start = end + separator.length();
+    }
+    return true;
+  }
+
+  private boolean mark(String value, int from, int to) {
+    int x1 = coord(value.charAt(from));
+    int y1 = coord(value.charAt(from + 1));
+    int x2 = coord(value.charAt(to));
+    int y2 = coord(value.charAt(to + 1));
+    if (x1 < 0 || y1 < 0 || x2 < 0 || y2 < 0) {
+      return false;
+    }
+    for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+      for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+        points[x * MAX_POINTS + y] = true;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Covers the points with rectangles going row by row, every rectangle is
+   * as wide as it can be and then as high as it can be.
+   */
+  private void writeRectangles() throws IOException {
+    for (int y = 0; y < MAX_POINTS; y++) {
+      for (int x = 0; x < MAX_POINTS; x++) {
+        if (!points[x * MAX_POINTS + y]) {
+          continue;
+        }
+        int x2 = x;
+        while (x2 + 1 < MAX_POINTS && points[(x2 + 1) * MAX_POINTS + y]) {
+          x2++;
+        }
+        int y2 = y;
+        while (y2 + 1 < MAX_POINTS && isRowSet(x, x2, y2 + 1)) {
+          y2++;
+        }
+        for (int i = x; i <= x2; i++) {
+          for (int j = y; j <= y2; j++) {
+            points[i * MAX_POINTS + j] = false;
+          }
+        }
+        out.append('[').append(letter(x)).append(letter(y));
+        if (x2 != x || y2 != y) {
+          out.append(':').append(letter(x2)).append(letter(y2));
+        }
+        out.append(']');
+      }
+    }
+  }
+
+  private boolean isRowSet(int x1, int x2, int y) {
+    for (int x = x1; x <= x2; x++) {
+      if (!points[x * MAX_POINTS + y]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int coord(char c) {
+    if (c >= 'a' && c <= 'z')
+      return c - 'a';
+    if (c >= 'A' && c <= 'Z')
+      return c - 'A' + 26;
+    return -1;
+  }
+
+  private static char letter(int coord) {
+    return (char) (coord < 26 ? 'a' + coord : 'A' + coord - 26);
+  }
+
+  /*
+   * Appends a value with only the escapes that are needed, \] and \\.
+   * A colon is escaped only in composed values, where the first colon
+   * that is not escaped separates the two parts and every other colon is
+   * written as \:. Soft line breaks are removed and the line breaks are
+   * \n.
+   */
+  private void appendCanonical(String value, boolean composed) throws IOException {
+    if (value.indexOf('\\') < 0 && value.indexOf('\r') < 0 && (!composed || value.indexOf(':') < 0)) {
+      out.append(value);
+      return;
+    }
+    boolean separated = false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        if (next == ']' || next == '\\') {
+          out.append('\\').append(next);
+        }
+        else if (next == ':') {
+          if (composed) {
+            out.append('\\');
+          }
+          out.append(':');
+        }
+        else if (next == '\n' || next == '\r') {
+          // a soft line break, \r\n and \n\r are one line break
+          if (i + 1 < value.length() && isOtherLineBreak(next, value.charAt(i + 1))) {
+            i++;
+          }
+        }
+        else {
+          out.append(next);
+        }
+      }
+      else if (c == ':' && composed) {
+        if (separated) {
+          out.append('\\');
+        }
+        out.append(':');
+        separated = true;
+      }
+      else if (c == ']') {
+        // the next of many values, AP[a:b][c:d]
+        separated = false;
+        out.append(c);
+      }
+      else if (c == '\r' || c == '\n') {
+        out.append('\n');
+        if (i + 1 < value.length() && isOtherLineBreak(c, value.charAt(i + 1))) {
+          i++;
+        }
+      }
+      else {
+        out.append(c);
+      }
+    }
+  }
+
+  private static boolean isOtherLineBreak(char c, char next) {
+    return (c == '\r' && next == '\n') || (c == '\n' && next == '\r');
+  }
+}
@@ -0,0 +1,79 @@
+package com.toomasr.sgf4j.parser;
+
+import static com.toomasr.sgf4j.parser.BinaryGameWriter.MAX_POINTS;
+
+/*
+ * The short strings every game repeats, the property identifiers and the
+ * points of the moves, are created once here and shared by all the games.
+ * The keys are interned so that they can be compared by reference.
+ *
+ * The caches are plain arrays read and written from many threads without
+ * locking. A String is safe to publish like that, so a race only means
+ * that the same String is created twice and one of them is kept.
+ */
+final class StringCache {
+  private static final String[] keys = new String[512];
+  private static final String[] points = new String[MAX_POINTS * MAX_POINTS];
+
+  private StringCache() {
+  }
+
+  /*
+   * The interned key for the characters of a property identifier.
+   */
+  static String key(char[] keyBuf, int keyLength) {
+    // the same hash as String.hashCode so that both lookups use one slot
+    int hash = 0;
+    for (int i = 0; i < keyLength; i++) {
+      hash = 31 * hash + keyBuf[i];
+    }
+    int slot = slot(hash);
+
+    String cached = keys[slot];
+    if (cached != null && cached.length() == keyLength) {
+      boolean same = true;
+      for (int i = 0; i < keyLength && same; i++) {
+        same = cached.charAt(i) == keyBuf[i];
+      }
+      if (same) {
+        return cached;
+      }
+    }
+
+    String rtrn = new String(keyBuf, 0, keyLength).intern();
+    keys[slot] = rtrn;
+    return rtrn;
+  }
+
+  /*
+   * The interned key, String.intern is a lookup in the JVM string table
+   * and the keys are used over and over.
+   */
+  static String key(String key) {
+    int slot = slot(key.hashCode());
+    String cached = keys[slot];
+    if (cached == key || (cached != null && cached.equals(key))) {
+      return cached;
+    }
+    String rtrn = key.intern();
+    keys[slot] = rtrn;
+    return rtrn;
+  }
+
+  private static int slot(int hash) {
+    return (hash ^ (hash >>> 9)) & (keys.length - 1);
+  }
+
+  /*
+   * The point of a move from its two letters, a-z and A-Z.
+   */
+  static String point(int x, int y) {
+    int index = BinaryGameWriter.coord(x) * MAX_POINTS + BinaryGameWriter.coord(y);
+    String rtrn = points[index];
+    if (rtrn == null) {
+      rtrn = new String(new char[] { (char) x, (char) y });
+      points[index] = rtrn;
+    }
+    return rtrn;
+  }
+}
@@ -13,53 +13,19 @@ public class Util {
       , "E", "F", "G", "H", "J"
       , "K", "L", "M", "N", "O"
       ,"P", "Q", "R", "S", "T" };
+  //@formatter:on
 
-  public static final Map<String, Integer> alphaToCoord = new HashMap<String, Integer>(){{
-    put("a", 0);
-    put("b", 1);
-    put("c", 2);
-    put("d", 3);
-    put("e", 4);
-    put("f", 5);
-    put("g", 6);
-    put("h", 7);
-    put("i", 8);
-    put("j", 9);
-    put("k", 10);
-    put("l", 11);
-    put("m", 12);
-    put("n", 13);
-    put("o", 14);
-    put("p", 15);
-    put("q", 16);
-    put("r", 17);
-    put("s", 18);
-    put("t", 19);
-  }};
+  // a-z are 0-25 and A-Z are 26-51, boards can be up to 52x52
+  public static final Map<String, Integer> alphaToCoord = new HashMap<String, Integer>();
+  public static final Map<Integer, String> coordToAlpha = new HashMap<Integer, String>();
+  static {
+    String letters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    for (int i = 0; i < letters.length(); i++) {
+      alphaToCoord.put(letters.charAt(i) + "", i);
+      coordToAlpha.put(i, letters.charAt(i) + "");
+    }
+  }
 
-  public static final Map<Integer, String> coordToAlpha = new HashMap<Integer, String>(){{
-    put(0, "a");
-    put(1, "b");
-    put(2, "c");
-    put(3, "d");
-    put(4, "e");
-    put(5, "f");
-    put(6, "g");
-    put(7, "h");
-    put(8, "i");
-    put(9, "j");
-    put(10, "k");
-    put(11, "l");
-    put(12, "m");
-    put(13, "n");
-    put(14, "o");
-    put(15, "p");
-    put(16, "q");
-    put(17, "r");
-    put(18, "s");
-    put(19, "t");
-  }};
-  //@formatter:on
   private Util() {
   }
 
@@ -84,6 +50,33 @@ public class Util {
     return coordToAlpha.get(x)+coordToAlpha.get(y);
   }
 
+  /**
+   * Parses the value of the SZ property. The value is either a single
+   * number for a square board or <code>width:height</code> for a
+   * rectangular one.
+   *
+   * @param value the SZ value, can be null
+   * @return the width and the height, 19x19 if the value is missing, can't
+   *         be parsed or is not between 1 and 52 like the SGF spec allows
+   */
+  public static int[] parseBoardSize(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return new int[] { 19, 19 };
+    }
+    try {
+      String[] parts = value.split(":");
+      int width = Integer.parseInt(parts[0].trim());
+      int height = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : width;
+      if (width < 1 || width > 52 || height < 1 || height > 52) {
+        return new int[] { 19, 19 };
+      }
+      return new int[] { width, height };
+    }
+    catch (NumberFormatException e) {
+      return new int[] { 19, 19 };
+    }
+  }
+
   public static Map<String, String> extractLabels(String str) {
     HashMap<String, String> rtrn = new HashMap<String, String>();
     // the LB property comes like 'fb:A][gb:C][jd:B
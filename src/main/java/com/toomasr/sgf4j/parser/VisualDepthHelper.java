@@ -1,6 +1,8 @@
 package com.toomasr.sgf4j.parser;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 
@@ -51,22 +53,41 @@ public class VisualDepthHelper {
     this.depthMatrix = depthMatrix;
   }
 
-  private void calculateVisualDepthFor(GameNode node, List<List<Integer>> depthMatrix, int minDepth, int variationDepth) {
-    int depth = findVisualDepthForNode(node, depthMatrix, minDepth, variationDepth);
-    GameNode lastNodeInLine = setVisualDepthForLine(node, depth);
-
-    GameNode activeNode = lastNodeInLine;
-    do {
-      if (activeNode.hasChildren()) {
-        for (Iterator<GameNode> ite = activeNode.getChildren().iterator(); ite.hasNext();) {
-          calculateVisualDepthFor(ite.next(), depthMatrix, depth + 1, variationDepth);
+  /*
+   * Places the line starting with the node and then all the variations
+   * branching off it, depth first. The variations still to be placed are
+   * kept on a stack with the depth each one can start from.
+   */
+  private void calculateVisualDepthFor(GameNode startNode, List<List<Integer>> depthMatrix, int minDepth, int variationDepth) {
+    Deque<GameNode> nodes = new ArrayDeque<>();
+    Deque<Integer> minDepths = new ArrayDeque<>();
+    nodes.push(startNode);
+    minDepths.push(minDepth);
+
+    while (!nodes.isEmpty()) {
+      GameNode node = nodes.pop();
+      int depth = findVisualDepthForNode(node, depthMatrix, minDepths.pop(), variationDepth);
+      GameNode lastNodeInLine = setVisualDepthForLine(node, depth);
+
+      // collect the variations in the order they are placed and push
+      // them in reverse so that they are popped in that order
+      List<GameNode> variations = new ArrayList<>();
+      GameNode activeNode = lastNodeInLine;
+      do {
+        if (activeNode.hasChildren()) {
+          variations.addAll(activeNode.getChildren());
+        }
+        if (activeNode.equals(node)) {
+          break;
         }
       }
-      if (activeNode.equals(node)) {
-        break;
+      while ((activeNode = activeNode.getPrevNode()) != null);
+
+      for (int i = variations.size() - 1; i >= 0; i--) {
+        nodes.push(variations.get(i));
+        minDepths.push(depth + 1);
       }
     }
-    while ((activeNode = activeNode.getPrevNode()) != null);
   }
 
   private void initializeMainLine(GameNode lastNode, List<List<Integer>> depthMatrix) {
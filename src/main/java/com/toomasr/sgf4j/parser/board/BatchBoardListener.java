@@ -0,0 +1,19 @@
+package com.toomasr.sgf4j.parser.board;
+
+/**
+ * Listener that gets the changes of the stones of a {@link VirtualBoard}
+ * in one go instead of a call for every stone like {@link BoardListener}.
+ * Every change of the board is a batch of its own, a move with its
+ * captures for example, unless it is part of a bigger batch between
+ * {@link VirtualBoard#beginBatch()} and {@link VirtualBoard#endBatch()}.
+ * {@link VirtualBoard#fastForwardTo(com.toomasr.sgf4j.parser.GameNode)}
+ * is always a single batch.
+ */
+public interface BatchBoardListener {
+  /**
+   * Called at the end of a batch that changed some stones.
+   *
+   * @param diff the stones added and removed
+   */
+  void boardChanged(BoardDiff diff);
+}
@@ -0,0 +1,435 @@
+package com.toomasr.sgf4j.parser.board;
+
+import java.util.Arrays;
+
+/**
+ * A board that keeps the black and the white stones as bitsets packed into
+ * <code>long[]</code>, one bit per point. Points are indexed as
+ * <code>y * width + x</code>. Boards can be rectangular and up to 52 lines
+ * wide and high like the SGF spec allows.
+ *
+ * Groups are found by growing a bitset one step at a time in all four
+ * directions with shifts and masking it with the stones of the color. The
+ * liberties of a group are the empty points of the grown bitset. Nothing
+ * is allocated while playing moves, this is meant for replaying a lot of
+ * positions. {@link VirtualBoard} stores its stones in one of these.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * BitBoard board = new BitBoard(19);
+ * int captured = board.play(3, 3, StoneState.BLACK);
+ * for (int point = board.nextCaptured(0); point &gt;= 0; point = board.nextCaptured(point + 1)) {
+ *   int x = point % board.getWidth();
+ *   int y = point / board.getWidth();
+ * }
+ * </pre>
+ */
+public final class BitBoard {
+  private final int width;
+  private final int height;
+  private final int points;
+  private final int words;
+
+  private final long[] black;
+  private final long[] white;
+  // all the points of the board, the bits after the last point are 0
+  private final long[] onBoard;
+  // the points that have a neighbour to the left or to the right
+  private final long[] notFirstColumn;
+  private final long[] notLastColumn;
+
+  // scratch space for the flood fill
+  private final long[] group;
+  private final long[] grown;
+  private final long[] shifted;
+  private final long[] checked;
+  private final long[] captured;
+
+  /**
+   * Creates an empty square board.
+   *
+   * @param size the number of lines of the board
+   */
+  public BitBoard(int size) {
+    this(size, size);
+  }
+
+  /**
+   * Creates an empty board.
+   *
+   * @param width the number of points on a row
+   * @param height the number of rows
+   */
+  public BitBoard(int width, int height) {
+    if (width < 1 || width > 52 || height < 1 || height > 52) {
+      throw new IllegalArgumentException("Board size has to be between 1 and 52, was " + width + ":" + height);
+    }
+    this.width = width;
+    this.height = height;
+    this.points = width * height;
+    this.words = (points + 63) >>> 6;
+
+    black = new long[words];
+    white = new long[words];
+    onBoard = new long[words];
+    notFirstColumn = new long[words];
+    notLastColumn = new long[words];
+    for (int point = 0; point < points; point++) {
+      setBit(onBoard, point);
+      if (point % width != 0)
+        setBit(notFirstColumn, point);
+      if (point % width != width - 1)
+        setBit(notLastColumn, point);
+    }
+
+    group = new long[words];
+    grown = new long[words];
+    shifted = new long[words];
+    checked = new long[words];
+    captured = new long[words];
+  }
+
+  /**
+   * Returns the number of points on a row.
+   *
+   * @return the width of the board
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the height of the board
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Removes all the stones.
+   */
+  public void clear() {
+    Arrays.fill(black, 0);
+    Arrays.fill(white, 0);
+    Arrays.fill(captured, 0);
+  }
+
+  /**
+   * Returns the color of the stone on a point.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @return the color of the stone or EMPTY
+   */
+  public StoneState getColor(int x, int y) {
+    int point = point(x, y);
+    if (isSet(black, point))
+      return StoneState.BLACK;
+    if (isSet(white, point))
+      return StoneState.WHITE;
+    return StoneState.EMPTY;
+  }
+
+  /**
+   * Puts a stone on a point or clears it. Nothing is captured.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @param color the color of the stone, EMPTY or null clears the point
+   */
+  public void setColor(int x, int y, StoneState color) {
+    int point = point(x, y);
+    clearBit(black, point);
+    clearBit(white, point);
+    if (color == StoneState.BLACK)
+      setBit(black, point);
+    else if (color == StoneState.WHITE)
+      setBit(white, point);
+  }
+
+  /**
+   * Plays a move: puts the stone on the point and takes off the groups of
+   * the other color next to it that are left without liberties. The stones
+   * taken off can be listed with {@link #nextCaptured(int)}.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @param color the color of the stone
+   * @return the number of stones captured
+   */
+  public int play(int x, int y, StoneState color) {
+    setColor(x, y, color);
+    Arrays.fill(captured, 0);
+    Arrays.fill(checked, 0);
+
+    long[] opponent = color == StoneState.BLACK ? white : black;
+    int point = point(x, y);
+    int count = 0;
+    if (x > 0)
+      count += captureIfDead(point - 1, opponent);
+    if (x < width - 1)
+      count += captureIfDead(point + 1, opponent);
+    if (y > 0)
+      count += captureIfDead(point - width, opponent);
+    if (y < height - 1)
+      count += captureIfDead(point + width, opponent);
+    return count;
+  }
+
+  /**
+   * Takes off the group that has a stone on the point, for suicide when
+   * the rules allow it. The stones taken off can be listed with
+   * {@link #nextCaptured(int)}.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @return the number of stones taken off
+   */
+  public int removeGroup(int x, int y) {
+    int point = point(x, y);
+    long[] stones = isSet(black, point) ? black : isSet(white, point) ? white : null;
+    Arrays.fill(captured, 0);
+    if (stones == null) {
+      return 0;
+    }
+    floodFill(point, stones, false);
+    int rtrn = 0;
+    for (int i = 0; i < words; i++) {
+      stones[i] &= ~group[i];
+      captured[i] = group[i];
+      rtrn += Long.bitCount(group[i]);
+    }
+    return rtrn;
+  }
+
+  /**
+   * Returns the next point taken off by the last {@link #play} or
+   * {@link #removeGroup} starting from the given point, in the same
+   * fashion as {@link java.util.BitSet#nextSetBit(int)}.
+   *
+   * @param fromPoint the point to start looking from
+   * @return the captured point, or -1 if there are no more
+   */
+  public int nextCaptured(int fromPoint) {
+    return nextSetBit(captured, fromPoint);
+  }
+
+  /**
+   * Counts the liberties of the group that has a stone on the point.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @return the number of liberties, 0 for an empty point
+   */
+  public int countLiberties(int x, int y) {
+    int point = point(x, y);
+    long[] stones = isSet(black, point) ? black : isSet(white, point) ? white : null;
+    if (stones == null) {
+      return 0;
+    }
+    floodFill(point, stones, false);
+    grow(group, grown);
+    int rtrn = 0;
+    for (int i = 0; i < words; i++) {
+      rtrn += Long.bitCount(grown[i] & ~black[i] & ~white[i]);
+    }
+    return rtrn;
+  }
+
+  /*
+   * Returns a copy of the stones of a color, for snapshots of the position.
+   */
+  long[] copyStones(StoneState color) {
+    return (color == StoneState.BLACK ? black : white).clone();
+  }
+
+  /*
+   * Copies the stones of a color into an array from copyStones(color).
+   */
+  void copyStones(StoneState color, long[] into) {
+    System.arraycopy(color == StoneState.BLACK ? black : white, 0, into, 0, words);
+  }
+
+  /*
+   * Returns the next point from the given point where the stones differ
+   * from the copied ones, -1 if there are no more.
+   */
+  int nextDifference(long[] otherBlack, long[] otherWhite, int fromPoint) {
+    int i = fromPoint >>> 6;
+    if (i >= words) {
+      return -1;
+    }
+    long word = ((black[i] ^ otherBlack[i]) | (white[i] ^ otherWhite[i])) & (-1L << fromPoint);
+    while (true) {
+      if (word != 0)
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      if (++i == words)
+        return -1;
+      word = (black[i] ^ otherBlack[i]) | (white[i] ^ otherWhite[i]);
+    }
+  }
+
+  /*
+   * Returns the color of a point in copied stones.
+   */
+  static StoneState getColor(long[] black, long[] white, int point) {
+    if (isSet(black, point))
+      return StoneState.BLACK;
+    if (isSet(white, point))
+      return StoneState.WHITE;
+    return StoneState.EMPTY;
+  }
+
+  /*
+   * Returns whether the group that has a stone on the point has no
+   * liberties, stops at the first liberty found.
+   */
+  boolean isDead(int x, int y) {
+    int point = point(x, y);
+    long[] stones = isSet(black, point) ? black : isSet(white, point) ? white : null;
+    if (stones == null || hasEmptyNeighbour(point)) {
+      return false;
+    }
+    return floodFill(point, stones, true);
+  }
+
+  private int captureIfDead(int point, long[] stones) {
+    if (!isSet(stones, point) || isSet(checked, point)) {
+      return 0;
+    }
+    // most of the time the stone itself has a liberty
+    if (hasEmptyNeighbour(point)) {
+      return 0;
+    }
+    boolean dead = floodFill(point, stones, true);
+    int rtrn = 0;
+    for (int i = 0; i < words; i++) {
+      checked[i] |= group[i];
+      if (dead) {
+        stones[i] &= ~group[i];
+        captured[i] |= group[i];
+        rtrn += Long.bitCount(group[i]);
+      }
+    }
+    return rtrn;
+  }
+
+  private boolean hasEmptyNeighbour(int point) {
+    int x = point % width;
+    return (x > 0 && isEmpty(point - 1)) || (x < width - 1 && isEmpty(point + 1))
+        || (point >= width && isEmpty(point - width)) || (point + width < points && isEmpty(point + width));
+  }
+
+  private boolean isEmpty(int point) {
+    return !isSet(black, point) && !isSet(white, point);
+  }
+
+  /*
+   * Finds the group of the stone on the point into the group bitset.
+   * Returns whether the group has no liberties. If stopAtLiberty is set
+   * this stops as soon as a liberty is found and the group might be only
+   * partly filled in.
+   */
+  private boolean floodFill(int point, long[] stones, boolean stopAtLiberty) {
+    Arrays.fill(group, 0);
+    setBit(group, point);
+    boolean rtrn = true;
+    while (true) {
+      grow(group, grown);
+      boolean changed = false;
+      for (int i = 0; i < words; i++) {
+        if ((grown[i] & ~black[i] & ~white[i]) != 0) {
+          rtrn = false;
+        }
+        long next = grown[i] & stones[i];
+        changed |= next != group[i];
+        group[i] = next;
+      }
+      if (!changed || (!rtrn && stopAtLiberty)) {
+        return rtrn;
+      }
+    }
+  }
+
+  /*
+   * Sets out to the points of in and all their neighbours.
+   */
+  private void grow(long[] in, long[] out) {
+    System.arraycopy(in, 0, out, 0, words);
+
+    // the left neighbours are one bit lower, the stones on the first
+    // column don't have these
+    for (int i = 0; i < words; i++)
+      shifted[i] = in[i] & notFirstColumn[i];
+    shiftDown(shifted, 1);
+    or(out, shifted);
+
+    for (int i = 0; i < words; i++)
+      shifted[i] = in[i] & notLastColumn[i];
+    shiftUp(shifted, 1);
+    or(out, shifted);
+
+    System.arraycopy(in, 0, shifted, 0, words);
+    shiftDown(shifted, width);
+    or(out, shifted);
+
+    System.arraycopy(in, 0, shifted, 0, words);
+    shiftUp(shifted, width);
+    or(out, shifted);
+
+    for (int i = 0; i < words; i++)
+      out[i] &= onBoard[i];
+  }
+
+  private void or(long[] out, long[] in) {
+    for (int i = 0; i < words; i++)
+      out[i] |= in[i];
+  }
+
+  // moves every bit n places towards the higher indexes, n < 64
+  private void shiftUp(long[] bits, int n) {
+    for (int i = words - 1; i > 0; i--)
+      bits[i] = (bits[i] << n) | (bits[i - 1] >>> (64 - n));
+    bits[0] <<= n;
+  }
+
+  // moves every bit n places towards the lower indexes, n < 64
+  private void shiftDown(long[] bits, int n) {
+    for (int i = 0; i < words - 1; i++)
+      bits[i] = (bits[i] >>> n) | (bits[i + 1] << (64 - n));
+    bits[words - 1] >>>= n;
+  }
+
+  private int point(int x, int y) {
+    return y * width + x;
+  }
+
+  private static boolean isSet(long[] bits, int point) {
+    return (bits[point >>> 6] & (1L << point)) != 0;
+  }
+
+  private static void setBit(long[] bits, int point) {
+    bits[point >>> 6] |= 1L << point;
+  }
+
+  private static void clearBit(long[] bits, int point) {
+    bits[point >>> 6] &= ~(1L << point);
+  }
+
+  private int nextSetBit(long[] bits, int fromPoint) {
+    int i = fromPoint >>> 6;
+    if (i >= words) {
+      return -1;
+    }
+    long word = bits[i] & (-1L << fromPoint);
+    while (true) {
+      if (word != 0)
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      if (++i == words)
+        return -1;
+      word = bits[i];
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.toomasr.sgf4j.parser.board;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The stones that changed on a {@link VirtualBoard} during a batch of
+ * changes, see {@link BatchBoardListener}. Only the net change is
+ * reported, a stone that was captured and put back in the same batch is
+ * not in the diff. A point where a stone was replaced by a stone of the
+ * other color is in both lists.
+ */
+public final class BoardDiff {
+  private final List<Square> added;
+  private final List<Square> removed;
+
+  BoardDiff(List<Square> added, List<Square> removed) {
+    this.added = Collections.unmodifiableList(added);
+    this.removed = Collections.unmodifiableList(removed);
+  }
+
+  /**
+   * Returns the stones that were put on the board.
+   *
+   * @return squares with the color of the new stones
+   */
+  public List<Square> getAdded() {
+    return added;
+  }
+
+  /**
+   * Returns the stones of a color that were put on the board.
+   *
+   * @param color BLACK or WHITE
+   * @return squares with the new stones of the color
+   */
+  public List<Square> getAdded(StoneState color) {
+    return ofColor(added, color);
+  }
+
+  /**
+   * Returns the stones that were taken off the board.
+   *
+   * @return squares with the color the stones had
+   */
+  public List<Square> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Returns the stones of a color that were taken off the board.
+   *
+   * @param color BLACK or WHITE
+   * @return squares with the removed stones of the color
+   */
+  public List<Square> getRemoved(StoneState color) {
+    return ofColor(removed, color);
+  }
+
+  /**
+   * Returns whether no stones changed.
+   *
+   * @return true if nothing was added or removed
+   */
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty();
+  }
+
+  private static List<Square> ofColor(List<Square> squares, StoneState color) {
+    List<Square> rtrn = new ArrayList<>();
+    for (Square square : squares) {
+      if (square.isOfColor(color)) {
+        rtrn.add(square);
+      }
+    }
+    return rtrn;
+  }
+
+  @Override
+  public String toString() {
+    return "added " + added + " at " + points(added) + ", removed " + removed + " at " + points(removed);
+  }
+
+  private static String points(List<Square> squares) {
+    StringBuilder rtrn = new StringBuilder("[");
+    for (Square square : squares) {
+      if (rtrn.length() > 1)
+        rtrn.append(", ");
+      rtrn.append(square.x).append(',').append(square.y);
+    }
+    return rtrn.append(']').toString();
+  }
+}
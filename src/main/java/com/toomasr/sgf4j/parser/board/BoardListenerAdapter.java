@@ -0,0 +1,31 @@
+package com.toomasr.sgf4j.parser.board;
+
+/**
+ * Turns the diffs of a batch back into {@link BoardListener#removeStone}
+ * and {@link BoardListener#placeStone} calls, for listeners written for
+ * the per stone interface that should only hear about the board at the
+ * end of a batch.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * board.addBatchBoardListener(new BoardListenerAdapter(stoneRenderer));
+ * </pre>
+ */
+public class BoardListenerAdapter implements BatchBoardListener {
+  private final BoardListener listener;
+
+  public BoardListenerAdapter(BoardListener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public void boardChanged(BoardDiff diff) {
+    // the removed ones first, a replaced stone ends up with the new color
+    for (Square square : diff.getRemoved()) {
+      listener.removeStone(square.x, square.y);
+    }
+    for (Square square : diff.getAdded()) {
+      listener.placeStone(square.x, square.y, square.getColor());
+    }
+  }
+}
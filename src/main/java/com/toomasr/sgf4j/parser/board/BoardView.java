@@ -0,0 +1,70 @@
+package com.toomasr.sgf4j.parser.board;
+
+/**
+ * Read-only access to the position on a board. {@link VirtualBoard}
+ * implements this and {@link ReplayEngine} hands one of these to its
+ * {@link PositionVisitor}. A view reads the live board, take a
+ * {@link #snapshot()} to keep the position.
+ */
+public interface BoardView {
+  /**
+   * Returns the number of points on a row.
+   *
+   * @return the width of the board
+   */
+  int getWidth();
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the height of the board
+   */
+  int getHeight();
+
+  /**
+   * Returns the color of the stone on a point.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @return the color of the stone or EMPTY
+   */
+  StoneState getColor(int x, int y);
+
+  /**
+   * Returns the player who moves next.
+   *
+   * @return BLACK or WHITE
+   */
+  StoneState getPlayerToMove();
+
+  /**
+   * Returns the point that can't be played because of ko.
+   *
+   * @return the x and y of the point, null if there is no ko
+   */
+  int[] getKoPoint();
+
+  /**
+   * Returns the Zobrist hash of the position, see
+   * {@link VirtualBoard#getPositionHash()}.
+   *
+   * @return the hash of the stones and the player to move
+   */
+  long getPositionHash();
+
+  /**
+   * Returns the Zobrist hash of the position, see
+   * {@link VirtualBoard#getPositionHash(boolean)}.
+   *
+   * @param includeKo whether the ko point is part of the hash
+   * @return the hash of the position
+   */
+  long getPositionHash(boolean includeKo);
+
+  /**
+   * Returns an immutable copy of the position.
+   *
+   * @return the position
+   */
+  Position snapshot();
+}
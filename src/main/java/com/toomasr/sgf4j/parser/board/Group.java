@@ -36,15 +36,23 @@ public class Group {
 
   public void printGroup() {
     System.out.println("Print group of size " + stones.size());
-    Square[][] board = new Square[19][19];
+    // big enough for the group, at least the usual 19x19
+    int width = 19;
+    int height = 19;
+    for (Iterator<Square> ite = stones.iterator(); ite.hasNext();) {
+      Square square = ite.next();
+      width = Math.max(width, square.x + 1);
+      height = Math.max(height, square.y + 1);
+    }
+    Square[][] board = new Square[width][height];
 
     for (Iterator<Square> ite = stones.iterator(); ite.hasNext();) {
       Square square = ite.next();
       board[square.x][square.y] = square;
     }
 
-    for (int i = 0; i < 19; i++) {
-      for (int j = 0; j < 19; j++) {
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
         if (board[i][j] == null) {
           board[i][j] = new Square(StoneState.EMPTY, i, j);
         }
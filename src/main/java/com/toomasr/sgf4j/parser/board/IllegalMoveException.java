@@ -0,0 +1,54 @@
+package com.toomasr.sgf4j.parser.board;
+
+import com.toomasr.sgf4j.parser.GameNode;
+
+/**
+ * Thrown by a validating {@link VirtualBoard} when a move breaks the
+ * rules. The board is left as it was before the move.
+ */
+public class IllegalMoveException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Why a move is illegal.
+   */
+  public enum Reason {
+    /** there is a stone on the point already */
+    OCCUPIED,
+    /** the move takes its own last liberty and the rules don't allow it */
+    SUICIDE,
+    /** the move takes back a ko right away */
+    KO,
+    /** the move repeats an earlier position of the game */
+    SUPERKO,
+    /** the point of the move is not on the board or can't be read */
+    OFF_BOARD
+  }
+
+  private final transient GameNode node;
+  private final Reason reason;
+
+  public IllegalMoveException(GameNode node, Reason reason) {
+    super("Illegal move " + (node.isBlack() ? "B" : "W") + "[" + node.getMoveString() + "] move " + node.getMoveNo() + ": " + reason);
+    this.node = node;
+    this.reason = reason;
+  }
+
+  /**
+   * Returns the node with the illegal move.
+   *
+   * @return the node
+   */
+  public GameNode getNode() {
+    return node;
+  }
+
+  /**
+   * Returns the rule the move breaks.
+   *
+   * @return the reason
+   */
+  public Reason getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,96 @@
+package com.toomasr.sgf4j.parser.board;
+
+import java.util.Arrays;
+
+import com.toomasr.sgf4j.parser.GameNode;
+
+/**
+ * The indexes of the nodes on the line of play, the nodes are compared by
+ * identity. Open addressing with linear probing like {@link PositionSet},
+ * the indexes are not boxed and nothing is allocated unless the table has
+ * to grow.
+ */
+final class NodeIndexes {
+  private GameNode[] nodes = new GameNode[64];
+  private int[] indexes = new int[64];
+  private int size;
+
+  void put(GameNode node, int index) {
+    int slot = find(node);
+    indexes[slot] = index;
+    if (nodes[slot] != null) {
+      return;
+    }
+    nodes[slot] = node;
+    if (++size * 2 > nodes.length) {
+      grow();
+    }
+  }
+
+  /**
+   * Returns the index of the node.
+   *
+   * @return the index, -1 if the node is not on the line
+   */
+  int get(GameNode node) {
+    int slot = find(node);
+    return nodes[slot] == null ? -1 : indexes[slot];
+  }
+
+  void remove(GameNode node) {
+    int slot = find(node);
+    if (nodes[slot] == null) {
+      return;
+    }
+    nodes[slot] = null;
+    size--;
+    // move the following nodes of the run back so that they can still be
+    // found
+    int mask = nodes.length - 1;
+    int hole = slot;
+    for (int i = (slot + 1) & mask; nodes[i] != null; i = (i + 1) & mask) {
+      int home = home(nodes[i]);
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        nodes[hole] = nodes[i];
+        indexes[hole] = indexes[i];
+        nodes[i] = null;
+        hole = i;
+      }
+    }
+  }
+
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(nodes, null);
+      size = 0;
+    }
+  }
+
+  private int find(GameNode node) {
+    int mask = nodes.length - 1;
+    int slot = home(node);
+    while (nodes[slot] != null && nodes[slot] != node) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int home(GameNode node) {
+    // GameNode.hashCode walks the variations, the identity is enough
+    int hash = System.identityHashCode(node);
+    return (hash ^ (hash >>> 16)) & (nodes.length - 1);
+  }
+
+  private void grow() {
+    GameNode[] oldNodes = nodes;
+    int[] oldIndexes = indexes;
+    nodes = new GameNode[oldNodes.length * 2];
+    indexes = new int[oldNodes.length * 2];
+    size = 0;
+    for (int i = 0; i < oldNodes.length; i++) {
+      if (oldNodes[i] != null) {
+        put(oldNodes[i], oldIndexes[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.toomasr.sgf4j.parser.board;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of the position of a {@link VirtualBoard}: the stones,
+ * the player to move and the ko point. The stones are kept as bitsets,
+ * taking a position costs a copy of a few longs. Positions can be handed
+ * to other threads while the board keeps changing.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * Position position = board.snapshot();
+ * executor.submit(() -&gt; analyse(position));
+ * VirtualBoard copy = new VirtualBoard(position);
+ * </pre>
+ */
+public final class Position {
+  private final int width;
+  private final int height;
+  // the bits of the stones indexed as y * width + x, never changed
+  final long[] black;
+  final long[] white;
+  final long stonesHash;
+  final StoneState toMove;
+  final int koX;
+  final int koY;
+
+  Position(int width, int height, long[] black, long[] white, long stonesHash, StoneState toMove, int koX, int koY) {
+    this.width = width;
+    this.height = height;
+    this.black = black;
+    this.white = white;
+    this.stonesHash = stonesHash;
+    this.toMove = toMove;
+    this.koX = koX;
+    this.koY = koY;
+  }
+
+  /**
+   * Returns the number of points on a row.
+   *
+   * @return the width of the board
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the height of the board
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the color of the stone on a point.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @return the color of the stone or EMPTY
+   */
+  public StoneState getColor(int x, int y) {
+    if (x < 0 || y < 0 || x >= width || y >= height) {
+      throw new IndexOutOfBoundsException("Point " + x + "," + y + " is not on a " + width + "x" + height + " board");
+    }
+    return BitBoard.getColor(black, white, y * width + x);
+  }
+
+  /**
+   * Counts the stones of a color.
+   *
+   * @param color BLACK or WHITE
+   * @return the number of stones
+   */
+  public int countStones(StoneState color) {
+    long[] stones = color == StoneState.BLACK ? black : white;
+    int rtrn = 0;
+    for (long word : stones) {
+      rtrn += Long.bitCount(word);
+    }
+    return rtrn;
+  }
+
+  /**
+   * Returns the player to move next.
+   *
+   * @return BLACK or WHITE
+   */
+  public StoneState getPlayerToMove() {
+    return toMove;
+  }
+
+  /**
+   * Returns the point the player to move can't play because of ko.
+   *
+   * @return the x and y of the point, or null if there is no ko
+   */
+  public int[] getKoPoint() {
+    return koX < 0 ? null : new int[] { koX, koY };
+  }
+
+  /**
+   * Returns the Zobrist hash of the position, the same as
+   * {@link VirtualBoard#getPositionHash()} of the board it was taken from.
+   *
+   * @return the hash of the stones and the player to move
+   */
+  public long getHash() {
+    return getHash(false);
+  }
+
+  /**
+   * Returns the Zobrist hash of the position, optionally including the ko
+   * point, the same as {@link VirtualBoard#getPositionHash(boolean)}.
+   *
+   * @param includeKo whether the ko point is part of the hash
+   * @return the hash of the position
+   */
+  public long getHash(boolean includeKo) {
+    return Zobrist.hash(stonesHash, toMove, koX, koY, includeKo);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(getHash(true));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof Position))
+      return false;
+    Position other = (Position) obj;
+    return width == other.width && height == other.height && toMove == other.toMove && koX == other.koX
+        && koY == other.koY && Arrays.equals(black, other.black) && Arrays.equals(white, other.white);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder rtrn = new StringBuilder();
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        StoneState color = getColor(x, y);
+        rtrn.append(color == StoneState.BLACK ? 'x' : color == StoneState.WHITE ? 'o' : '-');
+      }
+      rtrn.append("\n");
+    }
+    return rtrn.toString();
+  }
+}
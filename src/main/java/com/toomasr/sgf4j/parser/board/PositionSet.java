@@ -0,0 +1,89 @@
+package com.toomasr.sgf4j.parser.board;
+
+import java.util.Arrays;
+
+/**
+ * A set of position hashes for the superko check. Open addressing with
+ * linear probing, nothing is allocated unless the table has to grow.
+ */
+final class PositionSet {
+  private long[] hashes = new long[256];
+  private boolean[] used = new boolean[256];
+  private int size;
+
+  /**
+   * Adds a hash.
+   *
+   * @return false if the hash was already in the set
+   */
+  boolean add(long hash) {
+    int slot = find(hash);
+    if (used[slot]) {
+      return false;
+    }
+    used[slot] = true;
+    hashes[slot] = hash;
+    if (++size * 2 > hashes.length) {
+      grow();
+    }
+    return true;
+  }
+
+  void remove(long hash) {
+    int slot = find(hash);
+    if (!used[slot]) {
+      return;
+    }
+    used[slot] = false;
+    size--;
+    // move the following hashes of the run back so that they can still
+    // be found
+    int mask = hashes.length - 1;
+    int hole = slot;
+    for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+      int home = home(hashes[i]);
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        hashes[hole] = hashes[i];
+        used[hole] = true;
+        used[i] = false;
+        hole = i;
+      }
+    }
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  private int find(long hash) {
+    int mask = hashes.length - 1;
+    int slot = home(hash);
+    while (used[slot] && hashes[slot] != hash) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int home(long hash) {
+    // the hashes are random already
+    return (int) (hash ^ (hash >>> 32)) & (hashes.length - 1);
+  }
+
+  private void grow() {
+    long[] oldHashes = hashes;
+    boolean[] oldUsed = used;
+    hashes = new long[oldHashes.length * 2];
+    used = new boolean[oldHashes.length * 2];
+    size = 0;
+    for (int i = 0; i < oldHashes.length; i++) {
+      if (oldUsed[i]) {
+        add(oldHashes[i]);
+      }
+    }
+  }
+}
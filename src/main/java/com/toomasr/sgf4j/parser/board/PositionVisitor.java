@@ -0,0 +1,21 @@
+package com.toomasr.sgf4j.parser.board;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+
+/**
+ * Gets every position that {@link ReplayEngine} replays. The engine calls
+ * it from many threads at the same time, but never with the same game at
+ * the same time.
+ */
+public interface PositionVisitor {
+  /**
+   * Called after a node was played on the board.
+   *
+   * @param game the game being replayed
+   * @param node the node just played, the root node for the starting
+   *          position
+   * @param board the position after the node, only valid during the call
+   */
+  void visit(Game game, GameNode node, BoardView board);
+}
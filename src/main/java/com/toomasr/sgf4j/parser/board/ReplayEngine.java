@@ -0,0 +1,460 @@
+package com.toomasr.sgf4j.parser.board;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+
+/**
+ * Replays whole collections of games in parallel, for statistics over a
+ * lot of positions. The games are spread over a fork-join pool and every
+ * worker thread replays its games on a {@link VirtualBoard} of its own
+ * that is reused from game to game, so nothing is shared between the
+ * threads and replaying doesn't allocate a board per game.
+ *
+ * The {@link PositionVisitor} gets a read-only view of the board after
+ * every node. By default only the main line of every game is replayed,
+ * with {@link #setVariations(boolean)} all the lines of play are.
+ *
+ * A game that can't be parsed or replayed doesn't stop the others, it is
+ * skipped and handed to the {@link ReplayErrorListener} with the file it
+ * is in. By default the skipped games are logged. The positions of a
+ * game visited before the error are counted. An exception thrown by the
+ * visitor stops the whole replay.
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * Set&lt;Long&gt; positions = ConcurrentHashMap.newKeySet();
+ * ReplayEngine engine = new ReplayEngine();
+ * engine.setVariations(true);
+ * long visited = engine.replay(Paths.get("games.zip"), (game, node, board) -&gt; {
+ *   positions.add(board.getPositionHash());
+ * });
+ * </pre>
+ */
+public class ReplayEngine {
+  private static final Logger log = LoggerFactory.getLogger(ReplayEngine.class);
+
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private boolean variations = false;
+  private ReplayErrorListener errorListener = ReplayEngine::logError;
+  private final LongAdder gamesFailed = new LongAdder();
+
+  /**
+   * Sets the number of worker threads, the number of processors by
+   * default.
+   *
+   * @param parallelism the number of threads
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism has to be at least 1, was " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets whether the variations are replayed too. The main line of a game
+   * is replayed first and then the variations in the order they are in
+   * the game, like {@link VirtualBoard#findFirstIllegalMove(Game)} does.
+   *
+   * @param variations true to replay all the lines of play
+   */
+  public void setVariations(boolean variations) {
+    this.variations = variations;
+  }
+
+  public boolean isVariations() {
+    return variations;
+  }
+
+  /**
+   * Sets the listener that gets the games that are skipped because they
+   * can't be parsed or replayed. By default these are logged.
+   *
+   * @param errorListener the listener
+   */
+  public void setErrorListener(ReplayErrorListener errorListener) {
+    this.errorListener = errorListener;
+  }
+
+  /**
+   * Returns the number of games that were skipped by the last replay,
+   * including the files that couldn't be read at all.
+   *
+   * @return the number of games skipped
+   */
+  public long getGamesFailed() {
+    return gamesFailed.sum();
+  }
+
+  private static void logError(String source, int gameNo, RuntimeException error) {
+    log.warn("Skipping game " + gameNo + (source == null ? "" : " of " + source) + ": " + error);
+  }
+
+  private void failed(String source, int gameNo, RuntimeException error) {
+    gamesFailed.increment();
+    errorListener.gameFailed(source, gameNo, error);
+  }
+
+  /**
+   * Replays the games of a stream. The stream is consumed in parallel, a
+   * stream from {@link Sgf#createStreamFromPath(Path)} is read by one
+   * thread and the games are built and replayed by all of them.
+   *
+   * @param games the games
+   * @param visitor gets every position, from many threads at once
+   * @return the number of positions visited
+   */
+  public long replay(Stream<Game> games, PositionVisitor visitor) {
+    gamesFailed.reset();
+    return replayStream(null, games, visitor);
+  }
+
+  private long replayStream(String source, Stream<Game> games, PositionVisitor visitor) {
+    ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+    Stream<NumberedGame> numbered = StreamSupport.stream(Spliterators.spliteratorUnknownSize(new NumberedGames(source, games.iterator()), Spliterator.ORDERED | Spliterator.NONNULL), true);
+    return run(() -> numbered.mapToLong(game -> workers.get().replay(source, game, variations, visitor)).sum());
+  }
+
+  /**
+   * Replays all the games in a SGF file, in the SGF files of a directory
+   * and its subdirectories or in the SGF files of a zip file. Every file
+   * can hold a collection of games.
+   *
+   * @param path a SGF file, a directory or a zip file
+   * @param visitor gets every position, from many threads at once
+   * @return the number of positions visited
+   * @throws RuntimeException if the files cannot be read
+   */
+  public long replay(Path path, PositionVisitor visitor) {
+    gamesFailed.reset();
+    if (Files.isDirectory(path)) {
+      List<Path> files;
+      try (Stream<Path> walk = Files.walk(path)) {
+        files = walk.filter(file -> isSgf(file.toString()) && Files.isRegularFile(file)).collect(Collectors.toList());
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return replayFiles(files, Path::toString, file -> Sgf.createStreamFromPath(file), visitor);
+    }
+    else if (path.toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+      try (ZipFile zip = new ZipFile(path.toFile())) {
+        List<ZipEntry> entries = zip.stream().filter(entry -> !entry.isDirectory() && isSgf(entry.getName())).collect(Collectors.toList());
+        // the zip file can be read from many threads, the entries are
+        // small enough to be read into memory before parsing
+        return replayFiles(entries, ZipEntry::getName, entry -> {
+          try (InputStream in = zip.getInputStream(entry)) {
+            return Sgf.createStreamFromInputStream(new ByteArrayInputStream(in.readAllBytes()));
+          }
+          catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }, visitor);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    try (Stream<Game> games = Sgf.createStreamFromPath(path)) {
+      return replayStream(path.toString(), games, visitor);
+    }
+  }
+
+  private <T> long replayFiles(List<T> files, Function<T, String> names, Function<T, Stream<Game>> reader, PositionVisitor visitor) {
+    ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+    // the files are split between the threads, the games of a file are
+    // replayed by the thread that parses it
+    return run(() -> files.parallelStream().mapToLong(file -> {
+      String source = names.apply(file);
+      Stream<Game> games;
+      try {
+        games = reader.apply(file);
+      }
+      catch (RuntimeException e) {
+        failed(source, -1, e);
+        return 0;
+      }
+      try {
+        Worker worker = workers.get();
+        long rtrn = 0;
+        for (Iterator<NumberedGame> ite = new NumberedGames(source, games.iterator()); ite.hasNext();) {
+          rtrn += worker.replay(source, ite.next(), variations, visitor);
+        }
+        return rtrn;
+      }
+      finally {
+        games.close();
+      }
+    }).sum());
+  }
+
+  /*
+   * Numbers the games of a file or a stream. A game that can't be parsed
+   * ends the file, the parser can't tell where the next game would start.
+   */
+  private class NumberedGames implements Iterator<NumberedGame> {
+    private final String source;
+    private final Iterator<Game> games;
+    private int gameNo = 0;
+    private boolean done = false;
+
+    NumberedGames(String source, Iterator<Game> games) {
+      this.source = source;
+      this.games = games;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (done) {
+        return false;
+      }
+      try {
+        done = !games.hasNext();
+      }
+      catch (RuntimeException e) {
+        done = true;
+        failed(source, gameNo, e);
+      }
+      return !done;
+    }
+
+    @Override
+    public NumberedGame next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        return new NumberedGame(games.next(), gameNo++);
+      }
+      catch (RuntimeException e) {
+        done = true;
+        failed(source, gameNo, e);
+        // a placeholder, there is nothing to replay
+        return new NumberedGame(null, gameNo);
+      }
+    }
+  }
+
+  private static class NumberedGame {
+    final Game game;
+    final int gameNo;
+
+    NumberedGame(Game game, int gameNo) {
+      this.game = game;
+      this.gameNo = gameNo;
+    }
+  }
+
+  private static boolean isSgf(String name) {
+    return name.toLowerCase(Locale.ROOT).endsWith(".sgf");
+  }
+
+  /*
+   * Runs a parallel stream in a pool of our own, the tasks of a parallel
+   * stream run in the pool of the thread that starts it.
+   */
+  private long run(Supplier<Long> task) {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return pool.invoke(ForkJoinTask.adapt(task::get));
+    }
+    catch (RuntimeException e) {
+      // an exception thrown on another thread is rethrown as a copy with
+      // the original as the cause
+      RuntimeException rtrn = e;
+      if (rtrn.getCause() != null && rtrn.getCause().getClass() == rtrn.getClass()) {
+        rtrn = (RuntimeException) rtrn.getCause();
+      }
+      if (rtrn instanceof VisitorException) {
+        rtrn = (RuntimeException) rtrn.getCause();
+      }
+      throw rtrn;
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /*
+   * The board of a worker thread, a new one is created only when a game
+   * is played on a board of a different size.
+   */
+  private class Worker {
+    private VirtualBoard board;
+    private BoardView view;
+    // the positions visited, also of the games that fail half way
+    private long visited;
+
+    long replay(String source, NumberedGame numbered, boolean variations, PositionVisitor visitor) {
+      Game game = numbered.game;
+      if (game == null) {
+        return 0;
+      }
+      long before = visited;
+      try {
+        if (board == null || board.getWidth() != game.getBoardWidth() || board.getHeight() != game.getBoardHeight()) {
+          board = new VirtualBoard(game);
+          view = new ReadOnlyView(board);
+        }
+        board.startGame(game);
+        if (variations) {
+          visitAllLines(game, visitor);
+        }
+        else {
+          visitMainLine(game, visitor);
+        }
+      }
+      catch (VisitorException e) {
+        throw e;
+      }
+      catch (RuntimeException e) {
+        failed(source, numbered.gameNo, e);
+      }
+      return visited - before;
+    }
+
+    private void visit(Game game, GameNode node, PositionVisitor visitor) {
+      try {
+        visitor.visit(game, node, view);
+      }
+      catch (RuntimeException e) {
+        throw new VisitorException(e);
+      }
+      visited++;
+    }
+
+    private void visitMainLine(Game game, PositionVisitor visitor) {
+      GameNode prev = null;
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        board.makeMove(node, prev);
+        visit(game, node, visitor);
+        prev = node;
+      }
+    }
+
+    private void visitAllLines(Game game, PositionVisitor visitor) {
+      GameNode root = game.getRootNode();
+      Deque<GameNode> toVisit = new ArrayDeque<>();
+      toVisit.push(root);
+      while (!toVisit.isEmpty()) {
+        GameNode node = toVisit.pop();
+        // going to the root would clear the setup stones
+        if (node == root) {
+          board.makeMove(node, null);
+        }
+        else {
+          board.fastForwardTo(node);
+        }
+        visit(game, node, visitor);
+
+        if (node.hasChildren()) {
+          List<GameNode> children = new ArrayList<>(node.getChildren());
+          // the main line goes first
+          children.remove(node.getNextNode());
+          for (int i = children.size() - 1; i > -1; i--) {
+            toVisit.push(children.get(i));
+          }
+        }
+        if (node.getNextNode() != null) {
+          toVisit.push(node.getNextNode());
+        }
+      }
+    }
+  }
+
+  /*
+   * An exception of the visitor, it stops the replay where the errors of
+   * the games don't.
+   */
+  private static class VisitorException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    VisitorException(RuntimeException cause) {
+      super(cause);
+    }
+  }
+
+  /*
+   * Keeps the visitors from casting the view back to the board.
+   */
+  private static final class ReadOnlyView implements BoardView {
+    private final VirtualBoard board;
+
+    ReadOnlyView(VirtualBoard board) {
+      this.board = board;
+    }
+
+    @Override
+    public int getWidth() {
+      return board.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return board.getHeight();
+    }
+
+    @Override
+    public StoneState getColor(int x, int y) {
+      return board.getColor(x, y);
+    }
+
+    @Override
+    public StoneState getPlayerToMove() {
+      return board.getPlayerToMove();
+    }
+
+    @Override
+    public int[] getKoPoint() {
+      return board.getKoPoint();
+    }
+
+    @Override
+    public long getPositionHash() {
+      return board.getPositionHash();
+    }
+
+    @Override
+    public long getPositionHash(boolean includeKo) {
+      return board.getPositionHash(includeKo);
+    }
+
+    @Override
+    public Position snapshot() {
+      return board.snapshot();
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package com.toomasr.sgf4j.parser.board;
+
+/**
+ * Gets the games that {@link ReplayEngine} can't replay, a game that can't
+ * be parsed, has an illegal move or a move off the board. The game is
+ * skipped and the engine goes on with the others. Like the
+ * {@link PositionVisitor} this is called from many threads at once.
+ */
+public interface ReplayErrorListener {
+  /**
+   * Called when a game is skipped.
+   *
+   * @param source the file or the zip entry the game is in, null for the
+   *          games of a stream
+   * @param gameNo the number of the game in the file or the stream,
+   *          starting from 0, -1 if the file can't be read at all
+   * @param error what went wrong
+   */
+  void gameFailed(String source, int gameNo, RuntimeException error);
+}
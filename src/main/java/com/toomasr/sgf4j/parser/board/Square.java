@@ -1,9 +1,13 @@
 package com.toomasr.sgf4j.parser.board;
 
+/**
+ * A point of the board and the stone on it. Squares can't be changed, the
+ * boards share the same squares and hand them out to their listeners.
+ */
 public class Square {
-  private StoneState color;
-  public int x;
-  public int y;
+  private final StoneState color;
+  public final int x;
+  public final int y;
 
   public Square(StoneState color, int x, int y) {
     this.color = color;
@@ -12,15 +16,17 @@ public class Square {
   }
 
   public Square(char colorChar, int x, int y) {
+    this(toColor(colorChar), x, y);
+  }
+
+  private static StoneState toColor(char colorChar) {
     if ('-' == colorChar)
-      this.color = StoneState.EMPTY;
+      return StoneState.EMPTY;
     else if ('o' == colorChar)
-      this.color = StoneState.WHITE;
+      return StoneState.WHITE;
     else if ('x' == colorChar)
-      this.color = StoneState.BLACK;
-
-    this.x = x;
-    this.y = y;
+      return StoneState.BLACK;
+    return null;
   }
 
   public Square(int x, int y) {
@@ -1,13 +1,18 @@
 package com.toomasr.sgf4j.parser.board;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import com.toomasr.sgf4j.parser.Game;
 import com.toomasr.sgf4j.parser.GameNode;
 import com.toomasr.sgf4j.parser.Util;
 
@@ -22,9 +27,12 @@ import com.toomasr.sgf4j.parser.Util;
  *   <li>Board listener notifications for UI updates</li>
  * </ul>
  *
+ * <p>Boards can be rectangular and up to 52x52, the size of a game is in
+ * its SZ property.</p>
+ *
  * <p>Example usage:</p>
  * <pre>
- * VirtualBoard board = new VirtualBoard();
+ * VirtualBoard board = new VirtualBoard(game);
  * GameNode node = game.getRootNode();
  * GameNode prev = null;
  * while (node != null) {
@@ -34,81 +42,386 @@ import com.toomasr.sgf4j.parser.Util;
  * }
  * </pre>
  */
-public class VirtualBoard {
-  private int size = 19;
-  private Square[][] vBoard = new Square[size][size];
+public class VirtualBoard implements BoardView {
+  private static final int[] NEIGHBOUR_X = { -1, 1, 0, 0 };
+  private static final int[] NEIGHBOUR_Y = { 0, 0, -1, 1 };
+  // how many moves apart the snapshots of the position are
+  private static final int SNAPSHOT_INTERVAL = 16;
+
+  // a square for every color and point, created once and shared by all
+  // the boards so that nothing is allocated when stones come and go
+  private static final Square[][][] squares = createSquares(19);
+
+  private final int width;
+  private final int height;
+  private final Square[][][] boardSquares;
+  // the stones, captures are found with bitwise operations on these
+  private final BitBoard bits;
+  // a view of the stones for the code that works with squares, kept in
+  // sync with the bits
+  private final Square[][] vBoard;
   private List<BoardListener> boardListeners = new ArrayList<>();
-  private Map<GameNode, Set<Group>> moveToRemovedGroups = new HashMap<>();
+  private final List<BatchBoardListener> batchListeners = new ArrayList<>();
+
+  // the stones at the start of the outermost batch, for the diff
+  private int batchDepth;
+  private long[] batchBlack;
+  private long[] batchWhite;
+  private boolean batchCopied;
+  // the undo journal, a record for every move of the line of play since
+  // the board was cleared or restored from a snapshot with the stones the
+  // move took off the board. The stones are stored as point * 4 + color
+  // and the record of a move starts at its journalStarts.
+  private GameNode[] journalMoves = new GameNode[64];
+  private int[] journalStarts = new int[64];
+  private int journalSize;
+  private int[] journalStones = new int[64];
+  private int journalStonesSize;
+
+  // Zobrist hash of the stones, updated with every change of a square
+  private long stonesHash = 0;
+  // the player to move on the empty board, PL of the root node
+  private StoneState firstToMove;
+  private StoneState toMove;
+  // the point that can't be played right away because of ko, -1 if none
+  private int koX = -1;
+  private int koY = -1;
+
+  // the line of play from the last snapshot or the root to the current
+  // node, every node on it was played with makeMove and can be undone
+  private final List<GameNode> path = new ArrayList<>();
+  private final NodeIndexes pathIndexes = new NodeIndexes();
+  // the player to move and the ko after each node of the path
+  private int[] pathStates = new int[64];
+  private int pathDepth;
+  // the board is empty and nothing has been played yet
+  private boolean atStart;
+  // positions every SNAPSHOT_INTERVAL moves of the lines played so far,
+  // the cleared ones are kept for the next game so that playing through
+  // games allocates nothing once the board has seen a long game
+  private final Map<GameNode, Snapshot> snapshots = new IdentityHashMap<>();
+  private final List<Snapshot> freeSnapshots = new ArrayList<>();
+
+  // whether moves are checked against the rules
+  private boolean validating = false;
+  private boolean suicideAllowed = false;
+  // the stones hashes of the positions of the line of play, for superko
+  private final PositionSet positions = new PositionSet();
 
   /**
    * Creates a new empty 19x19 board.
    */
   public VirtualBoard() {
+    this(19, 19);
+  }
+
+  /**
+   * Creates a new board with a position on it.
+   *
+   * @param position the position to set up
+   */
+  public VirtualBoard(Position position) {
+    this(position.getWidth(), position.getHeight());
+    setPosition(position);
+  }
+
+  /**
+   * Creates a new empty board of the size in the SZ property of the game.
+   * Suicide is allowed if the RU property names rules that allow it.
+   *
+   * @param game the game to be played on the board
+   */
+  public VirtualBoard(Game game) {
+    this(game.getBoardWidth(), game.getBoardHeight(), toPlayer(game.getProperty("PL")));
+    this.suicideAllowed = isSuicideAllowed(game.getProperty("RU"));
+  }
+
+  /**
+   * Creates a new empty board.
+   *
+   * @param width the number of points on a row, up to 52
+   * @param height the number of rows, up to 52
+   */
+  public VirtualBoard(int width, int height) {
+    this(width, height, StoneState.BLACK);
+  }
+
+  private VirtualBoard(int width, int height, StoneState firstToMove) {
+    this.firstToMove = firstToMove;
+    this.bits = new BitBoard(width, height);
+    this.width = width;
+    this.height = height;
+    this.boardSquares = width <= 19 && height <= 19 ? squares : LargeBoardSquares.squares;
+    this.vBoard = new Square[width][height];
     initEmptyBoard();
   }
 
+  // only created when a board bigger than 19x19 is used
+  private static class LargeBoardSquares {
+    private static final Square[][][] squares = createSquares(52);
+  }
+
+  private static Square[][][] createSquares(int size) {
+    Square[][][] rtrn = new Square[StoneState.values().length][size][size];
+    for (StoneState color : StoneState.values()) {
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          rtrn[color.ordinal()][i][j] = new Square(color, i, j);
+        }
+      }
+    }
+    return rtrn;
+  }
+
   private void initEmptyBoard() {
-    for (int i = 0; i < vBoard.length; i++) {
-      for (int j = 0; j < vBoard.length; j++) {
-        vBoard[i][j] = new Square(StoneState.EMPTY, i, j);
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
+        vBoard[i][j] = boardSquares[StoneState.EMPTY.ordinal()][i][j];
       }
     }
+    bits.clear();
+    stonesHash = 0;
+    toMove = firstToMove;
+    koX = -1;
+    koY = -1;
+    forgetPath();
+    atStart = true;
+    positions.clear();
+    truncateJournal(0);
+  }
+
+  private void setSquare(StoneState color, int x, int y) {
+    if (color == null)
+      color = StoneState.EMPTY;
+    bits.setColor(x, y, color);
+    setView(color, x, y);
+  }
+
+  // updates the squares and the hash but not the bits
+  private void setView(StoneState color, int x, int y) {
+    stonesHash ^= Zobrist.stone(vBoard[x][y].getColor(), x, y) ^ Zobrist.stone(color, x, y);
+    vBoard[x][y] = boardSquares[color.ordinal()][x][y];
   }
 
   /**
    * Makes a move on the board, handling captures and notifying listeners.
-   * Records captured groups for potential undo.
+   * Records captured groups for potential undo. A move that is not on the
+   * board can't be played, validating or not.
    *
    * @param move the move to make
    * @param prevMove the previous move (for listener context)
+   * @throws IllegalMoveException with {@link IllegalMoveException.Reason#OFF_BOARD}
+   *           if the point of the move is not on the board or can't be read
    */
   public void makeMove(GameNode move, GameNode prevMove) {
-    // only if the move is a visible move
-    if (move.getMoveString() != null && !move.isPass() && !move.isPlacementMove()) {
-      int x = move.getCoords()[0];
-      int y = move.getCoords()[1];
-      
-      this.vBoard[x][y] = new Square(move.getColorAsEnum(), x, y);
-      Set<Group> removedGroups = removeDeadGroupsForOppColor(move.getColorAsEnum());
-      moveToRemovedGroups.put(move, removedGroups);
-      // place the stone on the board
-      placeStone(move);
+    beginBatch();
+    try {
+      // only if the move is a visible move
+      if (move.isMove() && !move.isPass(width, height)) {
+        if (!isOnBoard(move)) {
+          throw new IllegalMoveException(move, IllegalMoveException.Reason.OFF_BOARD);
+        }
+        int x = move.getX();
+        int y = move.getY();
+        StoneState color = move.getColorAsEnum();
+
+        StoneState replaced = vBoard[x][y].getColor();
+        if (validating) {
+          checkPoint(move, x, y, color, replaced);
+        }
+        int captured = bits.play(x, y, color);
+        StoneState capturedColor = oppColor(color);
+        if (captured == 0 && (validating || suicideAllowed) && bits.isDead(x, y)) {
+          if (!suicideAllowed) {
+            bits.setColor(x, y, replaced);
+            throw new IllegalMoveException(move, IllegalMoveException.Reason.SUICIDE);
+          }
+          captured = bits.removeGroup(x, y);
+          capturedColor = color;
+        }
+        if (validating) {
+          checkSuperko(move, x, y, color, capturedColor);
+        }
+
+        koX = -1;
+        koY = -1;
+        setView(color, x, y);
+        journalMove(move);
+        if (captured > 0) {
+          if (captured == 1 && capturedColor != color) {
+            findKo(x, y, color);
+          }
+          removeCaptured(capturedColor, x, y);
+        }
+        if (replaced != StoneState.EMPTY) {
+          // a broken game plays on top of a stone, undoing the move has to
+          // put it back
+          journalStone(x, y, replaced);
+        }
+        // place the stone on the board unless it took its own life
+        if (capturedColor != color) {
+          putStone(color, x, y);
+        }
+      }
+      else {
+        koX = -1;
+        koY = -1;
+        journalMove(move);
+      }
+
+      if (move.isMove()) {
+        toMove = oppColor(move.getColorAsEnum());
+      }
+      String player = move.getProperty("PL");
+      if (player != null) {
+        toMove = toPlayer(player);
+      }
+      addToPath(move);
+
+      // play the move fully out with all the bells and whistles
+      playMove(move, prevMove);
+    }
+    finally {
+      endBatch();
+    }
+  }
+
+  private boolean isOnBoard(GameNode move) {
+    return move.hasPoint() && move.getX() < width && move.getY() < height;
+  }
+
+  /*
+   * The checks that can be done before the move is played.
+   */
+  private void checkPoint(GameNode move, int x, int y, StoneState color, StoneState replaced) {
+    if (replaced != StoneState.EMPTY) {
+      throw new IllegalMoveException(move, IllegalMoveException.Reason.OCCUPIED);
+    }
+    if (x == koX && y == koY && color == toMove) {
+      throw new IllegalMoveException(move, IllegalMoveException.Reason.KO);
+    }
+    if (positions.isEmpty()) {
+      positions.add(stonesHash);
+    }
+  }
+
+  /*
+   * The move is played on the bits but not on the squares yet, the hash
+   * of the new position is the hash of the squares with the stone and
+   * without the captured stones. The bits are put back if the position
+   * has been on the board before.
+   */
+  private void checkSuperko(GameNode move, int x, int y, StoneState color, StoneState capturedColor) {
+    long hash = stonesHash ^ Zobrist.stone(color, x, y);
+    for (int point = bits.nextCaptured(0); point >= 0; point = bits.nextCaptured(point + 1)) {
+      hash ^= Zobrist.stone(capturedColor, point % width, point / width);
+    }
+    if (!positions.add(hash)) {
+      for (int point = bits.nextCaptured(0); point >= 0; point = bits.nextCaptured(point + 1)) {
+        bits.setColor(point % width, point / width, capturedColor);
+      }
+      bits.setColor(x, y, StoneState.EMPTY);
+      throw new IllegalMoveException(move, IllegalMoveException.Reason.SUPERKO);
     }
+  }
 
-    // play the move fully out with all the bells and whistles
-    playMove(move, prevMove);
+  private static StoneState toPlayer(String player) {
+    return "W".equals(player) ? StoneState.WHITE : StoneState.BLACK;
+  }
+
+  /*
+   * A single stone that captured a single stone and has no other liberty
+   * than the point it captured can be taken back right away, the other
+   * player has to wait a move.
+   */
+  private void findKo(int x, int y, StoneState color) {
+    for (int i = 0; i < 4; i++) {
+      int nx = x + NEIGHBOUR_X[i];
+      int ny = y + NEIGHBOUR_Y[i];
+      if (nx >= 0 && ny >= 0 && nx < width && ny < height && vBoard[nx][ny].isOfColor(color))
+        return;
+    }
+    if (bits.countLiberties(x, y) == 1) {
+      int point = bits.nextCaptured(0);
+      koX = point % width;
+      koY = point / width;
+    }
   }
 
   /**
    * Undoes a move, removing the stone and restoring any captured stones.
+   * If the board doesn't know what the move captured, because the position
+   * was restored from a snapshot after it, and the previous move is its
+   * parent the board is brought to the previous move instead.
    *
    * @param moveNode the move to undo
    * @param prevMove the move that was before this one
    */
   public void undoMove(GameNode moveNode, GameNode prevMove) {
-    if (!moveNode.isPass() && !moveNode.isPlacementMove() && moveNode.getMoveString() != null) {
-      String currMoveStr = moveNode.getMoveString();
-      int[] moveCoords = Util.alphaToCoords(currMoveStr);
-      removeStone(moveCoords[0], moveCoords[1]);
-    }
-
-    // if the move that we are taking back happened to remove
-    // stones on the board and now the move is undone we need
-    // to put those stones back
-    Set<Group> removedGroups = moveToRemovedGroups.get(moveNode);
-    if (removedGroups != null) {
-      for (Iterator<Group> ite = removedGroups.iterator(); ite.hasNext();) {
-        Group group = ite.next();
-        for (Iterator<Square> ite2 = group.stones.iterator(); ite2.hasNext();) {
-          Square square = ite2.next();
-          placeStone(square);
+    beginBatch();
+    try {
+      int record = journalSize - 1;
+      while (record >= 0 && journalMoves[record] != moveNode) {
+        record--;
+      }
+      if (record < 0 && prevMove != null && prevMove == moveNode.getParentNode() && !atStart) {
+        // the move was played before the position was restored from a
+        // snapshot, the stones it captured are not known. Going to the
+        // previous move gets them back
+        fastForwardTo(prevMove);
+        for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
+          BoardListener boardListener = ite.next();
+          boardListener.undoMove(moveNode, prevMove);
         }
+        return;
       }
-    }
 
-    for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
-      BoardListener boardListener = ite.next();
-      boardListener.undoMove(moveNode, prevMove);
+      if (moveNode.isMove() && !moveNode.isPass(width, height)) {
+        if (validating) {
+          positions.remove(stonesHash);
+        }
+        if (isOnBoard(moveNode)) {
+          takeStone(moveNode.getX(), moveNode.getY());
+        }
+      }
+      if (!path.isEmpty() && path.get(path.size() - 1) == moveNode) {
+        pathIndexes.remove(path.remove(path.size() - 1));
+      }
+      else {
+        forgetPath();
+      }
+      if (path.isEmpty()) {
+        if (moveNode.isMove()) {
+          toMove = moveNode.getColorAsEnum();
+        }
+        // the ko before the move is not known anymore
+        koX = -1;
+        koY = -1;
+      }
+      else {
+        setState(pathStates[path.size() - 1]);
+      }
+
+      // if the move that we are taking back happened to remove
+      // stones on the board and now the move is undone we need
+      // to put those stones back
+      if (record >= 0) {
+        int end = record + 1 < journalSize ? journalStarts[record + 1] : journalStonesSize;
+        for (int i = journalStarts[record]; i < end; i++) {
+          int stone = journalStones[i];
+          putStone(StoneState.values()[stone & 3], (stone >>> 2) % width, (stone >>> 2) / width);
+        }
+        // the moves after it are not on the line of play anymore
+        truncateJournal(record);
+      }
+
+      for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
+        BoardListener boardListener = ite.next();
+        boardListener.undoMove(moveNode, prevMove);
+      }
+    }
+    finally {
+      endBatch();
     }
   }
 
@@ -117,21 +430,31 @@ public class VirtualBoard {
    * Does not handle captures - use {@link #makeMove} for game moves.
    *
    * @param color the stone color
-   * @param x the x coordinate (0-18)
-   * @param y the y coordinate (0-18)
+   * @param x the x coordinate
+   * @param y the y coordinate
    */
   public void placeStone(StoneState color, int x, int y) {
-    this.vBoard[x][y] = new Square(color, x, y);
-    for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
-      BoardListener boardListener = ite.next();
-      boardListener.placeStone(x, y, color);
+    beginBatch();
+    try {
+      forgetPath();
+      putStone(color, x, y);
+    }
+    finally {
+      endBatch();
+    }
+  }
+
+  private void putStone(StoneState color, int x, int y) {
+    setSquare(color, x, y);
+    // indexed so that playing a move doesn't create iterators
+    for (int i = 0; i < boardListeners.size(); i++) {
+      boardListeners.get(i).placeStone(x, y, color);
     }
   }
 
   public void playMove(GameNode move, GameNode prevMove) {
-    for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
-      BoardListener boardListener = ite.next();
-      boardListener.playMove(move, prevMove);
+    for (int i = 0; i < boardListeners.size(); i++) {
+      boardListeners.get(i).playMove(move, prevMove);
     }
   }
 
@@ -146,7 +469,7 @@ public class VirtualBoard {
    * @param gameNode the node to place
    */
   public void placeStone(GameNode gameNode) {
-    placeStone(gameNode.getColorAsEnum(), gameNode.getCoords()[0], gameNode.getCoords()[1]);
+    placeStone(gameNode.getColorAsEnum(), gameNode.getX(), gameNode.getY());
   }
 
   /**
@@ -156,7 +479,7 @@ public class VirtualBoard {
    * @param j the y coordinate
    */
   public void placeWhiteStone(int i, int j) {
-    placeStone(new Square(StoneState.WHITE, i, j));
+    placeStone(StoneState.WHITE, i, j);
   }
 
   /**
@@ -166,7 +489,7 @@ public class VirtualBoard {
    * @param j the y coordinate
    */
   public void placeBlackStone(int i, int j) {
-    placeStone(new Square(StoneState.BLACK, i, j));
+    placeStone(StoneState.BLACK, i, j);
   }
 
   /**
@@ -186,16 +509,22 @@ public class VirtualBoard {
    * @return the set of groups that were removed
    */
   public Set<Group> removeDeadGroups(StoneState color) {
-    Set<Group> groups = findDistinctGroups(color);
-    Set<Group> rtrn = new HashSet<>();
-    for (Iterator<Group> ite = groups.iterator(); ite.hasNext();) {
-      Group group = ite.next();
-      if (group.isDead(vBoard)) {
-        removeStones(group);
-        rtrn.add(group);
+    beginBatch();
+    try {
+      Set<Group> groups = findDistinctGroups(color);
+      Set<Group> rtrn = new HashSet<>();
+      for (Iterator<Group> ite = groups.iterator(); ite.hasNext();) {
+        Group group = ite.next();
+        if (group.isDead(vBoard)) {
+          removeStones(group);
+          rtrn.add(group);
+        }
       }
+      return rtrn;
+    }
+    finally {
+      endBatch();
     }
-    return rtrn;
   }
 
   /**
@@ -205,10 +534,20 @@ public class VirtualBoard {
    * @param y the y coordinate
    */
   public void removeStone(int x, int y) {
-    vBoard[x][y] = new Square(x, y);
-    for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
-      BoardListener boardListener = ite.next();
-      boardListener.removeStone(x, y);
+    beginBatch();
+    try {
+      forgetPath();
+      takeStone(x, y);
+    }
+    finally {
+      endBatch();
+    }
+  }
+
+  private void takeStone(int x, int y) {
+    setSquare(StoneState.EMPTY, x, y);
+    for (int i = 0; i < boardListeners.size(); i++) {
+      boardListeners.get(i).removeStone(x, y);
     }
   }
 
@@ -218,10 +557,69 @@ public class VirtualBoard {
    * @param group the group to remove
    */
   public void removeStones(Group group) {
-    for (Iterator<Square> ite = group.stones.iterator(); ite.hasNext();) {
-      Square square = ite.next();
-      removeStone(square.x, square.y);
+    beginBatch();
+    try {
+      for (Iterator<Square> ite = group.stones.iterator(); ite.hasNext();) {
+        Square square = ite.next();
+        removeStone(square.x, square.y);
+      }
+    }
+    finally {
+      endBatch();
+    }
+  }
+
+  /*
+   * Takes the stones the last move captured, or its own group for a
+   * suicide, off the view and tells the listeners about it. The stones
+   * go into the journal record of the move, undoing the move puts them
+   * all back.
+   */
+  private void removeCaptured(StoneState color, int moveX, int moveY) {
+    for (int point = bits.nextCaptured(0); point >= 0; point = bits.nextCaptured(point + 1)) {
+      int x = point % width;
+      int y = point / width;
+      // the stone of a suicide is not put back when the move is undone
+      if (x != moveX || y != moveY) {
+        journalStone(x, y, color);
+      }
+      takeStone(x, y);
+    }
+  }
+
+  // starts the journal record of a move
+  private void journalMove(GameNode move) {
+    // a move that doesn't follow the last one is on another line of play
+    // or in another game, the old records could only be undone out of
+    // order and would keep the nodes around
+    if (journalSize > 0 && (move.getParentNode() == null || journalMoves[journalSize - 1] != move.getParentNode())) {
+      truncateJournal(0);
+    }
+    if (journalSize == journalMoves.length) {
+      journalMoves = Arrays.copyOf(journalMoves, journalSize * 2);
+      journalStarts = Arrays.copyOf(journalStarts, journalSize * 2);
+    }
+    journalMoves[journalSize] = move;
+    journalStarts[journalSize++] = journalStonesSize;
+  }
+
+  // adds a stone the move took off the board to its journal record
+  private void journalStone(int x, int y, StoneState color) {
+    if (journalStonesSize == journalStones.length) {
+      journalStones = Arrays.copyOf(journalStones, journalStonesSize * 2);
+    }
+    journalStones[journalStonesSize++] = (y * width + x) << 2 | color.ordinal();
+  }
+
+  // drops the records from the given one on
+  private void truncateJournal(int record) {
+    if (record >= journalSize) {
+      return;
     }
+    journalStonesSize = journalStarts[record];
+    // let go of the nodes
+    Arrays.fill(journalMoves, record, journalSize, null);
+    journalSize = record;
   }
 
   /**
@@ -253,21 +651,28 @@ public class VirtualBoard {
 
   /*
    * Starts from a node and then finds all the connected stones with this group.
-   * Basically populates by starting from a single node.
+   * Basically populates by starting from a single node. The squares still to
+   * be looked at are kept on a stack.
    */
   private void populateGroup(int i, int j, StoneState color, Group activeGroup) {
-    if (vBoard[i][j].isOfColor(color) && !activeGroup.contains(vBoard[i][j])) {
-      activeGroup.addStone(vBoard[i][j]);
-      if (i - 1 > -1)
-        populateGroup(i - 1, j, color, activeGroup);
-      if (i + 1 < 19)
-        populateGroup(i + 1, j, color, activeGroup);
-      if (j - 1 > -1)
-        populateGroup(i, j - 1, color, activeGroup);
-      if (j + 1 < 19)
-        populateGroup(i, j + 1, color, activeGroup);
-    } else {
-      return;
+    Deque<int[]> toCheck = new ArrayDeque<>();
+    toCheck.push(new int[] { i, j });
+
+    while (!toCheck.isEmpty()) {
+      int[] coords = toCheck.pop();
+      int x = coords[0];
+      int y = coords[1];
+      if (vBoard[x][y].isOfColor(color) && !activeGroup.contains(vBoard[x][y])) {
+        activeGroup.addStone(vBoard[x][y]);
+        if (y + 1 < vBoard[x].length)
+          toCheck.push(new int[] { x, y + 1 });
+        if (y - 1 > -1)
+          toCheck.push(new int[] { x, y - 1 });
+        if (x + 1 < vBoard.length)
+          toCheck.push(new int[] { x + 1, y });
+        if (x - 1 > -1)
+          toCheck.push(new int[] { x - 1, y });
+      }
     }
   }
 
@@ -296,11 +701,40 @@ public class VirtualBoard {
     }
   }
 
+  /**
+   * Returns the number of points on a row.
+   *
+   * @return the width of the board
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the height of the board
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the color of the stone on a point.
+   *
+   * @param x the x coordinate
+   * @param y the y coordinate
+   * @return the color of the stone or EMPTY
+   */
+  public StoneState getColor(int x, int y) {
+    return vBoard[x][y].getColor();
+  }
+
   /**
    * Returns the square at the specified coordinates.
    *
-   * @param x the x coordinate (0-18)
-   * @param y the y coordinate (0-18)
+   * @param x the x coordinate
+   * @param y the y coordinate
    * @return the square at that position
    */
   public Square getCoord(int x, int y) {
@@ -328,46 +762,477 @@ public class VirtualBoard {
   }
 
   /**
-   * Fast-forwards the board to a specific node by replaying all moves from
-   * the root. Clears the board first and then plays all moves leading to
-   * the specified node.
+   * Brings the board to the position of a node. The board remembers the
+   * line of play it is on and a snapshot of the position every few moves
+   * of the lines it has played. To get to the node the moves back to the
+   * common ancestor with the current node are undone and the moves from
+   * there are played, or the position is restored from the nearest
+   * snapshot before the node and the moves after it are played. Jumping
+   * around a game costs about as much as the distance of the jump and not
+   * the number of moves from the root.
+   *
+   * If moves of the game are changed after they were played call
+   * {@link #forgetPositions()} so that the old positions are not used.
    *
    * @param fwdTo the target node to fast-forward to
    */
   public void fastForwardTo(GameNode fwdTo) {
-    // the fwdTo could be an element in one of the child nodes
-    // it is really difficult to find if we start from the rootNode
-    // so lets start from the node itself, go backwards until we
-    // find the root node and later on play all the moves until that point
-    List<GameNode> movesToPlay = new ArrayList<>();
-    GameNode node = fwdTo;
-    do {
-      // if (node.isMove()) {
-      movesToPlay.add(node);
-      // }
-    } while ((node = node.getParentNode()) != null);
+    beginBatch();
+    try {
+      // go back from the node until we find a node on the current line of
+      // play or a snapshot, these are the moves to play after that
+      List<GameNode> movesToPlay = new ArrayList<>();
+      int pathIndex = -1;
+      int movesAfterPath = 0;
+      Snapshot snapshot = null;
+      GameNode snapshotNode = null;
+      GameNode node = fwdTo;
+      while (node != null) {
+        int index = pathIndex < 0 ? pathIndexes.get(node) : -1;
+        if (index >= 0) {
+          pathIndex = index;
+          movesAfterPath = movesToPlay.size();
+          // undoing a few moves is cheaper than restoring a snapshot
+          if (path.size() - 1 - pathIndex <= SNAPSHOT_INTERVAL) {
+            break;
+          }
+        }
+        // the superko check needs all the positions of the line
+        snapshot = validating ? null : snapshots.get(node);
+        if (snapshot != null) {
+          snapshotNode = node;
+          break;
+        }
+        movesToPlay.add(node);
+        node = node.getParentNode();
+      }
+
+      int undoCount = path.size() - 1 - pathIndex;
+      if (pathIndex >= 0 && (snapshot == null || undoCount + movesAfterPath <= movesToPlay.size())) {
+        for (int i = path.size() - 1; i > pathIndex; i--) {
+          undoMove(path.get(i), path.get(i - 1));
+        }
+        replay(movesToPlay.subList(0, movesAfterPath), path.get(pathIndex));
+      }
+      else if (snapshot != null) {
+        restore(snapshotNode, snapshot);
+        replay(movesToPlay, snapshotNode);
+        if (movesToPlay.isEmpty()) {
+          playMove(fwdTo, fwdTo.getParentNode());
+        }
+      }
+      else {
+        // none of the snapshots is on the way to the node, they are from
+        // another game
+        clearSnapshots();
+        initEmptyBoard();
+        for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
+          BoardListener boardListener = ite.next();
+          boardListener.initInitialPosition();
+        }
+        replay(movesToPlay, null);
+      }
+    }
+    finally {
+      endBatch();
+    }
+  }
+
+  /**
+   * Turns checking the moves against the rules on or off. A validating
+   * board throws an {@link IllegalMoveException} from
+   * {@link #makeMove(GameNode, GameNode)} for a move on an occupied point,
+   * a suicide if the rules don't allow it, taking back a ko right away and
+   * a move that repeats an earlier position of the line of play
+   * (positional superko). The positions are remembered from the moment
+   * the checking is turned on, looking them up costs the same however
+   * long the game is.
+   *
+   * @param validating whether to check the moves
+   */
+  public void setValidating(boolean validating) {
+    this.validating = validating;
+    positions.clear();
+  }
 
+  /**
+   * Returns whether the moves are checked against the rules.
+   *
+   * @return true if the board is validating
+   */
+  public boolean isValidating() {
+    return validating;
+  }
+
+  /**
+   * Sets whether a move can take the last liberty of its own group, the
+   * group is then taken off the board. When not allowed a validating board
+   * rejects such moves and other boards leave the stones on the board.
+   *
+   * @param suicideAllowed whether suicide is allowed
+   */
+  public void setSuicideAllowed(boolean suicideAllowed) {
+    this.suicideAllowed = suicideAllowed;
+  }
+
+  /**
+   * Returns whether a move can take the last liberty of its own group.
+   *
+   * @return true if suicide is allowed
+   */
+  public boolean isSuicideAllowed() {
+    return suicideAllowed;
+  }
+
+  /*
+   * New Zealand, Ing (GOE) and Tromp-Taylor rules allow suicide, most
+   * others don't.
+   */
+  static boolean isSuicideAllowed(String rules) {
+    if (rules == null) {
+      return false;
+    }
+    String name = rules.trim().toLowerCase(Locale.ROOT);
+    return name.equals("nz") || name.startsWith("new zealand") || name.equals("goe") || name.startsWith("ing")
+        || name.startsWith("tromp");
+  }
+
+  /**
+   * Replays all the lines of play of the game on a validating board and
+   * returns the first illegal move. The main line is checked first and
+   * then the variations in the order they are in the game. The stones of
+   * the AB and AW properties of the game are put on the board first.
+   *
+   * @param game the game to check
+   * @return the node with the first illegal move, null if all the moves
+   *         are legal
+   */
+  public static GameNode findFirstIllegalMove(Game game) {
+    VirtualBoard board = new VirtualBoard(game);
+    board.startGame(game);
+    board.setValidating(true);
+
+    Deque<GameNode> toCheck = new ArrayDeque<>();
+    toCheck.push(game.getRootNode());
+    while (!toCheck.isEmpty()) {
+      GameNode node = toCheck.pop();
+      try {
+        // going to the root would clear the setup stones
+        if (node == game.getRootNode()) {
+          board.makeMove(node, null);
+        }
+        else {
+          board.fastForwardTo(node);
+        }
+      }
+      catch (IllegalMoveException e) {
+        return e.getNode();
+      }
+
+      if (node.hasChildren()) {
+        List<GameNode> children = new ArrayList<>(node.getChildren());
+        // the main line goes first
+        children.remove(node.getNextNode());
+        for (int i = children.size() - 1; i > -1; i--) {
+          toCheck.push(children.get(i));
+        }
+      }
+      if (node.getNextNode() != null) {
+        toCheck.push(node.getNextNode());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Clears the board and puts the stones of the AB and AW properties of
+   * the game on it, ready for playing the game from its root node with
+   * {@link #makeMove(GameNode, GameNode)} or
+   * {@link #fastForwardTo(GameNode)}. The player to move and the suicide
+   * rule are taken from the game, the board can be reused for any game
+   * of the same size.
+   *
+   * @param game the game to be played on the board
+   */
+  public void startGame(Game game) {
+    if (game.getBoardWidth() != width || game.getBoardHeight() != height) {
+      throw new IllegalArgumentException("Game on a " + game.getBoardWidth() + "x" + game.getBoardHeight() + " board doesn't fit on a " + width + "x" + height + " board");
+    }
+    firstToMove = toPlayer(game.getProperty("PL"));
+    suicideAllowed = isSuicideAllowed(game.getProperty("RU"));
+    clearSnapshots();
     initEmptyBoard();
+    setUpStones(StoneState.BLACK, game.getProperty("AB"));
+    setUpStones(StoneState.WHITE, game.getProperty("AW"));
+  }
 
-    for (Iterator<BoardListener> ite = boardListeners.iterator(); ite.hasNext();) {
-      BoardListener boardListener = ite.next();
-      boardListener.initInitialPosition();
+  /*
+   * Puts the setup stones on an empty board, the board stays at the start
+   * of the game.
+   */
+  private void setUpStones(StoneState color, String points) {
+    if (points == null || points.isEmpty()) {
+      return;
+    }
+    for (String point : Util.coordSequencesToSingle(points)) {
+      int[] coords = Util.alphaToCoords(point);
+      if (coords[0] < width && coords[1] < height) {
+        setSquare(color, coords[0], coords[1]);
+      }
     }
+  }
 
-    GameNode prevMove = null;
-    // now lets re-play the moves
-    for (int i = movesToPlay.size() - 1; i > -1; i--) {
-      node = movesToPlay.get(i);
-      makeMove(node, prevMove);
+  /**
+   * Forgets the line of play and the snapshots of positions that
+   * {@link #fastForwardTo(GameNode)} uses. The next call to it replays
+   * the game from the root.
+   */
+  public void forgetPositions() {
+    forgetPath();
+    clearSnapshots();
+  }
 
+  // plays the moves from the last to the first
+  private void replay(List<GameNode> moves, GameNode prevMove) {
+    for (int i = moves.size() - 1; i > -1; i--) {
+      GameNode node = moves.get(i);
+      makeMove(node, prevMove);
       prevMove = node;
     }
   }
 
+  /*
+   * Keeps track of the line of play if the move continues it, the moves
+   * on the line can be undone later.
+   */
+  private void addToPath(GameNode move) {
+    int depth;
+    if (path.isEmpty()) {
+      if (!atStart || move.getParentNode() != null) {
+        return;
+      }
+      atStart = false;
+      pathDepth = 0;
+      depth = 0;
+    }
+    else if (path.get(path.size() - 1) == move.getParentNode()) {
+      depth = pathDepth + path.size();
+    }
+    else {
+      forgetPath();
+      return;
+    }
+
+    if (path.size() == pathStates.length) {
+      pathStates = Arrays.copyOf(pathStates, pathStates.length * 2);
+    }
+    pathStates[path.size()] = getState();
+    pathIndexes.put(move, path.size());
+    path.add(move);
+
+    if (!validating && depth % SNAPSHOT_INTERVAL == 0 && !snapshots.containsKey(move)) {
+      snapshots.put(move, takeSnapshot(depth));
+    }
+  }
+
+  private Snapshot takeSnapshot(int depth) {
+    Snapshot rtrn;
+    if (freeSnapshots.isEmpty()) {
+      rtrn = new Snapshot(bits.copyStones(StoneState.BLACK), bits.copyStones(StoneState.WHITE));
+    }
+    else {
+      rtrn = freeSnapshots.remove(freeSnapshots.size() - 1);
+      bits.copyStones(StoneState.BLACK, rtrn.black);
+      bits.copyStones(StoneState.WHITE, rtrn.white);
+    }
+    rtrn.state = getState();
+    rtrn.depth = depth;
+    return rtrn;
+  }
+
+  private void clearSnapshots() {
+    if (snapshots.isEmpty()) {
+      return;
+    }
+    for (Snapshot snapshot : snapshots.values()) {
+      freeSnapshots.add(snapshot);
+    }
+    snapshots.clear();
+  }
+
+  // the board was changed outside of a line of play
+  private void forgetPath() {
+    path.clear();
+    pathIndexes.clear();
+    atStart = false;
+  }
+
+  /*
+   * Restores the position of the snapshot, the line of play starts from
+   * the node of the snapshot.
+   */
+  private void restore(GameNode node, Snapshot snapshot) {
+    setPosition(snapshot.black, snapshot.white, snapshot.state, journalPrefix(node, snapshot.depth));
+    pathDepth = snapshot.depth;
+    pathStates[0] = getState();
+    pathIndexes.put(node, 0);
+    path.add(node);
+  }
+
+  /*
+   * Returns the number of records at the start of the journal that are for
+   * the node and the moves before it. These stay right when the position
+   * of the node is restored. The journal starts from the root, the record
+   * of a move is at its depth.
+   */
+  private int journalPrefix(GameNode node, int depth) {
+    GameNode ancestor = node;
+    int record = depth;
+    for (; record >= journalSize && ancestor != null; record--) {
+      ancestor = ancestor.getParentNode();
+    }
+    int rtrn = record + 1;
+    for (; record >= 0; record--) {
+      if (ancestor == null || journalMoves[record] != ancestor) {
+        rtrn = record;
+      }
+      ancestor = ancestor == null ? null : ancestor.getParentNode();
+    }
+    return ancestor == null ? rtrn : 0;
+  }
+
+  /**
+   * Returns an immutable copy of the position: the stones, the player to
+   * move and the ko point. This copies the bitsets of the stones, a few
+   * longs for a 19x19 board.
+   *
+   * @return the current position
+   */
+  public Position snapshot() {
+    return new Position(width, height, bits.copyStones(StoneState.BLACK), bits.copyStones(StoneState.WHITE), stonesHash, toMove, koX, koY);
+  }
+
+  /**
+   * Sets up the board to a position. Only the points that differ are
+   * changed and the listeners are told about these. The line of play and
+   * the undo information are forgotten, the moves played so far can't be
+   * undone after this.
+   *
+   * @param position the position, of a board of the same size
+   */
+  public void setPosition(Position position) {
+    if (position.getWidth() != width || position.getHeight() != height) {
+      throw new IllegalArgumentException("Position of a " + position.getWidth() + "x" + position.getHeight() + " board doesn't fit on a " + width + "x" + height + " board");
+    }
+    setPosition(position.black, position.white, state(position.toMove, position.koX, position.koY), 0);
+  }
+
+  /*
+   * Sets up the stones and the state and keeps the first records of the
+   * journal, the moves that led to the position can still be undone.
+   */
+  private void setPosition(long[] black, long[] white, int state, int keepRecords) {
+    beginBatch();
+    try {
+      for (int point = bits.nextDifference(black, white, 0); point >= 0; point = bits.nextDifference(black, white, point + 1)) {
+        StoneState color = BitBoard.getColor(black, white, point);
+        if (color == StoneState.EMPTY) {
+          takeStone(point % width, point / width);
+        }
+        else {
+          putStone(color, point % width, point / width);
+        }
+      }
+      setState(state);
+      truncateJournal(keepRecords);
+      forgetPath();
+      positions.clear();
+    }
+    finally {
+      endBatch();
+    }
+  }
+
+  // the player to move and the ko point packed into an int
+  private int getState() {
+    return state(toMove, koX, koY);
+  }
+
+  private static int state(StoneState toMove, int koX, int koY) {
+    return (toMove == StoneState.WHITE ? 1 : 0) | (koX + 1) << 8 | (koY + 1) << 16;
+  }
+
+  private void setState(int state) {
+    toMove = (state & 1) == 1 ? StoneState.WHITE : StoneState.BLACK;
+    koX = (state >>> 8 & 0xff) - 1;
+    koY = (state >>> 16 & 0xff) - 1;
+  }
+
+  // the stones are copied into the arrays again when the snapshot is
+  // reused
+  private static class Snapshot {
+    final long[] black;
+    final long[] white;
+    int state;
+    int depth;
+
+    Snapshot(long[] black, long[] white) {
+      this.black = black;
+      this.white = white;
+    }
+  }
+
+  /**
+   * Returns the 64 bit Zobrist hash of the position: the stones and the
+   * player to move. The hash is kept up to date as the stones change so
+   * this costs nothing. Equal positions have equal hashes on every run,
+   * the hashes can be stored and compared later.
+   *
+   * @return the hash of the position
+   */
+  public long getPositionHash() {
+    return getPositionHash(false);
+  }
+
   /**
-   * Returns the underlying board array.
+   * Returns the 64 bit Zobrist hash of the position, optionally including
+   * the point that can't be played because of ko. Without the ko the hash
+   * is the one to use for superko checks.
    *
-   * @return 19x19 array of Squares
+   * @param includeKo whether the ko point is part of the hash
+   * @return the hash of the position
+   */
+  public long getPositionHash(boolean includeKo) {
+    return Zobrist.hash(stonesHash, toMove, koX, koY, includeKo);
+  }
+
+  /**
+   * Returns the player to move next. This follows the moves played and the
+   * PL property, black starts unless the root node of the game says
+   * otherwise.
+   *
+   * @return BLACK or WHITE
+   */
+  public StoneState getPlayerToMove() {
+    return toMove;
+  }
+
+  /**
+   * Returns the point the player to move can't play because it would
+   * retake a ko right away.
+   *
+   * @return the x and y of the point, or null if there is no ko
+   */
+  public int[] getKoPoint() {
+    return koX < 0 ? null : new int[] { koX, koY };
+  }
+
+  /**
+   * Returns the stones as an array of squares indexed by x and y. The
+   * stones are stored in a {@link BitBoard}, the array is a view of it that
+   * is kept up to date as the stones change.
+   *
+   * @return width x height array of Squares
    */
   public Square[][] getBoard() {
     return vBoard;
@@ -381,12 +1246,87 @@ public class VirtualBoard {
   public void addBoardListener(BoardListener listener) {
     this.boardListeners.add(listener);
   }
+
+  /**
+   * Adds a listener that is told about the changed stones once at the end
+   * of every batch, see {@link #beginBatch()}. The listeners added with
+   * {@link #addBoardListener(BoardListener)} still get a call for every
+   * stone.
+   *
+   * @param listener the listener
+   */
+  public void addBatchBoardListener(BatchBoardListener listener) {
+    batchListeners.add(listener);
+  }
+
+  public void removeBatchBoardListener(BatchBoardListener listener) {
+    batchListeners.remove(listener);
+  }
+
+  /**
+   * Starts a batch of changes. The batch listeners get a single
+   * {@link BoardDiff} of all the stones changed until the matching
+   * {@link #endBatch()}. Batches can be nested, the diff is sent when the
+   * outermost one ends. Every move, undo and stone placed is a batch of
+   * its own and {@link #fastForwardTo(GameNode)} is one batch however
+   * many moves it plays.
+   */
+  public void beginBatch() {
+    if (batchDepth++ > 0) {
+      return;
+    }
+    batchCopied = !batchListeners.isEmpty();
+    if (!batchCopied) {
+      return;
+    }
+    if (batchBlack == null) {
+      batchBlack = bits.copyStones(StoneState.BLACK);
+      batchWhite = bits.copyStones(StoneState.WHITE);
+    }
+    else {
+      bits.copyStones(StoneState.BLACK, batchBlack);
+      bits.copyStones(StoneState.WHITE, batchWhite);
+    }
+  }
+
+  /**
+   * Ends a batch started with {@link #beginBatch()}. At the end of the
+   * outermost batch the batch listeners are told about the stones that
+   * differ from the start of the batch, if any.
+   */
+  public void endBatch() {
+    if (batchDepth == 0) {
+      throw new IllegalStateException("endBatch() without beginBatch()");
+    }
+    // a listener added during the batch doesn't have the starting stones
+    if (--batchDepth > 0 || !batchCopied) {
+      return;
+    }
+    List<Square> added = new ArrayList<>();
+    List<Square> removed = new ArrayList<>();
+    for (int point = bits.nextDifference(batchBlack, batchWhite, 0); point >= 0; point = bits.nextDifference(batchBlack, batchWhite, point + 1)) {
+      int x = point % width;
+      int y = point / width;
+      StoneState before = BitBoard.getColor(batchBlack, batchWhite, point);
+      if (before != StoneState.EMPTY)
+        removed.add(boardSquares[before.ordinal()][x][y]);
+      if (!vBoard[x][y].isEmpty())
+        added.add(vBoard[x][y]);
+    }
+    if (added.isEmpty() && removed.isEmpty()) {
+      return;
+    }
+    BoardDiff diff = new BoardDiff(added, removed);
+    for (BatchBoardListener listener : new ArrayList<>(batchListeners)) {
+      listener.boardChanged(diff);
+    }
+  }
   
   public String toString() {
     StringBuffer rtrn = new StringBuffer();
     
-    for (int i = 0; i < vBoard.length; i++) {
-      for (int j = 0; j < vBoard.length; j++) {
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
         rtrn.append(vBoard[j][i]);
       }
       rtrn.append("\n");
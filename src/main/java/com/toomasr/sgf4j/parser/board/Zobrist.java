@@ -0,0 +1,69 @@
+package com.toomasr.sgf4j.parser.board;
+
+/**
+ * The random numbers for Zobrist hashing of positions. The hash of a
+ * position is the XOR of the numbers of its stones so adding or removing
+ * a stone is a single XOR.
+ *
+ * The numbers are generated with SplitMix64 from a fixed seed, they are
+ * the same on every run and every JVM so the hashes can be stored.
+ */
+final class Zobrist {
+  private static final int MAX_SIZE = 52;
+  private static final long SEED = 0x5367_6634_4A5A_6F62L;
+
+  private static final long[] black = new long[MAX_SIZE * MAX_SIZE];
+  private static final long[] white = new long[MAX_SIZE * MAX_SIZE];
+  private static final long[] ko = new long[MAX_SIZE * MAX_SIZE];
+  static final long WHITE_TO_MOVE;
+
+  static {
+    long state = SEED;
+    for (int i = 0; i < black.length; i++) {
+      black[i] = mix(state += 0x9E37_79B9_7F4A_7C15L);
+      white[i] = mix(state += 0x9E37_79B9_7F4A_7C15L);
+      ko[i] = mix(state += 0x9E37_79B9_7F4A_7C15L);
+    }
+    WHITE_TO_MOVE = mix(state += 0x9E37_79B9_7F4A_7C15L);
+  }
+
+  private Zobrist() {
+  }
+
+  /**
+   * Returns the number of a stone, 0 for EMPTY. The numbers don't depend
+   * on the size of the board.
+   */
+  static long stone(StoneState color, int x, int y) {
+    if (color == StoneState.BLACK)
+      return black[x * MAX_SIZE + y];
+    if (color == StoneState.WHITE)
+      return white[x * MAX_SIZE + y];
+    return 0;
+  }
+
+  /**
+   * Returns the number of a point that can't be played because of ko.
+   */
+  static long ko(int x, int y) {
+    return ko[x * MAX_SIZE + y];
+  }
+
+  /**
+   * Returns the hash of a position from the hash of its stones.
+   */
+  static long hash(long stonesHash, StoneState toMove, int koX, int koY, boolean includeKo) {
+    long rtrn = stonesHash;
+    if (toMove == StoneState.WHITE)
+      rtrn ^= WHITE_TO_MOVE;
+    if (includeKo && koX >= 0)
+      rtrn ^= ko(koX, koY);
+    return rtrn;
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+    return z ^ (z >>> 31);
+  }
+}
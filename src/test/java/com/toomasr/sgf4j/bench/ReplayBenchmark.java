@@ -0,0 +1,160 @@
+package com.toomasr.sgf4j.bench;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.TestSgfLexer;
+import com.toomasr.sgf4j.parser.board.BitBoard;
+import com.toomasr.sgf4j.parser.board.ReplayEngine;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+/**
+ * Replays the main lines of the test games on a {@link VirtualBoard},
+ * comparing {@link VirtualBoard#makeMove(GameNode, GameNode)} to looking
+ * for captures with a scan of the whole board after every move and to
+ * playing the moves on a bare {@link BitBoard}. Checking all the lines of
+ * play for illegal moves is measured too. The jump benchmarks go to
+ * the nodes of the longest game in random order with
+ * {@link VirtualBoard#fastForwardTo(GameNode)} on the same board and on a
+ * new board every time, which is how the board used to do it.
+ * {@link ReplayEngine} replays the corpus on all the processors.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *   com.toomasr.sgf4j.bench.ReplayBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+  private List<Game> corpus;
+  private Game longest;
+  private List<GameNode> jumps;
+  private VirtualBoard jumpBoard;
+
+  @Setup
+  public void setUp() throws Exception {
+    corpus = new ArrayList<>();
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      corpus.add(game);
+      if (longest == null || game.getNoMoves() > longest.getNoMoves()) {
+        longest = game;
+      }
+    }
+    jumps = new ArrayList<>();
+    for (GameNode node = longest.getRootNode(); node != null; node = node.getNextNode()) {
+      jumps.add(node);
+    }
+    Collections.shuffle(jumps, new Random(42));
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpJumps() {
+    jumpBoard = new VirtualBoard(longest);
+  }
+
+  @Benchmark
+  public void jumpWithSnapshots(Blackhole bh) {
+    for (GameNode node : jumps) {
+      jumpBoard.fastForwardTo(node);
+      bh.consume(jumpBoard.getPositionHash());
+    }
+  }
+
+  @Benchmark
+  public void jumpReplayFromRoot(Blackhole bh) {
+    for (GameNode node : jumps) {
+      VirtualBoard board = new VirtualBoard(longest);
+      board.fastForwardTo(node);
+      bh.consume(board.getPositionHash());
+    }
+  }
+
+  @Benchmark
+  public void makeMove(Blackhole bh) {
+    for (Game game : corpus) {
+      VirtualBoard board = new VirtualBoard();
+      GameNode prevMove = null;
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        board.makeMove(node, prevMove);
+        prevMove = node;
+      }
+      bh.consume(board);
+    }
+  }
+
+  @Benchmark
+  public long replayEngine() {
+    // the corpus a few times over so that there is work for every thread
+    ReplayEngine engine = new ReplayEngine();
+    return engine.replay(Collections.nCopies(8, corpus).stream().flatMap(List::stream), (game, node, board) -> {
+    });
+  }
+
+  @Benchmark
+  public void findFirstIllegalMove(Blackhole bh) {
+    for (Game game : corpus) {
+      bh.consume(VirtualBoard.findFirstIllegalMove(game));
+    }
+  }
+
+  @Benchmark
+  public void bitBoard(Blackhole bh) {
+    BitBoard board = new BitBoard(19);
+    for (Game game : corpus) {
+      board.clear();
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        if (node.isMove() && !node.isPass()) {
+          bh.consume(board.play(node.getX(), node.getY(), node.getColorAsEnum()));
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void fullBoardScan(Blackhole bh) {
+    for (Game game : corpus) {
+      VirtualBoard board = new VirtualBoard();
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        if (node.isMove() && !node.isPass()) {
+          board.placeStone(node.getColorAsEnum(), node.getX(), node.getY());
+          bh.consume(board.removeDeadGroupsForOppColor(node.getColorAsEnum()));
+        }
+      }
+      bh.consume(board);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(ReplayBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,114 @@
+package com.toomasr.sgf4j.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.toomasr.sgf4j.parser.BinaryGameReader;
+import com.toomasr.sgf4j.parser.BinaryGameWriter;
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.SgfGenerator;
+import com.toomasr.sgf4j.parser.SgfReader;
+
+/**
+ * Compares reading a corpus of games with the {@link SgfReader} cursor to
+ * building the full games with {@link Sgf#createFromString(String)} and to
+ * loading the same games from the {@link BinaryGameWriter} format.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *   com.toomasr.sgf4j.bench.SgfReaderBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SgfReaderBenchmark {
+  private List<String> corpus;
+  private byte[] binary;
+
+  @Setup
+  public void setUp() {
+    SgfGenerator generator = new SgfGenerator(7);
+    corpus = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      corpus.add(generator.game(200 + i % 100));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (BinaryGameWriter writer = new BinaryGameWriter(bytes)) {
+      for (String sgf : corpus) {
+        writer.write(Sgf.createFromString(sgf));
+      }
+    }
+    binary = bytes.toByteArray();
+  }
+
+  @Benchmark
+  public void createFromString(Blackhole bh) {
+    for (String sgf : corpus) {
+      Game game = Sgf.createFromString(sgf);
+      bh.consume(game);
+    }
+  }
+
+  @Benchmark
+  public void binaryRead(Blackhole bh) {
+    BinaryGameReader reader = new BinaryGameReader(new ByteArrayInputStream(binary));
+    Game game;
+    while ((game = reader.read()) != null) {
+      bh.consume(game);
+    }
+  }
+
+  @Benchmark
+  public void readerAllTokens(Blackhole bh) {
+    for (String sgf : corpus) {
+      SgfReader reader = new SgfReader(sgf);
+      SgfReader.Token token;
+      while ((token = reader.next()) != SgfReader.Token.END) {
+        if (token == SgfReader.Token.PROPERTY) {
+          bh.consume(reader.getValue());
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void readerRootNodeOnly(Blackhole bh) {
+    for (String sgf : corpus) {
+      SgfReader reader = new SgfReader(sgf);
+      reader.next();
+      reader.next();
+      while (reader.next() == SgfReader.Token.PROPERTY) {
+        bh.consume(reader.getValue());
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(SgfReaderBenchmark.class.getSimpleName()).build()).run();
+  }
+}
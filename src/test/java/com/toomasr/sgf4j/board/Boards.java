@@ -0,0 +1,99 @@
+package com.toomasr.sgf4j.board;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+/*
+ * The boards and moves the board tests set up.
+ */
+final class Boards {
+  private Boards() {
+  }
+
+  /*
+   * A 19x19 board with the stones placed, the points like "ba ab" and an
+   * empty string for no stones.
+   */
+  static VirtualBoard withStones(String black, String white) {
+    VirtualBoard rtrn = new VirtualBoard();
+    for (String point : black.split(" +")) {
+      if (!point.isEmpty())
+        rtrn.placeBlackStone(point.charAt(0) - 'a', point.charAt(1) - 'a');
+    }
+    for (String point : white.split(" +")) {
+      if (!point.isEmpty())
+        rtrn.placeWhiteStone(point.charAt(0) - 'a', point.charAt(1) - 'a');
+    }
+    return rtrn;
+  }
+
+  static VirtualBoard validating(String black, String white) {
+    VirtualBoard rtrn = withStones(black, white);
+    rtrn.setValidating(true);
+    return rtrn;
+  }
+
+  static GameNode move(String color, String point) {
+    GameNode rtrn = new GameNode(null);
+    rtrn.addProperty(color, point);
+    return rtrn;
+  }
+
+  static GameNode pass(String color) {
+    return move(color, "");
+  }
+
+  /*
+   * The board after the main line of the game.
+   */
+  static VirtualBoard replay(Game game) {
+    VirtualBoard board = new VirtualBoard(game);
+    GameNode prevMove = null;
+    for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+      board.makeMove(node, prevMove);
+      prevMove = node;
+    }
+    return board;
+  }
+
+  static VirtualBoard replay(String sgf) {
+    return replay(Sgf.createFromString(sgf));
+  }
+
+  /*
+   * Every line of play from the root node to a node without a next node.
+   */
+  static List<List<GameNode>> lines(Game game) {
+    List<List<GameNode>> rtrn = new ArrayList<>();
+    Deque<GameNode> stack = new ArrayDeque<>();
+    stack.push(game.getRootNode());
+    while (!stack.isEmpty()) {
+      GameNode node = stack.pop();
+      while (node.getNextNode() != null || node.hasChildren()) {
+        for (GameNode child : node.getChildren()) {
+          stack.push(child);
+        }
+        if (node.getNextNode() == null) {
+          break;
+        }
+        node = node.getNextNode();
+      }
+
+      List<GameNode> line = new ArrayList<>();
+      for (GameNode lineNode = node; lineNode != null; lineNode = lineNode.getParentNode()) {
+        line.add(lineNode);
+      }
+      Collections.reverse(line);
+      rtrn.add(line);
+    }
+    return rtrn;
+  }
+}
@@ -0,0 +1,139 @@
+package com.toomasr.sgf4j.board;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.TestSgfLexer;
+import com.toomasr.sgf4j.parser.board.BoardDiff;
+import com.toomasr.sgf4j.parser.board.BoardListenerAdapter;
+import com.toomasr.sgf4j.parser.board.Square;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestBatchListener extends TestCase {
+
+  @Test
+  public void testFastForwardIsOneDiff() {
+    Game game = Sgf.createFromString("(;SZ[9];B[aa];W[ba];B[ee];W[ab];B[ff])");
+    VirtualBoard board = new VirtualBoard(game);
+    List<BoardDiff> diffs = new ArrayList<>();
+    board.addBatchBoardListener(diffs::add);
+
+    board.fastForwardTo(game.getLastMove());
+    assertEquals(1, diffs.size());
+    BoardDiff diff = diffs.get(0);
+    // black at aa was captured on the way, it isn't in the diff
+    assertEquals(2, diff.getAdded(StoneState.BLACK).size());
+    assertEquals(2, diff.getAdded(StoneState.WHITE).size());
+    assertTrue(diff.getRemoved().isEmpty());
+    for (Square square : diff.getAdded()) {
+      assertEquals(board.getCoord(square.x, square.y).getColor(), square.getColor());
+    }
+
+    // back to the first move takes the others off and puts the captured
+    // stone back in one go
+    diffs.clear();
+    board.fastForwardTo(game.getFirstMove());
+    assertEquals(1, diffs.size());
+    assertEquals(4, diffs.get(0).getRemoved().size());
+    assertEquals(1, diffs.get(0).getAdded(StoneState.BLACK).size());
+  }
+
+  @Test
+  public void testCaptureIsOneDiff() {
+    Game game = Sgf.createFromString("(;SZ[9];B[aa];W[ba];B[ee];W[ab])");
+    VirtualBoard board = new VirtualBoard(game);
+    board.fastForwardTo(game.getLastMove().getPrevNode());
+
+    List<BoardDiff> diffs = new ArrayList<>();
+    board.addBatchBoardListener(diffs::add);
+    board.makeMove(game.getLastMove(), game.getLastMove().getPrevNode());
+    assertEquals(1, diffs.size());
+    assertEquals(1, diffs.get(0).getAdded(StoneState.WHITE).size());
+    assertEquals(1, diffs.get(0).getRemoved(StoneState.BLACK).size());
+    Square captured = diffs.get(0).getRemoved().get(0);
+    assertEquals(0, captured.x);
+    assertEquals(0, captured.y);
+
+    diffs.clear();
+    board.undoMove(game.getLastMove(), game.getLastMove().getPrevNode());
+    assertEquals(1, diffs.size());
+    assertEquals(1, diffs.get(0).getAdded(StoneState.BLACK).size());
+    assertEquals(1, diffs.get(0).getRemoved(StoneState.WHITE).size());
+  }
+
+  @Test
+  public void testNestedBatches() {
+    VirtualBoard board = new VirtualBoard();
+    List<BoardDiff> diffs = new ArrayList<>();
+    board.addBatchBoardListener(diffs::add);
+
+    board.beginBatch();
+    board.placeBlackStone(3, 3);
+    board.beginBatch();
+    board.placeWhiteStone(4, 4);
+    board.endBatch();
+    board.removeStone(3, 3);
+    assertTrue(diffs.isEmpty());
+    board.endBatch();
+
+    // the black stone came and went
+    assertEquals(1, diffs.size());
+    assertEquals(0, diffs.get(0).getRemoved().size());
+    assertEquals(1, diffs.get(0).getAdded().size());
+    assertEquals(StoneState.WHITE, diffs.get(0).getAdded().get(0).getColor());
+
+    // nothing changed, nothing is sent
+    board.beginBatch();
+    board.placeBlackStone(3, 3);
+    board.removeStone(3, 3);
+    board.endBatch();
+    assertEquals(1, diffs.size());
+
+    // a stone of the other color is both removed and added
+    board.placeBlackStone(4, 4);
+    assertEquals(2, diffs.size());
+    assertEquals(StoneState.WHITE, diffs.get(1).getRemoved().get(0).getColor());
+    assertEquals(StoneState.BLACK, diffs.get(1).getAdded().get(0).getColor());
+
+    try {
+      board.endBatch();
+      fail("endBatch() without beginBatch() should fail");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testAdapterKeepsMirror() throws Exception {
+    Random random = new Random(7);
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      List<GameNode> nodes = TestNavigation.allNodes(game);
+      Collections.shuffle(nodes, random);
+
+      VirtualBoard board = new VirtualBoard(game);
+      TestNavigation.MirrorListener perStone = new TestNavigation.MirrorListener(game.getBoardWidth(), game.getBoardHeight());
+      TestNavigation.MirrorListener batched = new TestNavigation.MirrorListener(game.getBoardWidth(), game.getBoardHeight());
+      board.addBoardListener(perStone);
+      board.addBatchBoardListener(new BoardListenerAdapter(batched));
+      for (GameNode node : nodes.subList(0, Math.min(200, nodes.size()))) {
+        board.fastForwardTo(node);
+        String msg = path + " node " + node.getNodeNo();
+        assertEquals(msg, board.toString(), perStone.toString());
+        assertEquals(msg, board.toString(), batched.toString());
+      }
+    }
+  }
+}
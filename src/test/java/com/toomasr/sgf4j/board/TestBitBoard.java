@@ -0,0 +1,157 @@
+package com.toomasr.sgf4j.board;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.board.BitBoard;
+import com.toomasr.sgf4j.parser.board.StoneState;
+
+import junit.framework.TestCase;
+
+public class TestBitBoard extends TestCase {
+
+  @Test
+  public void testLiberties() {
+    BitBoard board = new BitBoard(19);
+    board.setColor(0, 0, StoneState.BLACK);
+    assertEquals(2, board.countLiberties(0, 0));
+
+    board.setColor(1, 0, StoneState.BLACK);
+    assertEquals(3, board.countLiberties(0, 0));
+
+    // the group goes over the end of the first long, 64 = 3 * 19 + 7
+    board.setColor(7, 3, StoneState.WHITE);
+    board.setColor(7, 4, StoneState.WHITE);
+    board.setColor(6, 3, StoneState.WHITE);
+    assertEquals(7, board.countLiberties(7, 4));
+    assertEquals(0, board.countLiberties(10, 10));
+  }
+
+  @Test
+  public void testEdgesDontWrap() {
+    // the last point of a row and the first of the next are one bit apart
+    BitBoard board = new BitBoard(19);
+    board.setColor(18, 0, StoneState.WHITE);
+    board.setColor(17, 0, StoneState.BLACK);
+    board.setColor(0, 1, StoneState.BLACK);
+    assertEquals(1, board.countLiberties(18, 0));
+
+    assertEquals(1, board.play(18, 1, StoneState.BLACK));
+    assertEquals(StoneState.EMPTY, board.getColor(18, 0));
+    assertEquals(18, board.nextCaptured(0));
+    assertEquals(-1, board.nextCaptured(19));
+  }
+
+  @Test
+  public void testCaptureTwoGroups() {
+    BitBoard board = new BitBoard(9);
+    board.setColor(1, 0, StoneState.WHITE);
+    board.setColor(0, 1, StoneState.WHITE);
+    board.setColor(2, 0, StoneState.BLACK);
+    board.setColor(1, 1, StoneState.BLACK);
+    board.setColor(0, 2, StoneState.BLACK);
+
+    assertEquals(2, board.play(0, 0, StoneState.BLACK));
+    assertEquals(1, board.nextCaptured(0));
+    assertEquals(9, board.nextCaptured(2));
+    assertEquals(StoneState.BLACK, board.getColor(0, 0));
+  }
+
+  @Test
+  public void testSizes() {
+    try {
+      new BitBoard(53);
+      fail("The SGF spec allows up to 52x52");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    BitBoard board = new BitBoard(19, 7);
+    assertEquals(19, board.getWidth());
+    assertEquals(7, board.getHeight());
+    board.setColor(0, 6, StoneState.BLACK);
+    assertEquals(2, board.countLiberties(0, 6));
+  }
+
+  @Test
+  public void testSameAsFloodFill() {
+    Random random = new Random(3);
+    int[][] sizes = { { 2, 2 }, { 5, 5 }, { 9, 9 }, { 13, 13 }, { 19, 19 }, { 19, 7 }, { 3, 30 }, { 52, 52 } };
+    for (int[] size : sizes) {
+      int width = size[0];
+      int height = size[1];
+      BitBoard board = new BitBoard(width, height);
+      StoneState[][] reference = new StoneState[width][height];
+      clear(reference);
+
+      for (int i = 0; i < 5000; i++) {
+        int x = random.nextInt(width);
+        int y = random.nextInt(height);
+        if (reference[x][y] != StoneState.EMPTY) {
+          continue;
+        }
+        StoneState color = i % 2 == 0 ? StoneState.BLACK : StoneState.WHITE;
+        reference[x][y] = color;
+        int captured = 0;
+        for (int[] n : new int[][] { { x - 1, y }, { x + 1, y }, { x, y - 1 }, { x, y + 1 } }) {
+          captured += captureIfDead(reference, n[0], n[1], color == StoneState.BLACK ? StoneState.WHITE : StoneState.BLACK);
+        }
+
+        assertEquals(captured, board.play(x, y, color));
+        for (int j = 0; j < width; j++) {
+          for (int k = 0; k < height; k++) {
+            assertEquals(reference[j][k], board.getColor(j, k));
+          }
+        }
+
+        // start over once the board fills up with suicides
+        if (random.nextInt(200) == 0) {
+          board.clear();
+          clear(reference);
+        }
+      }
+    }
+  }
+
+  private static void clear(StoneState[][] board) {
+    for (StoneState[] column : board) {
+      java.util.Arrays.fill(column, StoneState.EMPTY);
+    }
+  }
+
+  private static int captureIfDead(StoneState[][] board, int x, int y, StoneState color) {
+    int width = board.length;
+    int height = board[0].length;
+    if (x < 0 || y < 0 || x >= width || y >= height || board[x][y] != color) {
+      return 0;
+    }
+    boolean[][] seen = new boolean[width][height];
+    Deque<int[]> toCheck = new ArrayDeque<>();
+    Deque<int[]> stones = new ArrayDeque<>();
+    toCheck.push(new int[] { x, y });
+    seen[x][y] = true;
+    while (!toCheck.isEmpty()) {
+      int[] stone = toCheck.pop();
+      stones.push(stone);
+      for (int[] n : new int[][] { { stone[0] - 1, stone[1] }, { stone[0] + 1, stone[1] }, { stone[0], stone[1] - 1 },
+          { stone[0], stone[1] + 1 } }) {
+        if (n[0] < 0 || n[1] < 0 || n[0] >= width || n[1] >= height || seen[n[0]][n[1]])
+          continue;
+        if (board[n[0]][n[1]] == StoneState.EMPTY)
+          return 0;
+        if (board[n[0]][n[1]] == color) {
+          seen[n[0]][n[1]] = true;
+          toCheck.push(n);
+        }
+      }
+    }
+    for (int[] stone : stones) {
+      board[stone[0]][stone[1]] = StoneState.EMPTY;
+    }
+    return stones.size();
+  }
+}
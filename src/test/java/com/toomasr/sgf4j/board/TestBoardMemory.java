@@ -0,0 +1,81 @@
+package com.toomasr.sgf4j.board;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestBoardMemory extends TestCase {
+
+  @Test
+  public void testLongLivedBoard() {
+    // a viewer stepping through one game after another on the same board
+    Path path = Paths.get("src/test/resources/problematic-011.sgf");
+    VirtualBoard board = new VirtualBoard();
+    long afterFirstGames = 0;
+    for (int i = 0; i < 20; i++) {
+      Game game = Sgf.createFromPath(path);
+      GameNode prevMove = null;
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        board.fastForwardTo(node);
+        prevMove = node;
+      }
+      // and back to the middle of the game
+      board.fastForwardTo(prevMove.getParentNode().getParentNode());
+      if (i == 1) {
+        afterFirstGames = GraphLayout.parseInstance(board).totalSize();
+      }
+    }
+    long afterAllGames = GraphLayout.parseInstance(board).totalSize();
+
+    // only the current game is kept
+    assertTrue(afterFirstGames + " vs " + afterAllGames, afterAllGames < afterFirstGames * 11 / 10);
+  }
+
+  @Test
+  public void testLongLivedBoardWithMakeMove() {
+    // the same with a viewer that only plays the moves one after another
+    Path path = Paths.get("src/test/resources/problematic-011.sgf");
+    VirtualBoard board = new VirtualBoard();
+    long afterFirstGames = 0;
+    for (int i = 0; i < 20; i++) {
+      Game game = Sgf.createFromPath(path);
+      GameNode prevMove = null;
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        board.makeMove(node, prevMove);
+        prevMove = node;
+      }
+      if (i == 1) {
+        afterFirstGames = GraphLayout.parseInstance(board).totalSize();
+      }
+    }
+    long afterAllGames = GraphLayout.parseInstance(board).totalSize();
+
+    assertTrue(afterFirstGames + " vs " + afterAllGames, afterAllGames < afterFirstGames * 11 / 10);
+  }
+
+  @Test
+  public void testUndoAfterJournalIsTruncated() {
+    Game game = Sgf.createFromString("(;SZ[19];B[ba];W[aa];B[ab];W[dd])");
+    VirtualBoard board = new VirtualBoard(game);
+    GameNode capture = game.getFirstMove().getNextNode().getNextNode();
+    board.fastForwardTo(game.getLastMove());
+    assertTrue(board.getCoord(0, 0).isEmpty());
+
+    // undoing the capture out of order drops the moves after it
+    board.undoMove(capture, capture.getPrevNode());
+    assertFalse(board.getCoord(0, 0).isEmpty());
+    board.fastForwardTo(game.getLastMove());
+    assertTrue(board.getCoord(0, 0).isEmpty());
+    board.fastForwardTo(capture.getPrevNode());
+    assertFalse(board.getCoord(0, 0).isEmpty());
+  }
+}
@@ -0,0 +1,116 @@
+package com.toomasr.sgf4j.board;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.Util;
+import com.toomasr.sgf4j.parser.board.IllegalMoveException;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestBoardSizes extends TestCase {
+
+  @Test
+  public void testParseBoardSize() {
+    assertTrue(Arrays.equals(new int[] { 19, 19 }, Util.parseBoardSize(null)));
+    assertTrue(Arrays.equals(new int[] { 9, 9 }, Util.parseBoardSize("9")));
+    assertTrue(Arrays.equals(new int[] { 19, 9 }, Util.parseBoardSize("19:9")));
+    assertTrue(Arrays.equals(new int[] { 19, 19 }, Util.parseBoardSize("big")));
+    assertTrue(Arrays.equals(new int[] { 19, 19 }, Util.parseBoardSize("0")));
+    assertTrue(Arrays.equals(new int[] { 19, 19 }, Util.parseBoardSize("100")));
+    assertTrue(Arrays.equals(new int[] { 19, 19 }, Util.parseBoardSize("-5")));
+    assertTrue(Arrays.equals(new int[] { 19, 19 }, Util.parseBoardSize("9:53")));
+    assertTrue(Arrays.equals(new int[] { 1, 52 }, Util.parseBoardSize("1:52")));
+  }
+
+  @Test
+  public void testBadSizes() {
+    for (String size : new String[] { "0", "100", "-5" }) {
+      Game game = Sgf.createFromString("(;SZ[" + size + "];B[aa];W[ss])");
+      VirtualBoard board = Boards.replay(game);
+      assertEquals(19, board.getWidth());
+      assertTrue(board.getCoord(18, 18).isOfColor(StoneState.WHITE));
+    }
+
+    // the moves that don't fit a tiny board fail like any move off the board
+    Game game = Sgf.createFromString("(;SZ[1];B[aa];W[bb])");
+    try {
+      Boards.replay(game);
+      fail("W[bb] is not on a 1x1 board");
+    }
+    catch (IllegalMoveException e) {
+      assertEquals(IllegalMoveException.Reason.OFF_BOARD, e.getReason());
+      assertEquals("bb", e.getNode().getMoveString());
+    }
+    // on a 1x1 board B[aa] is a suicide already
+    game = Sgf.createFromString("(;SZ[2];B[aa];W[cc])");
+    assertEquals("cc", VirtualBoard.findFirstIllegalMove(game).getMoveString());
+  }
+
+  @Test
+  public void testCoordinatesUpTo52() {
+    assertEquals("tu", Util.coodToAlpha(19, 20));
+    assertEquals("ZA", Util.coodToAlpha(51, 26));
+    assertTrue(Arrays.equals(new int[] { 51, 26 }, Util.alphaToCoords("ZA")));
+  }
+
+  @Test
+  public void testSmallBoard() {
+    // white in the corner of a 9x9 board has no liberties left after ih
+    Game game = Sgf.createFromString("(;SZ[9];B[hi];W[ii];B[ih])");
+    VirtualBoard board = Boards.replay(game);
+
+    assertEquals(9, board.getBoard().length);
+    assertEquals(9, board.getBoard()[0].length);
+    assertTrue(board.getCoord(8, 8).isEmpty());
+    assertEquals(9, board.toString().split("\n").length);
+
+    String position = game.getPositionSgf(game.getLastMove(), board);
+    assertTrue(position, position.contains("SZ[9]"));
+    assertTrue(position, position.contains("AB[hi][ih]"));
+  }
+
+  @Test
+  public void testRectangularBoard() {
+    Game game = Sgf.createFromString("(;SZ[19:7];B[ag];W[af];B[sg];W[bg])");
+    assertEquals(19, game.getBoardWidth());
+    assertEquals(7, game.getBoardHeight());
+
+    VirtualBoard board = Boards.replay(game);
+    assertEquals(19, board.getBoard().length);
+    assertEquals(7, board.getBoard()[0].length);
+    assertTrue(board.getCoord(0, 6).isEmpty());
+    assertTrue(board.getCoord(18, 6).isOfColor(StoneState.BLACK));
+    assertEquals(7, board.toString().split("\n").length);
+  }
+
+  @Test
+  public void testTtIsAMoveOnBigBoards() {
+    Game small = Sgf.createFromString("(;SZ[19];B[tt])");
+    assertTrue(small.getFirstMove().isPass(19, 19));
+    Boards.replay(small);
+
+    Game big = Sgf.createFromString("(;SZ[25];B[tt];W[];B[yy])");
+    GameNode move = big.getFirstMove();
+    assertFalse(move.isPass(25, 25));
+    assertTrue(move.getNextNode().isPass(25, 25));
+
+    VirtualBoard board = Boards.replay(big);
+    assertTrue(board.getCoord(19, 19).isOfColor(StoneState.BLACK));
+    assertTrue(board.getCoord(24, 24).isOfColor(StoneState.BLACK));
+  }
+
+  @Test
+  public void testLargestBoard() {
+    Game game = Sgf.createFromString("(;SZ[52];B[ZZ];W[ZY];B[YZ];W[XZ];B[];W[YY])");
+    VirtualBoard board = Boards.replay(game);
+    assertTrue(board.getCoord(51, 51).isEmpty());
+    assertTrue(board.getCoord(51, 50).isOfColor(StoneState.WHITE));
+  }
+}
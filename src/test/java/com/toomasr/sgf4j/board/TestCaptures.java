@@ -0,0 +1,125 @@
+package com.toomasr.sgf4j.board;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.TestSgfLexer;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestCaptures extends TestCase {
+
+  @Test
+  public void testSameCapturesAsFullScan() throws Exception {
+    int captures = 0;
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      for (List<GameNode> line : Boards.lines(game)) {
+        VirtualBoard board = new VirtualBoard();
+        VirtualBoard fullScan = new VirtualBoard();
+        GameNode prevMove = null;
+        for (GameNode node : line) {
+          board.makeMove(node, prevMove);
+          if (node.isMove() && !node.isPass()) {
+            // how the board used to find captures
+            fullScan.placeStone(node.getColorAsEnum(), node.getX(), node.getY());
+            captures += fullScan.removeDeadGroupsForOppColor(node.getColorAsEnum()).size();
+          }
+          assertEquals(path + " move " + node.getMoveNo(), fullScan.toString(), board.toString());
+          prevMove = node;
+        }
+      }
+    }
+    assertTrue(captures > 0);
+  }
+
+  @Test
+  public void testCaptureTwoGroups() {
+    VirtualBoard brd = new VirtualBoard();
+    // two white stones in atari that share the liberty in the corner
+    brd.placeWhiteStone(1, 0);
+    brd.placeWhiteStone(0, 1);
+    brd.placeBlackStone(2, 0);
+    brd.placeBlackStone(1, 1);
+    brd.placeBlackStone(0, 2);
+
+    brd.makeMove(Boards.move("B", "aa"), null);
+    assertTrue(brd.getCoord(1, 0).isEmpty());
+    assertTrue(brd.getCoord(0, 1).isEmpty());
+    assertTrue(brd.getCoord(0, 0).isOfColor(StoneState.BLACK));
+    assertTrue(brd.getCoord(1, 1).isOfColor(StoneState.BLACK));
+  }
+
+  @Test
+  public void testUndoRestoresCapturedStones() {
+    VirtualBoard brd = new VirtualBoard();
+    brd.placeWhiteStone(0, 0);
+    brd.placeBlackStone(0, 1);
+    GameNode capture = Boards.move("B", "ba");
+    brd.makeMove(capture, null);
+    assertTrue(brd.getCoord(0, 0).isEmpty());
+
+    brd.undoMove(capture, null);
+    assertTrue(brd.getCoord(0, 0).isOfColor(StoneState.WHITE));
+    assertTrue(brd.getCoord(1, 0).isEmpty());
+
+    // the restored stone has to be capturable again
+    brd.makeMove(capture, null);
+    assertTrue(brd.getCoord(0, 0).isEmpty());
+  }
+
+  @Test
+  public void testRemovedStoneSplitsGroup() {
+    VirtualBoard brd = new VirtualBoard();
+    brd.placeBlackStone(0, 0);
+    brd.placeBlackStone(1, 0);
+    brd.placeBlackStone(2, 0);
+    brd.placeWhiteStone(0, 1);
+    brd.placeWhiteStone(2, 1);
+    brd.placeWhiteStone(3, 0);
+
+    // without the stone in the middle the black stone in the corner is
+    // its own group that has a liberty
+    brd.removeStone(1, 0);
+    brd.makeMove(Boards.move("W", "cb"), null);
+    assertTrue(brd.getCoord(0, 0).isOfColor(StoneState.BLACK));
+
+    brd.makeMove(Boards.move("W", "ba"), null);
+    assertTrue(brd.getCoord(0, 0).isEmpty());
+    assertTrue(brd.getCoord(2, 0).isEmpty());
+  }
+
+  @Test
+  public void testMoveOnOccupiedPoint() {
+    VirtualBoard brd = new VirtualBoard();
+    brd.placeBlackStone(0, 0);
+    brd.placeBlackStone(1, 0);
+    brd.placeWhiteStone(0, 1);
+    brd.placeWhiteStone(1, 1);
+
+    // a broken game replaces a black stone, the other one is then left
+    // on its own
+    GameNode replace = Boards.move("W", "aa");
+    brd.makeMove(replace, null);
+    assertTrue(brd.getCoord(0, 0).isOfColor(StoneState.WHITE));
+    // the undo records are kept for a line of play, the capture follows
+    // the replacing move
+    GameNode capture = new GameNode(replace);
+    capture.addProperty("W", "ca");
+    brd.makeMove(capture, replace);
+    assertTrue(brd.getCoord(1, 0).isEmpty());
+
+    // undoing puts the replaced stone back
+    brd.undoMove(capture, replace);
+    brd.undoMove(replace, null);
+    assertTrue(brd.getCoord(0, 0).isOfColor(StoneState.BLACK));
+    assertTrue(brd.getCoord(1, 0).isOfColor(StoneState.BLACK));
+  }
+}
@@ -0,0 +1,168 @@
+package com.toomasr.sgf4j.board;
+
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.TestSgfLexer;
+import com.toomasr.sgf4j.parser.board.IllegalMoveException;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestMoveLegality extends TestCase {
+
+  @Test
+  public void testOccupied() {
+    VirtualBoard board = Boards.validating("aa", "");
+    assertIllegal(board, Boards.move("W", "aa"), IllegalMoveException.Reason.OCCUPIED);
+
+    // not validating the stone is replaced like before
+    board.setValidating(false);
+    board.makeMove(Boards.move("W", "aa"), null);
+    assertTrue(board.getCoord(0, 0).isOfColor(StoneState.WHITE));
+  }
+
+  @Test
+  public void testSuicide() {
+    VirtualBoard board = Boards.validating("", "ba ab");
+    assertIllegal(board, Boards.move("B", "aa"), IllegalMoveException.Reason.SUICIDE);
+
+    // a move that captures is not a suicide
+    board = Boards.validating("ca bb", "ba ab");
+    board.makeMove(Boards.move("B", "aa"), null);
+    assertTrue(board.getCoord(1, 0).isEmpty());
+    assertTrue(board.getCoord(0, 0).isOfColor(StoneState.BLACK));
+  }
+
+  @Test
+  public void testSuicideAllowed() {
+    // two black stones take their last liberty
+    VirtualBoard board = Boards.validating("ba", "ca bb ab");
+    board.setSuicideAllowed(true);
+    GameNode suicide = Boards.move("B", "aa");
+    board.makeMove(suicide, null);
+    assertTrue(board.getCoord(0, 0).isEmpty());
+    assertTrue(board.getCoord(1, 0).isEmpty());
+
+    board.undoMove(suicide, null);
+    assertTrue(board.getCoord(0, 0).isEmpty());
+    assertTrue(board.getCoord(1, 0).isOfColor(StoneState.BLACK));
+
+    // a single stone suicide leaves the position as it was
+    board = Boards.validating("", "ba ab");
+    board.setSuicideAllowed(true);
+    assertIllegal(board, Boards.move("B", "aa"), IllegalMoveException.Reason.SUPERKO);
+  }
+
+  @Test
+  public void testSuicideFromRules() {
+    // the last move of black takes the last liberty of two stones
+    String moves = ";B[ba];W[ca];B[dd];W[bb];B[ee];W[ab];B[aa])";
+    Game game = Sgf.createFromString("(;SZ[19]RU[NZ]" + moves);
+    assertTrue(new VirtualBoard(game).isSuicideAllowed());
+    assertNull(VirtualBoard.findFirstIllegalMove(game));
+
+    game = Sgf.createFromString("(;SZ[19]RU[Japanese]" + moves);
+    assertFalse(new VirtualBoard(game).isSuicideAllowed());
+    assertEquals("aa", VirtualBoard.findFirstIllegalMove(game).getMoveString());
+  }
+
+  @Test
+  public void testKo() {
+    VirtualBoard board = Boards.validating("ba ab bc", "ca db cc bb");
+    board.makeMove(Boards.move("B", "cb"), null);
+    assertIllegal(board, Boards.move("W", "bb"), IllegalMoveException.Reason.KO);
+
+    // after a move elsewhere the ko can be taken
+    board.makeMove(Boards.move("W", "pp"), null);
+    board.makeMove(Boards.move("B", "pd"), null);
+    board.makeMove(Boards.move("W", "bb"), null);
+    assertTrue(board.getCoord(2, 1).isEmpty());
+  }
+
+  @Test
+  public void testTripleKo() {
+    //@formatter:off
+    // three kos, black can take the first and the third, white the second
+    VirtualBoard board = Boards.validating("ba ab bc  bf ag bh cg  bk al bm",
+                                    "ca db cc bb  cf dg ch  ck dl cm bl");
+    //@formatter:on
+    board.makeMove(Boards.move("B", "cb"), null);
+    board.makeMove(Boards.move("W", "bg"), null);
+    board.makeMove(Boards.move("B", "cl"), null);
+    board.makeMove(Boards.move("W", "bb"), null);
+    board.makeMove(Boards.move("B", "cg"), null);
+    // back to the position we started with
+    assertIllegal(board, Boards.move("W", "bl"), IllegalMoveException.Reason.SUPERKO);
+  }
+
+  @Test
+  public void testUndoForgetsPositions() {
+    VirtualBoard board = Boards.validating("ba ab bc", "ca db cc bb");
+    GameNode take = Boards.move("B", "cb");
+    board.makeMove(take, null);
+    board.undoMove(take, null);
+    // the position after the capture is not on the line of play anymore
+    board.makeMove(take, null);
+    assertTrue(board.getCoord(1, 1).isEmpty());
+  }
+
+  @Test
+  public void testFindFirstIllegalMove() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      assertNull(path.toString(), VirtualBoard.findFirstIllegalMove(Sgf.createFromPath(path)));
+    }
+
+    Game game = Sgf.createFromString("(;SZ[9];B[aa];W[bb](;B[cc];W[dd];B[ee])(;B[ee];W[aa];B[ff]))");
+    GameNode illegal = VirtualBoard.findFirstIllegalMove(game);
+    assertEquals("aa", illegal.getMoveString());
+    assertTrue(illegal.isWhite());
+
+    // the setup stones of the game are on the board
+    game = Sgf.createFromString("(;SZ[9]AB[aa][ba:ca];W[bb];B[ca])");
+    assertEquals("ca", VirtualBoard.findFirstIllegalMove(game).getMoveString());
+  }
+
+  @Test
+  public void testOffBoard() {
+    VirtualBoard board = Boards.validating("aa", "");
+    assertIllegal(board, Boards.move("B", "Zz"), IllegalMoveException.Reason.OFF_BOARD);
+    assertIllegal(board, Boards.move("B", "a"), IllegalMoveException.Reason.OFF_BOARD);
+    assertIllegal(board, Boards.move("B", "a1"), IllegalMoveException.Reason.OFF_BOARD);
+
+    // there is nothing to play not validating either
+    board.setValidating(false);
+    assertIllegal(board, Boards.move("W", "zz"), IllegalMoveException.Reason.OFF_BOARD);
+
+    Game game = Sgf.createFromString("(;SZ[9];B[aa];W[bb];B[ss];W[cc])");
+    assertEquals("ss", VirtualBoard.findFirstIllegalMove(game).getMoveString());
+    game = Sgf.createFromString("(;SZ[9];B[aa](;W[bb])(;W[Zz]))");
+    assertEquals("Zz", VirtualBoard.findFirstIllegalMove(game).getMoveString());
+    game = Sgf.createFromString("(;SZ[9];B[aa];W[a])");
+    assertEquals("a", VirtualBoard.findFirstIllegalMove(game).getMoveString());
+    // tt is a pass on boards up to 19x19
+    game = Sgf.createFromString("(;SZ[9];B[aa];W[tt];B[bb])");
+    assertNull(VirtualBoard.findFirstIllegalMove(game));
+  }
+
+  private static void assertIllegal(VirtualBoard board, GameNode move, IllegalMoveException.Reason reason) {
+    String before = board.toString();
+    long hash = board.getPositionHash(true);
+    try {
+      board.makeMove(move, null);
+      fail("Move " + move.getMoveString() + " should be illegal");
+    }
+    catch (IllegalMoveException e) {
+      assertEquals(reason, e.getReason());
+      assertSame(move, e.getNode());
+    }
+    // nothing changed
+    assertEquals(before, board.toString());
+    assertEquals(hash, board.getPositionHash(true));
+  }
+}
@@ -0,0 +1,222 @@
+package com.toomasr.sgf4j.board;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.TestSgfLexer;
+import com.toomasr.sgf4j.parser.board.BoardListener;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestNavigation extends TestCase {
+
+  @Test
+  public void testRandomJumpsMatchReplay() throws Exception {
+    Random random = new Random(42);
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      List<GameNode> nodes = allNodes(game);
+      Collections.shuffle(nodes, random);
+
+      VirtualBoard board = new VirtualBoard(game);
+      MirrorListener mirror = new MirrorListener(game.getBoardWidth(), game.getBoardHeight());
+      board.addBoardListener(mirror);
+      for (GameNode node : nodes) {
+        board.fastForwardTo(node);
+
+        VirtualBoard replayed = new VirtualBoard(game);
+        replayed.fastForwardTo(node);
+        String msg = path + " node " + node.getNodeNo();
+        assertEquals(msg, replayed.toString(), board.toString());
+        assertEquals(msg, replayed.getPositionHash(true), board.getPositionHash(true));
+        assertEquals(msg, replayed.getPlayerToMove(), board.getPlayerToMove());
+        assertEquals(msg, board.toString(), mirror.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testJumpsCostTheDistance() throws Exception {
+    Game game = Sgf.createFromPath(Paths.get("src/test/resources/long-game.sgf"));
+    VirtualBoard board = new VirtualBoard(game);
+    MirrorListener listener = new MirrorListener(19, 19);
+    board.addBoardListener(listener);
+
+    GameNode last = game.getLastMove();
+    board.fastForwardTo(last);
+    assertTrue(listener.moves > 80);
+
+    // one step back is a single undo
+    listener.moves = 0;
+    board.fastForwardTo(last.getPrevNode());
+    assertEquals(1, listener.moves);
+
+    // and forward again a single move
+    listener.moves = 0;
+    board.fastForwardTo(last);
+    assertEquals(1, listener.moves);
+
+    // far back starts from a snapshot
+    listener.moves = 0;
+    GameNode early = game.getFirstMove().getNextNode().getNextNode();
+    board.fastForwardTo(early);
+    assertTrue(listener.moves < 20);
+
+    // the board changed outside of the line of play, the snapshots are
+    // still good
+    board.placeBlackStone(18, 18);
+    listener.moves = 0;
+    board.fastForwardTo(last);
+    assertTrue(listener.moves < 20);
+    VirtualBoard replayed = new VirtualBoard(game);
+    replayed.fastForwardTo(last);
+    assertEquals(replayed.toString(), board.toString());
+  }
+
+  @Test
+  public void testForgetPositions() {
+    Game game = Sgf.createFromString("(;SZ[19];B[aa];W[ba];B[ca])");
+    VirtualBoard board = new VirtualBoard(game);
+    board.fastForwardTo(game.getLastMove());
+    assertTrue(board.getCoord(0, 0).isOfColor(StoneState.BLACK));
+
+    // the game is edited
+    game.getFirstMove().addProperty("B", "ab");
+    board.forgetPositions();
+    board.fastForwardTo(game.getLastMove());
+    assertTrue(board.getCoord(0, 0).isEmpty());
+    assertTrue(board.getCoord(0, 1).isOfColor(StoneState.BLACK));
+  }
+
+  @Test
+  public void testUndoPastRestoredSnapshot() {
+    // W[aa] is captured by the third move of both lines
+    String moves = ";B[ba];W[aa];B[ab]" + fillerMoves(37);
+    Game game = Sgf.createFromString("(;SZ[19](" + moves + ")(;B[ss]" + moves + "))");
+    GameNode mainLast = game.getLastMove();
+    GameNode variation = game.getFirstMove().getParentNode().getChildren().iterator().next();
+    GameNode variationLast = variation;
+    while (variationLast.getNextNode() != null) {
+      variationLast = variationLast.getNextNode();
+    }
+
+    // the snapshot of the main line covers the journal of the moves before it
+    assertUndoBackToStart(game, mainLast, mainLast);
+    // the snapshot is on another line than the one played last
+    assertUndoBackToStart(game, variationLast, mainLast);
+  }
+
+  private static void assertUndoBackToStart(Game game, GameNode last, GameNode playedBefore) {
+    VirtualBoard board = new VirtualBoard(game);
+    MirrorListener mirror = new MirrorListener(19, 19);
+    board.addBoardListener(mirror);
+    board.fastForwardTo(last);
+    board.fastForwardTo(playedBefore);
+
+    GameNode node = last;
+    for (int i = 0; i < 20; i++) {
+      node = node.getParentNode();
+    }
+    board.fastForwardTo(node);
+    while (node.getParentNode() != null) {
+      board.undoMove(node, node.getParentNode());
+      node = node.getParentNode();
+
+      VirtualBoard replayed = new VirtualBoard(game);
+      replayed.fastForwardTo(node);
+      String msg = "move " + node.getMoveNo();
+      assertEquals(msg, replayed.toString(), board.toString());
+      assertEquals(msg, board.toString(), mirror.toString());
+    }
+  }
+
+  // moves that capture nothing, away from the corner
+  private static String fillerMoves(int count) {
+    StringBuilder rtrn = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      rtrn.append(i % 2 == 0 ? ";W[" : ";B[");
+      rtrn.append((char) ('e' + i % 12)).append((char) ('e' + i / 12)).append(']');
+    }
+    return rtrn.toString();
+  }
+
+  static List<GameNode> allNodes(Game game) {
+    // in the same order on every run
+    List<GameNode> rtrn = new ArrayList<>();
+    Map<GameNode, Boolean> seen = new IdentityHashMap<>();
+    for (List<GameNode> line : Boards.lines(game)) {
+      for (GameNode node : line) {
+        if (seen.put(node, Boolean.TRUE) == null) {
+          rtrn.add(node);
+        }
+      }
+    }
+    return rtrn;
+  }
+
+  /*
+   * Keeps its own copy of the stones from what the board tells it.
+   */
+  static class MirrorListener implements BoardListener {
+    private final StoneState[][] stones;
+    private int moves;
+
+    MirrorListener(int width, int height) {
+      stones = new StoneState[width][height];
+      initInitialPosition();
+    }
+
+    @Override
+    public void placeStone(int x, int y, StoneState color) {
+      stones[x][y] = color;
+    }
+
+    @Override
+    public void removeStone(int x, int y) {
+      stones[x][y] = StoneState.EMPTY;
+    }
+
+    @Override
+    public void playMove(GameNode node, GameNode prevMove) {
+      moves++;
+    }
+
+    @Override
+    public void undoMove(GameNode currentMove, GameNode prevMove) {
+      moves++;
+    }
+
+    @Override
+    public void initInitialPosition() {
+      for (StoneState[] column : stones) {
+        Arrays.fill(column, StoneState.EMPTY);
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder rtrn = new StringBuilder();
+      for (int i = 0; i < stones[0].length; i++) {
+        for (int j = 0; j < stones.length; j++) {
+          rtrn.append(stones[j][i] == StoneState.BLACK ? 'x' : stones[j][i] == StoneState.WHITE ? 'o' : '-');
+        }
+        rtrn.append("\n");
+      }
+      return rtrn.toString();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.toomasr.sgf4j.board;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.board.BoardListener;
+import com.toomasr.sgf4j.parser.board.Position;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestPosition extends TestCase {
+
+  @Test
+  public void testSnapshotDoesNotChange() {
+    Game game = Sgf.createFromString("(;SZ[19];B[ba];W[aa];B[ab];W[dd])");
+    VirtualBoard board = new VirtualBoard(game);
+    GameNode capture = game.getFirstMove().getNextNode().getNextNode();
+    board.fastForwardTo(capture);
+
+    Position position = board.snapshot();
+    assertEquals(board.toString(), position.toString());
+    assertEquals(board.getPositionHash(), position.getHash());
+    assertEquals(board.getPositionHash(true), position.getHash(true));
+    assertEquals(StoneState.WHITE, position.getPlayerToMove());
+    assertEquals(2, position.countStones(StoneState.BLACK));
+    assertEquals(0, position.countStones(StoneState.WHITE));
+
+    board.fastForwardTo(game.getLastMove());
+    board.fastForwardTo(game.getFirstMove());
+    assertTrue(position.getColor(0, 0).isEmpty());
+    assertEquals(StoneState.BLACK, position.getColor(0, 1));
+    assertTrue(position.getColor(3, 3).isEmpty());
+    assertEquals(StoneState.WHITE, position.getPlayerToMove());
+  }
+
+  @Test
+  public void testRebuildBoard() {
+    Game game = Sgf.createFromString("(;SZ[13];B[ba];W[aa];B[ab];W[dd];B[mm])");
+    VirtualBoard board = new VirtualBoard(game);
+    board.fastForwardTo(game.getLastMove());
+    Position position = board.snapshot();
+
+    VirtualBoard copy = new VirtualBoard(position);
+    assertEquals(board.toString(), copy.toString());
+    assertEquals(board.getPositionHash(true), copy.getPositionHash(true));
+    assertEquals(board.getPlayerToMove(), copy.getPlayerToMove());
+    assertEquals(position, copy.snapshot());
+    assertEquals(position.hashCode(), copy.snapshot().hashCode());
+
+    // the same position reached in a different way
+    board.fastForwardTo(game.getFirstMove());
+    assertFalse(position.equals(board.snapshot()));
+    board.setPosition(position);
+    assertEquals(position, board.snapshot());
+    assertEquals(copy.toString(), board.toString());
+
+    try {
+      new VirtualBoard().setPosition(position);
+      fail("A 13x13 position shouldn't fit on a 19x19 board");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSetPositionTellsListeners() {
+    VirtualBoard board = new VirtualBoard();
+    board.placeBlackStone(3, 3);
+    board.placeWhiteStone(4, 4);
+    Position position = board.snapshot();
+
+    VirtualBoard other = new VirtualBoard();
+    other.placeWhiteStone(3, 3);
+    other.placeWhiteStone(5, 5);
+    final List<String> changes = new ArrayList<>();
+    other.addBoardListener(new BoardListener() {
+      @Override
+      public void placeStone(int x, int y, StoneState color) {
+        changes.add(color + " " + x + "," + y);
+      }
+
+      @Override
+      public void removeStone(int x, int y) {
+        changes.add("EMPTY " + x + "," + y);
+      }
+
+      @Override
+      public void playMove(GameNode node, GameNode prevMove) {
+      }
+
+      @Override
+      public void undoMove(GameNode currentMove, GameNode prevMove) {
+      }
+
+      @Override
+      public void initInitialPosition() {
+      }
+    });
+    other.setPosition(position);
+    assertEquals(3, changes.size());
+    assertTrue(changes.contains("BLACK 3,3"));
+    assertTrue(changes.contains("WHITE 4,4"));
+    assertTrue(changes.contains("EMPTY 5,5"));
+  }
+
+  @Test
+  public void testPositionsInOtherThreads() throws Exception {
+    Game game = Sgf.createFromString("(;SZ[19];B[pd];W[dp];B[pp];W[dd];B[fq];W[cn];B[jp];W[qf])");
+    VirtualBoard board = new VirtualBoard(game);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> analysed = new ArrayList<>();
+      List<String> expected = new ArrayList<>();
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        board.fastForwardTo(node);
+        Position position = board.snapshot();
+        expected.add(board.toString());
+        analysed.add(executor.submit(() -> new VirtualBoard(position).toString()));
+      }
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i), analysed.get(i).get());
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.toomasr.sgf4j.board;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestPositionHash extends TestCase {
+
+  @Test
+  public void testTranspositions() {
+    VirtualBoard board1 = Boards.replay("(;SZ[19];B[dd];W[pp];B[dp];W[pd])");
+    VirtualBoard board2 = Boards.replay("(;SZ[19];B[dp];W[pd];B[dd];W[pp])");
+    assertEquals(board1.getPositionHash(), board2.getPositionHash());
+
+    VirtualBoard board3 = Boards.replay("(;SZ[19];B[dp];W[pp];B[dd];W[pd])");
+    assertEquals(board1.getPositionHash(), board3.getPositionHash());
+
+    VirtualBoard other = Boards.replay("(;SZ[19];B[dd];W[pp];B[dp];W[pc])");
+    assertFalse(board1.getPositionHash() == other.getPositionHash());
+  }
+
+  @Test
+  public void testSameAsSetUpPosition() {
+    // black captures the white stone in the corner
+    VirtualBoard played = Boards.replay("(;SZ[19];B[ba];W[aa];B[ab])");
+    assertTrue(played.getCoord(0, 0).isEmpty());
+    assertEquals(StoneState.WHITE, played.getPlayerToMove());
+
+    VirtualBoard setUp = new VirtualBoard();
+    setUp.placeBlackStone(1, 0);
+    setUp.placeBlackStone(0, 1);
+    // same stones but black to move
+    assertFalse(played.getPositionHash() == setUp.getPositionHash());
+
+    setUp.makeMove(Boards.pass("B"), null);
+    assertEquals(played.getPositionHash(), setUp.getPositionHash());
+  }
+
+  @Test
+  public void testPlayerToMove() {
+    VirtualBoard board = Boards.replay("(;SZ[19]PL[W])");
+    assertEquals(StoneState.WHITE, board.getPlayerToMove());
+    assertFalse(board.getPositionHash() == new VirtualBoard().getPositionHash());
+
+    board = Boards.replay("(;SZ[19];B[dd];PL[B])");
+    assertEquals(StoneState.BLACK, board.getPlayerToMove());
+    assertEquals(Boards.replay("(;SZ[19];B[dd];W[tt])").getPositionHash(), board.getPositionHash());
+  }
+
+  @Test
+  public void testUndo() {
+    Game game = Sgf.createFromString("(;SZ[19];B[ba];W[aa];B[ab];W[dd])");
+    VirtualBoard board = new VirtualBoard(game);
+    long[] hashes = new long[5];
+    int i = 0;
+    hashes[i++] = board.getPositionHash();
+    GameNode prevMove = null;
+    for (GameNode node = game.getFirstMove(); node != null; node = node.getNextNode()) {
+      board.makeMove(node, prevMove);
+      hashes[i++] = board.getPositionHash();
+      prevMove = node;
+    }
+    assertEquals(5, i);
+
+    for (GameNode node = game.getLastMove(); node.isMove(); node = node.getPrevNode()) {
+      board.undoMove(node, node.getPrevNode());
+      i--;
+      assertEquals(hashes[i - 1], board.getPositionHash());
+    }
+    assertEquals(0L, board.getPositionHash());
+  }
+
+  @Test
+  public void testKo() {
+    //@formatter:off
+    // . B W .
+    // B W . W
+    // . B W .
+    //@formatter:on
+    VirtualBoard board = Boards.withStones("ba ab bc", "ca db cc bb");
+    board.makeMove(Boards.move("B", "cb"), null);
+    assertTrue(board.getCoord(1, 1).isEmpty());
+    int[] ko = board.getKoPoint();
+    assertEquals(1, ko[0]);
+    assertEquals(1, ko[1]);
+    assertFalse(board.getPositionHash() == board.getPositionHash(true));
+
+    // white plays elsewhere, the ko can be taken now
+    board.makeMove(Boards.move("W", "pp"), null);
+    assertNull(board.getKoPoint());
+    assertEquals(board.getPositionHash(), board.getPositionHash(true));
+
+    // the capturing stone has another liberty
+    board = Boards.withStones("ba ab bc", "ca cc bb");
+    board.makeMove(Boards.move("B", "cb"), null);
+    assertNull(board.getKoPoint());
+
+    // two stones captured
+    board = Boards.withStones("ba ab ac bd cc", "ca db bb bc");
+    board.makeMove(Boards.move("B", "cb"), null);
+    assertTrue(board.getCoord(1, 1).isEmpty());
+    assertTrue(board.getCoord(1, 2).isEmpty());
+    assertNull(board.getKoPoint());
+  }
+
+  @Test
+  public void testStableAcrossRuns() {
+    // the hashes can be stored, the keys must never change
+    assertEquals(0L, new VirtualBoard().getPositionHash());
+    assertEquals(EXPECTED_DD, Boards.replay("(;SZ[19];B[dd])").getPositionHash());
+    // the keys don't depend on the size of the board
+    assertEquals(EXPECTED_DD, Boards.replay("(;SZ[9];B[dd])").getPositionHash());
+  }
+
+  private static final long EXPECTED_DD = -5429180572307962708L;
+}
@@ -0,0 +1,239 @@
+package com.toomasr.sgf4j.board;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.Game;
+import com.toomasr.sgf4j.parser.GameNode;
+import com.toomasr.sgf4j.parser.Sgf;
+import com.toomasr.sgf4j.parser.SgfParseException;
+import com.toomasr.sgf4j.parser.TestSgfLexer;
+import com.toomasr.sgf4j.parser.board.IllegalMoveException;
+import com.toomasr.sgf4j.parser.board.ReplayEngine;
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestReplayEngine extends TestCase {
+
+  @Test
+  public void testMainLinesMatchSequentialReplay() throws Exception {
+    List<Game> games = games();
+    Map<GameNode, Long> expected = new IdentityHashMap<>();
+    for (Game game : games) {
+      VirtualBoard board = new VirtualBoard(game);
+      board.startGame(game);
+      GameNode prev = null;
+      for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+        board.makeMove(node, prev);
+        expected.put(node, board.getPositionHash(true));
+        prev = node;
+      }
+    }
+
+    Map<GameNode, Long> visited = Collections.synchronizedMap(new IdentityHashMap<>());
+    ReplayEngine engine = new ReplayEngine();
+    engine.setParallelism(4);
+    // every game a few times so the boards get reused
+    long count = engine.replay(Stream.of(games, games, games).flatMap(List::stream), (game, node, board) -> {
+      visited.put(node, board.getPositionHash(true));
+    });
+    assertEquals(3 * expected.size(), count);
+    assertEquals(expected.size(), visited.size());
+    for (Map.Entry<GameNode, Long> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), visited.get(entry.getKey()));
+    }
+  }
+
+  @Test
+  public void testVariations() throws Exception {
+    List<Game> games = games();
+    int nodes = 0;
+    for (Game game : games) {
+      nodes += TestNavigation.allNodes(game).size();
+    }
+
+    Map<GameNode, Long> visited = Collections.synchronizedMap(new IdentityHashMap<>());
+    ReplayEngine engine = new ReplayEngine();
+    engine.setParallelism(4);
+    engine.setVariations(true);
+    long count = engine.replay(games.stream(), (game, node, board) -> {
+      assertNull(visited.put(node, board.getPositionHash(true)));
+    });
+    assertEquals(nodes, count);
+    assertEquals(nodes, visited.size());
+
+    for (Game game : games) {
+      VirtualBoard board = new VirtualBoard(game);
+      board.startGame(game);
+      board.makeMove(game.getRootNode(), null);
+      for (GameNode node : TestNavigation.allNodes(game)) {
+        board.fastForwardTo(node);
+        assertEquals(visited.get(node).longValue(), board.getPositionHash(true));
+      }
+    }
+  }
+
+  @Test
+  public void testSetupStones() {
+    Game game = Sgf.createFromString("(;SZ[9]AB[aa][bb]AW[cc];W[dd])");
+    List<Integer> stones = new ArrayList<>();
+    new ReplayEngine().replay(Stream.of(game), (g, node, board) -> {
+      assertEquals(9, board.getWidth());
+      int count = 0;
+      for (int x = 0; x < board.getWidth(); x++) {
+        for (int y = 0; y < board.getHeight(); y++) {
+          count += board.getColor(x, y) == StoneState.EMPTY ? 0 : 1;
+        }
+      }
+      stones.add(count);
+    });
+    assertEquals(List.of(3, 4), stones);
+  }
+
+  @Test
+  public void testDirectoryAndZip() throws Exception {
+    Path dir = Files.createTempDirectory("replay");
+    Path zip = Files.createTempFile("replay", ".zip");
+    try {
+      Files.createDirectory(dir.resolve("sub"));
+      List<Path> resources = TestSgfLexer.sgfResources();
+      try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+        for (int i = 0; i < resources.size(); i++) {
+          Path resource = resources.get(i);
+          Path target = (i % 2 == 0 ? dir : dir.resolve("sub")).resolve(resource.getFileName());
+          Files.copy(resource, target);
+
+          out.putNextEntry(new ZipEntry("games/" + resource.getFileName()));
+          Files.copy(resource, (OutputStream) out);
+          out.closeEntry();
+        }
+      }
+      Files.write(dir.resolve("notes.txt"), "not a game".getBytes("UTF-8"));
+
+      LongAdder expected = new LongAdder();
+      for (Path resource : resources) {
+        try (Stream<Game> games = Sgf.createStreamFromPath(resource)) {
+          games.forEach(game -> {
+            for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+              expected.increment();
+            }
+          });
+        }
+      }
+
+      ReplayEngine engine = new ReplayEngine();
+      engine.setParallelism(3);
+      LongAdder positions = new LongAdder();
+      assertEquals(expected.sum(), engine.replay(dir, (game, node, board) -> positions.increment()));
+      assertEquals(expected.sum(), positions.sum());
+      assertEquals(expected.sum(), engine.replay(zip, (game, node, board) -> {
+      }));
+    }
+    finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+      }
+      Files.delete(zip);
+    }
+  }
+
+  @Test
+  public void testBadGamesAreSkipped() throws Exception {
+    Path dir = Files.createTempDirectory("replay");
+    Path zip = Files.createTempFile("replay", ".zip");
+    try {
+      Map<String, String> files = new TreeMap<>();
+      files.put("good.sgf", "(;SZ[9];B[aa];W[bb])");
+      files.put("offboard.sgf", "(;SZ[9];B[aa])(;SZ[9];B[aa];W[zz])(;SZ[9];B[cc])");
+      files.put("malformed.sgf", "(;SZ[9];B[a])");
+      try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+          Files.write(dir.resolve(file.getKey()), file.getValue().getBytes("UTF-8"));
+          out.putNextEntry(new ZipEntry(file.getKey()));
+          out.write(file.getValue().getBytes("UTF-8"));
+          out.closeEntry();
+        }
+      }
+
+      for (Path path : new Path[] { dir, zip }) {
+        ReplayEngine engine = new ReplayEngine();
+        engine.setParallelism(2);
+        Map<String, RuntimeException> failed = Collections.synchronizedMap(new TreeMap<>());
+        engine.setErrorListener((source, gameNo, error) -> failed.put(Path.of(source).getFileName() + "#" + gameNo, error));
+        LongAdder positions = new LongAdder();
+
+        // 3 of good.sgf, 2 + 2 + 2 of offboard.sgf where the second game
+        // stops at W[zz] and the root of malformed.sgf
+        assertEquals(10, engine.replay(path, (game, node, board) -> positions.increment()));
+        assertEquals(10, positions.sum());
+        assertEquals(2, engine.getGamesFailed());
+        assertEquals(List.of("malformed.sgf#0", "offboard.sgf#1"), new ArrayList<>(failed.keySet()));
+        assertEquals(IllegalMoveException.Reason.OFF_BOARD, ((IllegalMoveException) failed.get("offboard.sgf#1")).getReason());
+      }
+
+      // a single file and a stream of games
+      ReplayEngine engine = new ReplayEngine();
+      List<String> failed = Collections.synchronizedList(new ArrayList<>());
+      engine.setErrorListener((source, gameNo, error) -> failed.add(source + "#" + gameNo));
+      assertEquals(6, engine.replay(dir.resolve("offboard.sgf"), (game, node, board) -> {
+      }));
+      assertEquals(List.of(dir.resolve("offboard.sgf") + "#1"), failed);
+
+      // a game that can't be read ends the stream
+      failed.clear();
+      Stream<Game> games = Stream.of("(;B[aa])", "(;B[", "(;B[bb])").map(sgf -> {
+        if (!sgf.endsWith(")")) {
+          throw new SgfParseException("Unexpected end of " + sgf);
+        }
+        return Sgf.createFromString(sgf);
+      });
+      assertEquals(1, engine.replay(games, (game, node, board) -> {
+      }));
+      assertEquals(List.of("null#1"), failed);
+      assertEquals(1, engine.getGamesFailed());
+    }
+    finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+      }
+      Files.delete(zip);
+    }
+  }
+
+  @Test
+  public void testVisitorExceptionIsThrown() throws Exception {
+    ReplayEngine engine = new ReplayEngine();
+    try {
+      engine.replay(games().stream(), (game, node, board) -> {
+        throw new IllegalStateException("stop");
+      });
+      fail("the exception of the visitor should be thrown");
+    }
+    catch (IllegalStateException e) {
+      assertEquals("stop", e.getMessage());
+    }
+  }
+
+  private static List<Game> games() throws Exception {
+    List<Game> rtrn = new ArrayList<>();
+    for (Path path : TestSgfLexer.sgfResources()) {
+      rtrn.add(Sgf.createFromPath(path));
+    }
+    return rtrn;
+  }
+}
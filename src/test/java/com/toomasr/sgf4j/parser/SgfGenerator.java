@@ -0,0 +1,107 @@
+package com.toomasr.sgf4j.parser;
+
+import java.util.Random;
+
+/**
+ * Generates random but well formed SGF games for the tests and the
+ * benchmarks. The same seed always produces the same games.
+ */
+public class SgfGenerator {
+  private static final String COORDS = "abcdefghijklmnopqrs";
+
+  private final Random random;
+
+  public SgfGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Generates a game with the given number of main line moves. The game has
+   * the usual header properties, comments with escaped characters, setup
+   * stones, labels and variations.
+   *
+   * @param moves number of moves in the main line
+   * @return the game as a SGF string
+   */
+  public String game(int moves) {
+    StringBuilder rtrn = new StringBuilder();
+    rtrn.append("(;GM[1]FF[4]CA[UTF-8]AP[sgf4j:test]ST[2]\n");
+    rtrn.append("RU[Japanese]SZ[19]KM[6.50]\n");
+    rtrn.append("PW[White ").append(random.nextInt(1000)).append("]PB[Black ").append(random.nextInt(1000))
+        .append("]WR[3d]BR[2d]DT[2020-01-01]RE[W+R]\n");
+    rtrn.append("GC[Game comment \\] with (brackets) ; and semicolons]\n");
+    rtrn.append("AB[dd][pp]\n[dp]");
+    appendLine(rtrn, moves, 0, 1);
+    rtrn.append(")\n");
+    return rtrn.toString();
+  }
+
+  /**
+   * Generates a game consisting of a single long main line without any
+   * extra properties. Handy for stress testing deep trees.
+   *
+   * @param moves number of moves in the main line
+   * @return the game as a SGF string
+   */
+  public String mainLine(int moves) {
+    StringBuilder rtrn = new StringBuilder(moves * 7);
+    rtrn.append("(;GM[1]FF[4]SZ[19]");
+    for (int i = 0; i < moves; i++) {
+      rtrn.append(i % 2 == 0 ? ";B[" : ";W[");
+      rtrn.append(COORDS.charAt(random.nextInt(19)));
+      rtrn.append(COORDS.charAt(random.nextInt(19)));
+      rtrn.append("]");
+    }
+    rtrn.append(")");
+    return rtrn.toString();
+  }
+
+  private void appendLine(StringBuilder rtrn, int moves, int depth, int moveNo) {
+    for (int i = 0; i < moves; i++) {
+      rtrn.append(moveNo % 2 == 1 ? ";B[" : ";W[");
+      appendCoord(rtrn);
+      rtrn.append("]");
+
+      int extra = random.nextInt(20);
+      if (extra == 0) {
+        rtrn.append("C[Comment for move ").append(moveNo).append(" \\[with escapes\\]\nand a (second) line; ok]");
+      }
+      else if (extra == 1) {
+        rtrn.append("LB[");
+        appendCoord(rtrn);
+        rtrn.append(":A][");
+        appendCoord(rtrn);
+        rtrn.append(":B]");
+      }
+      else if (extra == 2) {
+        rtrn.append("TR[");
+        appendCoord(rtrn);
+        rtrn.append("]");
+      }
+      else if (extra == 3) {
+        rtrn.append("BL[").append(random.nextInt(3000)).append(".5]");
+      }
+      rtrn.append("\n");
+      moveNo++;
+
+      // branch out every now and then but not too deep
+      if (depth < 3 && random.nextInt(30) == 0 && i < moves - 1) {
+        int variations = 1 + random.nextInt(2);
+        for (int j = 0; j < variations; j++) {
+          rtrn.append("(");
+          appendLine(rtrn, 1 + random.nextInt(8), depth + 1, moveNo);
+          rtrn.append(")\n");
+        }
+        rtrn.append("(");
+        appendLine(rtrn, moves - i - 1, depth, moveNo);
+        rtrn.append(")\n");
+        return;
+      }
+    }
+  }
+
+  private void appendCoord(StringBuilder rtrn) {
+    rtrn.append(COORDS.charAt(random.nextInt(19)));
+    rtrn.append(COORDS.charAt(random.nextInt(19)));
+  }
+}
@@ -0,0 +1,180 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestBinaryGame extends TestCase {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      Game read = readAll(writeAll(List.of(game))).get(0);
+      assertTrue(path.toString(), game.isSameGame(read));
+      assertEquals(path.toString(), game.getGeneratedSgf(), read.getGeneratedSgf());
+      assertEquals(game.getTimingInfoFound(), read.getTimingInfoFound());
+      assertEquals(game.getBTimings().median, read.getBTimings().median);
+      assertEquals(game.getWTimings().max, read.getWTimings().max);
+      assertNodeNumbers(game.getRootNode(), read.getRootNode());
+    }
+  }
+
+  @Test
+  public void testManyGames() throws Exception {
+    List<Game> games = new ArrayList<>();
+    for (Path path : TestSgfLexer.sgfResources()) {
+      games.add(Sgf.createFromPath(path));
+    }
+    SgfGenerator generator = new SgfGenerator(42);
+    for (int i = 0; i < 20; i++) {
+      games.add(Sgf.createFromString(generator.game(50 + i * 10)));
+    }
+
+    List<Game> read = readAll(writeAll(games));
+    assertEquals(games.size(), read.size());
+    for (int i = 0; i < games.size(); i++) {
+      assertTrue(games.get(i).isSameGame(read.get(i)));
+      assertEquals(games.get(i).getGeneratedSgf(), read.get(i).getGeneratedSgf());
+    }
+  }
+
+  @Test
+  public void testSize() throws Exception {
+    List<Game> games = new ArrayList<>();
+    long sgfBytes = 0;
+    Game kgsGame = Sgf.createFromPath(Paths.get("src/main/resources/game-001.sgf"));
+    games.add(kgsGame);
+    sgfBytes += kgsGame.getOriginalSgf().getBytes(StandardCharsets.UTF_8).length;
+    SgfGenerator generator = new SgfGenerator(42);
+    for (int i = 0; i < 20; i++) {
+      String sgf = generator.game(250);
+      games.add(Sgf.createFromString(sgf));
+      sgfBytes += sgf.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    byte[] bytes = writeAll(games);
+    assertTrue(bytes.length + " vs " + sgfBytes, bytes.length * 4 < sgfBytes * 3);
+  }
+
+  @Test
+  public void testEditedGame() {
+    Game game = Sgf.createFromString("(;SZ[9];B[aa];W[bb](;B[cc])(;B[dd]C[x]))");
+    GameNode node = game.getRootNode().getNextNode();
+    GameNode added = new GameNode(node);
+    added.addProperty("W", "ee");
+    node.addChild(added);
+    node.addProperty("C", "a comment");
+
+    Game read = readAll(writeAll(List.of(game))).get(0);
+    assertEquals(game.getGeneratedSgf(), read.getGeneratedSgf());
+    // the numbers of the added node were never worked out, they are kept
+    // as they are
+    assertNodeNumbers(game.getRootNode(), read.getRootNode());
+  }
+
+  @Test
+  public void testNumbers() {
+    String[] numbers = { "0", "2", "-7", "905.448", "0.50", "0.05", "-0.5", "123456789012345" };
+    for (String number : numbers) {
+      long encoded = BinaryGameWriter.encodeNumber(number);
+      assertTrue(number, encoded >= 0);
+      assertEquals(number, BinaryGameWriter.decodeNumber(encoded));
+    }
+
+    String[] notNumbers = { "", "-", "-0", "-0.0", "007", ".5", "5.", "+5", "1e5", "1.2.3", "1234567890123456", "0.1234567890" };
+    for (String value : notNumbers) {
+      assertEquals(value, -1, BinaryGameWriter.encodeNumber(value));
+    }
+  }
+
+  @Test
+  public void testLongGame() {
+    Game game = Sgf.createFromString(TestDeepTree.longGame(100_000, 1_000));
+    Game read = readAll(writeAll(List.of(game))).get(0);
+    assertEquals(game.getNoNodes(), read.getNoNodes());
+    assertEquals(game.getGeneratedSgf(), read.getGeneratedSgf());
+  }
+
+  @Test
+  public void testNotBinary() {
+    try {
+      new BinaryGameReader(new ByteArrayInputStream("(;GM[1])".getBytes(StandardCharsets.UTF_8)));
+      fail("SGF is not the binary format");
+    }
+    catch (SgfParseException e) {
+      // expected
+    }
+
+    byte[] bytes = writeAll(List.of(Sgf.createFromString("(;SZ[9];B[aa];W[bb])")));
+    BinaryGameReader reader = new BinaryGameReader(new ByteArrayInputStream(bytes, 0, bytes.length - 2));
+    try {
+      reader.read();
+      fail("the game is cut short");
+    }
+    catch (SgfParseException e) {
+      // expected
+    }
+  }
+
+  private static void assertNodeNumbers(GameNode expected, GameNode actual) {
+    List<GameNode> expectedNodes = new ArrayList<>();
+    List<GameNode> actualNodes = new ArrayList<>();
+    collect(expected, expectedNodes);
+    collect(actual, actualNodes);
+    assertEquals(expectedNodes.size(), actualNodes.size());
+    for (int i = 0; i < expectedNodes.size(); i++) {
+      assertEquals(expectedNodes.get(i).getMoveNo(), actualNodes.get(i).getMoveNo());
+      assertEquals(expectedNodes.get(i).getNodeNo(), actualNodes.get(i).getNodeNo());
+      assertEquals(expectedNodes.get(i).getVisualDepth(), actualNodes.get(i).getVisualDepth());
+      assertEquals(expectedNodes.get(i).getProperties(), actualNodes.get(i).getProperties());
+    }
+  }
+
+  private static void collect(GameNode root, List<GameNode> into) {
+    Deque<GameNode> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      GameNode node = stack.pop();
+      into.add(node);
+      List<GameNode> children = new ArrayList<>(node.getChildren());
+      for (int i = children.size() - 1; i >= 0; i--) {
+        stack.push(children.get(i));
+      }
+      if (node.getNextNode() != null) {
+        stack.push(node.getNextNode());
+      }
+    }
+  }
+
+  private static byte[] writeAll(List<Game> games) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (BinaryGameWriter writer = new BinaryGameWriter(bytes)) {
+      for (Game game : games) {
+        writer.write(game);
+      }
+      assertEquals(games.size(), writer.getGamesWritten());
+    }
+    return bytes.toByteArray();
+  }
+
+  private static List<Game> readAll(byte[] bytes) {
+    List<Game> rtrn = new ArrayList<>();
+    BinaryGameReader reader = new BinaryGameReader(new ByteArrayInputStream(bytes));
+    Game game;
+    while ((game = reader.read()) != null) {
+      rtrn.add(game);
+    }
+    return rtrn;
+  }
+}
@@ -0,0 +1,97 @@
+package com.toomasr.sgf4j.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestByteSgfLexer extends TestCase {
+
+  @Test
+  public void testSameTokensAsText() throws Exception {
+    List<String> inputs = new ArrayList<>();
+    for (Path path : TestSgfLexer.sgfResources()) {
+      inputs.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+    SgfGenerator generator = new SgfGenerator(29);
+    for (int i = 0; i < 20; i++) {
+      inputs.add(generator.game(100 + i));
+    }
+
+    for (String sgf : inputs) {
+      byte[] bytes = sgf.getBytes(StandardCharsets.UTF_8);
+      List<String> expected = tokens(new SgfReader(sgf));
+      assertEquals(expected, tokens(new SgfReader(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8)));
+
+      // direct buffers are decoded through a copy
+      ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+      direct.put(bytes).flip();
+      assertEquals(expected, tokens(new SgfReader(direct, StandardCharsets.UTF_8)));
+    }
+  }
+
+  @Test
+  public void testMappedFiles() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game mapped = Sgf.createFromMappedPath(path);
+      Game game = Sgf.createFromPath(path);
+      assertTrue(path.toString(), game.isSameGame(mapped));
+      assertEquals(path.toString(), game.getGeneratedSgf(), mapped.getGeneratedSgf());
+    }
+  }
+
+  @Test
+  public void testLatin1() {
+    String sgf = "(;GM[1]PB[Tõnu Õunapuu]C[äöü \\] \\; ok];B[aa]C[ÄÖÜ])";
+    Charset latin1 = StandardCharsets.ISO_8859_1;
+    Game game = Sgf.createFromByteBuffer(ByteBuffer.wrap(sgf.getBytes(latin1)), "ISO-8859-1");
+
+    assertEquals("Tõnu Õunapuu", game.getProperty("PB"));
+    assertEquals("äöü \\] \\; ok", game.getProperty("C"));
+    assertEquals("ÄÖÜ", game.getFirstMove().getProperty("C"));
+  }
+
+  @Test
+  public void testBufferIsNotModified() {
+    byte[] bytes = "xxx(;GM[1];B[aa])yyy".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 3, 14);
+
+    Game game = Sgf.createFromByteBuffer(buffer, "UTF-8");
+    assertEquals("1", game.getProperty("GM"));
+    assertEquals(1, game.getNoMoves());
+    assertEquals(3, buffer.position());
+    assertEquals(17, buffer.limit());
+  }
+
+  @Test
+  public void testUnsupportedCharset() {
+    try {
+      new SgfReader(ByteBuffer.allocate(0), Charset.forName("Shift_JIS"));
+      fail("Shift_JIS can have ] as the second byte of a character");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static List<String> tokens(SgfReader reader) {
+    List<String> rtrn = new ArrayList<>();
+    SgfReader.Token token;
+    while ((token = reader.next()) != SgfReader.Token.END) {
+      if (token == SgfReader.Token.PROPERTY) {
+        rtrn.add(reader.getKey() + "=" + reader.getValue());
+      }
+      else {
+        rtrn.add(token.name());
+      }
+    }
+    return rtrn;
+  }
+}
@@ -0,0 +1,106 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestCharsetProperty extends TestCase {
+
+  @Test
+  public void testGb2312() {
+    Path path = Paths.get("src/test/resources/charsets/gb2312.sgf");
+    Game game = Sgf.createFromMappedPath(path);
+
+    assertEquals("柯洁", game.getProperty("PB"));
+    assertEquals("古力", game.getProperty("PW"));
+    assertEquals("黑棋中盘胜", game.getProperty("C"));
+    assertEquals("好棋", game.getFirstMove().getProperty("C"));
+    assertEquals("白棋", game.getFirstMove().getNextNode().getProperty("C"));
+    assertTrue(game.isSameGame(Sgf.createFromPath(path, "GB2312")));
+  }
+
+  @Test
+  public void testShiftJis() {
+    // has ] and \ as the second bytes of characters, these can't be
+    // tokenized as bytes
+    Path path = Paths.get("src/test/resources/charsets/shift_jis.sgf");
+    Game game = Sgf.createFromMappedPath(path);
+
+    assertEquals("井山裕太", game.getProperty("PB"));
+    assertEquals("張栩", game.getProperty("PW"));
+    assertEquals("図表", game.getProperty("GN"));
+    assertEquals("評価 転換 表\\]", game.getProperty("C"));
+    assertEquals("能力 ソ", game.getFirstMove().getProperty("C"));
+    assertEquals("予想図表", game.getFirstMove().getNextNode().getProperty("C"));
+    assertTrue(game.isSameGame(Sgf.createFromPath(path, "Shift_JIS")));
+  }
+
+  @Test
+  public void testShiftJisBeforeCharset() {
+    // the ] of PB[表] looks escaped to the bytes before CA is known
+    Path path = Paths.get("src/test/resources/charsets/shift_jis_before_ca.sgf");
+    Game game = Sgf.createFromMappedPath(path);
+
+    assertEquals("表", game.getProperty("PB"));
+    assertEquals("張栩", game.getProperty("PW"));
+    assertEquals("SJIS", game.getProperty("CA"));
+    assertEquals("能力 ソ", game.getFirstMove().getProperty("C"));
+    assertTrue(game.isSameGame(Sgf.createFromPath(path, "Shift_JIS")));
+  }
+
+  @Test
+  public void testEucKr() {
+    Path path = Paths.get("src/test/resources/charsets/euc-kr.sgf");
+    Game game = Sgf.createFromMappedPath(path);
+
+    assertEquals("이세돌", game.getProperty("PB"));
+    assertEquals("알파고", game.getProperty("PW"));
+    assertEquals("흑 불계승", game.getProperty("C"));
+    assertEquals("좋은 수", game.getFirstMove().getProperty("C"));
+    assertTrue(game.isSameGame(Sgf.createFromPath(path, "EUC-KR")));
+  }
+
+  @Test
+  public void testEachGameOfCollection() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write("(;GM[1]CA[EUC-KR]PB[이세돌];B[aa])".getBytes("EUC-KR"));
+    out.write("(;GM[1]PB[Tõnu]CA[ISO-8859-1];B[aa])".getBytes("ISO-8859-1"));
+    out.write("(;GM[1]PB[柯洁];B[aa])".getBytes("UTF-8"));
+
+    SgfReader reader = new SgfReader(ByteBuffer.wrap(out.toByteArray()));
+    List<String> players = Stream.generate(() -> {
+      Game game = new Game();
+      return Parser.parseGame(reader, new Parser.GameBuilder(game)) ? game.getProperty("PB") : null;
+    }).limit(3).collect(Collectors.toList());
+
+    assertEquals("이세돌", players.get(0));
+    assertEquals("Tõnu", players.get(1));
+    // no CA, back to UTF-8
+    assertEquals("柯洁", players.get(2));
+  }
+
+  @Test
+  public void testUnknownCharset() {
+    byte[] bytes = "(;GM[1]CA[NoSuchCharset]PB[柯洁];B[aa])".getBytes(Charset.forName("UTF-8"));
+    Game game = Parser.parse(new SgfReader(ByteBuffer.wrap(bytes)));
+    assertEquals("柯洁", game.getProperty("PB"));
+  }
+
+  @Test
+  public void testResources() throws Exception {
+    // these are all UTF-8 or ASCII, CA[ISO8859-1] included
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromMappedPath(path);
+      assertTrue(path.toString(), game.isSameGame(Sgf.createFromPath(path)));
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.toomasr.sgf4j.parser;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestDeepTree extends TestCase {
+
+  @Test
+  public void testLongMainLine() {
+    assertParseAndSave(longGame(100_000, 1_000), 100_000);
+  }
+
+  @Test
+  public void testNestedVariations() throws Exception {
+    // a small stack to make sure nothing recurses per nesting level
+    final Throwable[] failure = new Throwable[1];
+    Thread thread = new Thread(null, () -> {
+      try {
+        assertParseAndSave(nestedGame(3_000), 2);
+      }
+      catch (Throwable e) {
+        failure[0] = e;
+      }
+    }, "deep-tree", 256 * 1024);
+    thread.start();
+    thread.join();
+
+    if (failure[0] != null) {
+      throw new AssertionError(failure[0]);
+    }
+  }
+
+  static void assertParseAndSave(String sgf, int noMovesOnMainLine) {
+    Game game = Sgf.createFromString(sgf);
+    assertEquals(noMovesOnMainLine, game.getNoMoves());
+    assertEquals(noMovesOnMainLine, game.getLastMove().getMoveNo());
+    assertEquals(0, game.getLastMove().getVisualDepth());
+
+    Game reRead = Sgf.createFromString(game.getGeneratedSgf());
+    assertTrue(game.isSameGame(reRead));
+    assertTrue(game.getLastMove().isSameNode(reRead.getLastMove()));
+    assertTrue(game.getLastMove().equals(game.getLastMove().getPrevNode().getNextNode()));
+    assertEquals(game.getRootNode().hashCode(), game.getRootNode().hashCode());
+  }
+
+  /*
+   * A long main line with a short variation every so often.
+   */
+  static String longGame(int moves, int branchEvery) {
+    StringBuilder rtrn = new StringBuilder("(;GM[1]FF[4]SZ[19]");
+    Deque<String> variations = new ArrayDeque<>();
+    for (int i = 0; i < moves; i++) {
+      if (i > 0 && i % branchEvery == 0) {
+        // the main line continues in the first variation
+        rtrn.append('(');
+        variations.push(move(i, i + 7) + "C[variation " + i + "]" + move(i + 1, i + 8));
+      }
+      rtrn.append(move(i, i));
+    }
+    while (!variations.isEmpty()) {
+      rtrn.append(")(").append(variations.pop()).append(')');
+    }
+    rtrn.append(')');
+    return rtrn.toString();
+  }
+
+  /*
+   * Every variation has a variation of its own, each of these has to be
+   * shown a level deeper than the previous one.
+   */
+  static String nestedGame(int levels) {
+    StringBuilder rtrn = new StringBuilder("(;GM[1]FF[4]SZ[19]");
+    rtrn.append(move(0, 0));
+    for (int i = 1; i <= levels; i++) {
+      rtrn.append('(').append(move(i, i)).append(")(").append(move(i, i + 100));
+    }
+    for (int i = 1; i <= levels; i++) {
+      rtrn.append(')');
+    }
+    rtrn.append(')');
+    return rtrn.toString();
+  }
+
+  private static String move(int moveNo, int point) {
+    char x = (char) ('a' + point % 19);
+    char y = (char) ('a' + (point / 19) % 19);
+    return ";" + (moveNo % 2 == 0 ? "B" : "W") + "[" + x + y + "]";
+  }
+}
@@ -0,0 +1,13 @@
+package com.toomasr.sgf4j.parser;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestDeepTreeSlow extends TestCase {
+
+  @Test
+  public void testMillionNodes() {
+    TestDeepTree.assertParseAndSave(TestDeepTree.longGame(1_000_000, 100), 1_000_000);
+  }
+}
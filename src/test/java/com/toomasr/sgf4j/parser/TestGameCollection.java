@@ -0,0 +1,137 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestGameCollection extends TestCase {
+
+  @Test
+  public void testIterator() {
+    List<String> games = generate(5, 10);
+    Iterator<Game> ite = Sgf.createIterator(new StringReader(String.join("\n", games)));
+
+    for (String sgf : games) {
+      assertTrue(ite.hasNext());
+      Game game = ite.next();
+      assertTrue(game.isSameGame(Sgf.createFromString(sgf)));
+    }
+    assertFalse(ite.hasNext());
+  }
+
+  @Test
+  public void testEmptyTrees() {
+    Iterator<Game> ite = Sgf.createIterator(new StringReader("()\n(;GM[1]PB[Black];B[aa])"));
+
+    Game empty = ite.next();
+    assertNotNull(empty.getRootNode());
+    assertEquals(0, empty.getProperties().size());
+
+    Game game = ite.next();
+    assertEquals("Black", game.getProperty("PB"));
+    assertEquals(1, game.getNoMoves());
+    assertFalse(ite.hasNext());
+  }
+
+  @Test
+  public void testGamesAreReadLazily() {
+    List<String> games = generate(20, 200);
+    String collection = String.join("\n", games);
+    CountingReader reader = new CountingReader(new StringReader(collection));
+
+    Iterator<Game> ite = Sgf.createIterator(reader);
+    ite.next();
+    assertTrue(reader.read < collection.length() / 2);
+  }
+
+  @Test
+  public void testParallelStream() throws Exception {
+    List<String> games = generate(100, 20);
+    String collection = String.join("\n", games);
+    byte[] bytes = collection.getBytes(StandardCharsets.UTF_8);
+
+    List<String> sequential;
+    try (Stream<Game> stream = Sgf.createStreamFromInputStream(new ByteArrayInputStream(bytes))) {
+      sequential = stream.map(Game::getGeneratedSgf).collect(Collectors.toList());
+    }
+
+    Path path = Files.createTempFile("sgf4j-test-", ".sgf");
+    try {
+      Files.write(path, bytes);
+      List<String> parallel;
+      try (Stream<Game> stream = Sgf.createStreamFromPath(path)) {
+        parallel = stream.parallel().map(Game::getGeneratedSgf).collect(Collectors.toList());
+      }
+      assertEquals(sequential, parallel);
+    }
+    finally {
+      Files.delete(path);
+    }
+
+    assertEquals(games.size(), sequential.size());
+    for (int i = 0; i < games.size(); i++) {
+      assertEquals(Sgf.createFromString(games.get(i)).getGeneratedSgf(), sequential.get(i));
+    }
+  }
+
+  @Test
+  public void testUnknownCharset() throws Exception {
+    // the charset is checked before the file is opened, there is nothing
+    // left open when it is wrong
+    Path path = Files.createTempFile("sgf4j-test-", ".sgf");
+    Files.delete(path);
+    try {
+      Sgf.createStreamFromPath(path, "no-such-charset");
+      fail("the charset should not be found");
+    }
+    catch (UnsupportedCharsetException e) {
+      assertEquals("no-such-charset", e.getCharsetName());
+    }
+  }
+
+  private static List<String> generate(int noGames, int moves) {
+    SgfGenerator generator = new SgfGenerator(23);
+    List<String> rtrn = new ArrayList<>();
+    for (int i = 0; i < noGames; i++) {
+      rtrn.add(generator.game(moves + i));
+    }
+    return rtrn;
+  }
+
+  private static class CountingReader extends Reader {
+    private final Reader reader;
+    private long read = 0;
+
+    CountingReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int rtrn = reader.read(cbuf, off, len);
+      if (rtrn > 0) {
+        read += rtrn;
+      }
+      return rtrn;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
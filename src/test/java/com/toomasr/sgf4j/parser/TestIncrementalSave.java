@@ -0,0 +1,131 @@
+package com.toomasr.sgf4j.parser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.SgfWriter.Mode;
+
+import junit.framework.TestCase;
+
+public class TestIncrementalSave extends TestCase {
+  private static final String GAME = "(;GM[1]SZ[9]\n  PB[Black]PW[White]\n"
+      + ";B[aa]C[first]\n"
+      + "; W[bb]\n"
+      + "(;B[cc]  C[main] ;W[dd])\n"
+      + "(;B[ee]\n;W[ff]))";
+
+  @Test
+  public void testUnchangedGameIsCopied() {
+    Game game = Sgf.createFromString(GAME);
+    assertFalse(game.isDirty());
+    assertEquals(GAME, preserved(game));
+  }
+
+  @Test
+  public void testOnlyEditedNodeIsGenerated() {
+    Game game = Sgf.createFromString(GAME);
+    GameNode second = game.getRootNode().getNextNode().getNextNode();
+    second.addProperty("C", "added");
+
+    assertTrue(game.isDirty());
+    assertTrue(game.getRootNode().isDirty());
+    assertTrue(second.isDirty());
+    assertFalse(second.getNextNode().isDirty());
+    for (GameNode child : second.getChildren()) {
+      assertFalse(child.isDirty());
+    }
+
+    assertEquals("(;GM[1]SZ[9]\n  PB[Black]PW[White]\n"
+        + ";B[aa]C[first]\n"
+        + ";W[bb]C[added]\n"
+        + "(;B[cc]  C[main] ;W[dd])\n"
+        + "(;B[ee]\n;W[ff])\n)", preserved(game));
+  }
+
+  @Test
+  public void testGamePropertiesAndNewNodes() {
+    Game game = Sgf.createFromString(GAME);
+    game.getProperties().put("PB", "Someone");
+    GameNode last = game.getRootNode().getNextNode().getNextNode().getNextNode().getNextNode();
+    GameNode added = new GameNode(last);
+    added.addProperty("B", "gg");
+    last.addChild(added);
+
+    assertEquals("(;GM[1]SZ[9]PB[Someone]PW[White]\n"
+        + ";B[aa]C[first]\n"
+        + "; W[bb]\n"
+        + "(;B[cc]  C[main] ;W[dd]\n"
+        + ";B[gg]\n)\n"
+        + "(;B[ee]\n;W[ff])\n)", preserved(game));
+  }
+
+  @Test
+  public void testRemovedVariation() {
+    Game game = Sgf.createFromString(GAME);
+    GameNode second = game.getRootNode().getNextNode().getNextNode();
+    second.getChildren().clear();
+    assertEquals("(;GM[1]SZ[9]\n  PB[Black]PW[White]\n"
+        + ";B[aa]C[first]\n"
+        + ";W[bb]\n"
+        + ";B[cc]  C[main] ;W[dd])", preserved(game));
+  }
+
+  @Test
+  public void testRemovedVariationThroughIterator() {
+    Game game = Sgf.createFromString("(;GM[1]SZ[9];B[aa](;W[bb])(;W[cc]))");
+    GameNode first = game.getRootNode().getNextNode();
+    for (Iterator<GameNode> ite = first.getChildren().iterator(); ite.hasNext();) {
+      ite.next();
+      ite.remove();
+    }
+    assertTrue(first.isDirty());
+    assertEquals(game.getGeneratedSgf(), Sgf.createFromString(preserved(game)).getGeneratedSgf());
+    assertFalse(preserved(game).contains("W[cc]"));
+  }
+
+  @Test
+  public void testSavedGamesReadBackTheSame() throws Exception {
+    Path file = Files.createTempFile("sgf4j-incremental-", ".sgf");
+    try {
+      for (Path path : TestSgfLexer.sgfResources()) {
+        Game game = Sgf.createFromPath(path);
+        // a comment on a node half way into the main line
+        GameNode node = game.getRootNode();
+        for (int i = 0; i < game.getNoNodes() / 2; i++) {
+          node = node.getNextNode();
+        }
+        node.addProperty("C", "edited");
+
+        game.saveToFile(file);
+        Game saved = Sgf.createFromPath(file);
+        Game expected = Sgf.createFromString(game.getGeneratedSgf(Mode.PRETTY));
+        assertEquals(path.toString(), expected.getGeneratedSgf(Mode.CANONICAL), saved.getGeneratedSgf(Mode.CANONICAL));
+        assertFalse(saved.isDirty());
+      }
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testGameNotParsedFromString() {
+    Game game = Sgf.createFromString(GAME);
+    Game copy = new Game();
+    copy.setRootNode(game.getRootNode());
+    copy.getProperties().putAll(game.getProperties());
+    assertTrue(copy.isDirty());
+    assertEquals(copy.getGeneratedSgf(), preserved(copy));
+  }
+
+  private static String preserved(Game game) {
+    StringBuilder rtrn = new StringBuilder();
+    SgfWriter writer = new SgfWriter(rtrn);
+    writer.setMode(Mode.PRESERVE);
+    writer.write(game);
+    return rtrn.toString();
+  }
+}
@@ -0,0 +1,157 @@
+package com.toomasr.sgf4j.parser;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.board.StoneState;
+import com.toomasr.sgf4j.parser.board.VirtualBoard;
+
+import junit.framework.TestCase;
+
+public class TestMoveEncoding extends TestCase {
+
+  @Test
+  public void testDecodedOnParse() {
+    Game game = Sgf.createFromString("(;SZ[19];B[pd];W[dp];B[];W[tt];AB[aa])");
+    GameNode node = game.getFirstMove();
+    assertTrue(node.isBlack());
+    assertEquals(15, node.getX());
+    assertEquals(3, node.getY());
+    assertEquals(3 << 8 | 15, node.getPoint());
+
+    node = node.getNextNode();
+    assertTrue(node.isWhite());
+    assertEquals(StoneState.WHITE, node.getColorAsEnum());
+    assertEquals(3, node.getX());
+    assertEquals(15, node.getY());
+
+    node = node.getNextNode();
+    assertTrue(node.isPass());
+
+    node = node.getNextNode();
+    assertTrue(node.isPass());
+    assertEquals(19, node.getX());
+
+    node = node.getNextNode();
+    assertFalse(node.isMove());
+    assertTrue(node.isPlacementMove());
+    try {
+      node.getX();
+      fail("Not a move");
+    }
+    catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLargeBoardCoordinates() {
+    GameNode node = new GameNode(null);
+    node.addProperty("B", "zA");
+    assertEquals(25, node.getX());
+    assertEquals(26, node.getY());
+  }
+
+  @Test
+  public void testFollowsPropertyChanges() {
+    GameNode node = new GameNode(null);
+    node.addProperty("B", "aa");
+    assertTrue(node.isBlack());
+
+    node.addProperty("B", "cd");
+    assertEquals(2, node.getX());
+    assertEquals(3, node.getY());
+
+    node.getProperties().put("W", "ef");
+    assertTrue(node.isWhite());
+    assertEquals(4, node.getX());
+
+    node.getProperties().remove("W");
+    assertTrue(node.isBlack());
+    assertEquals(2, node.getX());
+
+    node.getProperties().entrySet().iterator().next().setValue("tt");
+    assertTrue(node.isPass());
+
+    node.getProperties().clear();
+    assertFalse(node.isMove());
+  }
+
+  @Test
+  public void testAccessorsDontAllocate() throws Exception {
+    Game game = Sgf.createFromString(new SgfGenerator(11).mainLine(300));
+
+    // warm up so that the measured run is not interpreted
+    long sum = 0;
+    for (int i = 0; i < 200; i++) {
+      sum += replay(game);
+    }
+
+    // what reading the counter allocates itself
+    long before = allocatedBytes();
+    long overhead = allocatedBytes() - before;
+
+    before = allocatedBytes();
+    sum += replay(game);
+    long allocated = allocatedBytes() - before - overhead;
+
+    assertTrue(sum != 0);
+    // way below a single int[] or String per move
+    assertTrue("Allocated " + allocated + " bytes", allocated < 300);
+  }
+
+  @Test
+  public void testNoAllocationPerMoveOnBoard() throws Exception {
+    Game game = Sgf.createFromString(new SgfGenerator(11).mainLine(300));
+    // a board reused for game after game
+    VirtualBoard board = new VirtualBoard(game);
+
+    long sum = 0;
+    for (int i = 0; i < 200; i++) {
+      board.startGame(game);
+      sum += replay(board, game);
+    }
+
+    long before = allocatedBytes();
+    long overhead = allocatedBytes() - before;
+
+    // reading the size of the board in startGame allocates, once a game
+    board.startGame(game);
+    before = allocatedBytes();
+    sum += replay(board, game);
+    long allocated = allocatedBytes() - before - overhead;
+
+    assertTrue(sum != 0);
+    assertTrue("Allocated " + allocated + " bytes", allocated < 300);
+  }
+
+  /*
+   * The tests run in the module of the library that doesn't read the
+   * management modules, reflection gets around that.
+   */
+  private static long allocatedBytes() throws Exception {
+    Object threads = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+    Method allocated = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+    return (Long) allocated.invoke(threads, Thread.currentThread().getId());
+  }
+
+  private static long replay(VirtualBoard board, Game game) {
+    GameNode prevMove = null;
+    for (GameNode node = game.getRootNode(); node != null; node = node.getNextNode()) {
+      board.makeMove(node, prevMove);
+      prevMove = node;
+    }
+    return board.getPositionHash();
+  }
+
+  private static long replay(Game game) {
+    long rtrn = 0;
+    for (GameNode node = game.getFirstMove(); node != null; node = node.getNextNode()) {
+      if (node.isMove() && !node.isPass()) {
+        rtrn += node.getX() * 31 + node.getY() + node.getColorAsEnum().ordinal();
+      }
+    }
+    return rtrn;
+  }
+}
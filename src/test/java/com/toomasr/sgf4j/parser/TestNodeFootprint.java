@@ -0,0 +1,118 @@
+package com.toomasr.sgf4j.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import junit.framework.TestCase;
+
+public class TestNodeFootprint extends TestCase {
+
+  @Test
+  public void testBytesPerNode() {
+    Game game = Sgf.createFromString(new SgfGenerator(7).game(2_000));
+    GameNode root = game.getRootNode();
+
+    int nodes = 0;
+    List<String> strings = new ArrayList<>();
+    LegacyNode legacyRoot = null;
+    Deque<GameNode> stack = new ArrayDeque<>();
+    Deque<LegacyNode> legacyParents = new ArrayDeque<>();
+    stack.push(root);
+    legacyParents.push(new LegacyNode(null));
+    while (!stack.isEmpty()) {
+      GameNode node = stack.pop();
+      LegacyNode legacy = new LegacyNode(legacyParents.pop());
+      legacy.properties.putAll(node.getProperties());
+      strings.addAll(legacy.properties.keySet());
+      strings.addAll(legacy.properties.values());
+      if (legacyRoot == null) {
+        legacyRoot = legacy;
+      }
+      nodes++;
+
+      for (GameNode child : node.getChildren()) {
+        stack.push(child);
+        legacyParents.push(legacy);
+      }
+      if (node.getNextNode() != null) {
+        stack.push(node.getNextNode());
+        legacyParents.push(legacy);
+      }
+    }
+
+    // the keys and values are the same String instances in both, leave
+    // them out and what is left is the cost of the nodes themselves
+    GraphLayout shared = GraphLayout.parseInstance(strings.toArray());
+    long before = GraphLayout.parseInstance(legacyRoot).subtract(shared).totalSize() / nodes;
+    long after = GraphLayout.parseInstance(root).subtract(shared).totalSize() / nodes;
+    System.out.println("Bytes per node, HashMap and TreeSet: " + before + ", arrays: " + after);
+
+    assertTrue(before + " vs " + after, after * 2 < before);
+  }
+
+  @Test
+  public void testChildrenOfLeafCanBeAdded() {
+    Game game = Sgf.createFromString("(;SZ[19];B[aa])");
+    GameNode leaf = game.getLastMove();
+    assertFalse(leaf.hasChildren());
+    assertTrue(leaf.getChildren().isEmpty());
+
+    // the set is created lazily, adding through the view still works
+    GameNode variation = new GameNode(leaf);
+    variation.addProperty("W", "bb");
+    assertTrue(leaf.getChildren().add(variation));
+    assertTrue(leaf.hasChildren());
+    assertEquals(1, leaf.getChildren().size());
+    assertTrue(leaf.getChildren().contains(variation));
+
+    assertTrue(leaf.getChildren().remove(variation));
+    assertFalse(leaf.hasChildren());
+  }
+
+  /*
+   * The fields GameNode had when each node had a HashMap for the
+   * properties and a TreeSet for the children.
+   */
+  @SuppressWarnings("unused")
+  private static class LegacyNode implements Comparable<LegacyNode> {
+    private final Set<LegacyNode> children = new TreeSet<>();
+    private final Map<String, String> properties = new HashMap<>();
+
+    private int moveNo = -1;
+    private int nodeNo = -1;
+    private int visualDepth = -1;
+
+    private LegacyNode parentNode;
+    private LegacyNode nextNode = null;
+    private LegacyNode prevNode = null;
+    private final int id = GameNode.getNextAvailableId();
+
+    LegacyNode(LegacyNode parentNode) {
+      this.parentNode = parentNode;
+      if (parentNode == null) {
+        return;
+      }
+      if (parentNode.nextNode == null) {
+        parentNode.nextNode = this;
+        prevNode = parentNode;
+      }
+      else {
+        parentNode.children.add(this);
+      }
+    }
+
+    @Override
+    public int compareTo(LegacyNode o) {
+      return Integer.compare(id, o.id);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.toomasr.sgf4j.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the single pass lexer based parser with the old regex based
+ * one on a big synthetic corpus. Run with -Pslow, the timings are printed
+ * to stdout.
+ */
+public class TestParserSpeedSlow {
+  private static final int GAMES = 2000;
+  private static final int ROUNDS = 5;
+
+  @Test
+  public void testParserIsFasterThanLegacy() {
+    SgfGenerator generator = new SgfGenerator(7);
+    List<String> corpus = new ArrayList<>();
+    long chars = 0;
+    for (int i = 0; i < GAMES; i++) {
+      String sgf = generator.game(200 + i % 100);
+      chars += sgf.length();
+      corpus.add(sgf);
+    }
+    System.out.printf("Corpus of %d games, %d MB%n", GAMES, chars / 1024 / 1024);
+
+    long legacyBest = Long.MAX_VALUE;
+    long parserBest = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (String sgf : corpus) {
+        new LegacyParser(sgf).parse();
+      }
+      legacyBest = Math.min(legacyBest, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      for (String sgf : corpus) {
+        new Parser(sgf).parse();
+      }
+      parserBest = Math.min(parserBest, System.nanoTime() - start);
+    }
+
+    System.out.printf("Legacy parser %d ms, lexer based parser %d ms, speedup %.1fx%n", legacyBest / 1000000,
+        parserBest / 1000000, (double) legacyBest / parserBest);
+    Assert.assertTrue(parserBest < legacyBest);
+  }
+}
@@ -0,0 +1,48 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestReadHeader extends TestCase {
+
+  @Test
+  public void testSameAsFullParse() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Map<String, String> header = Sgf.readHeader(path);
+      Game game = Sgf.createFromPath(path);
+      assertEquals(path.toString(), game.getProperties(), header);
+    }
+  }
+
+  @Test
+  public void testGeneratedGames() {
+    SgfGenerator generator = new SgfGenerator(17);
+    for (int i = 0; i < 20; i++) {
+      String sgf = generator.game(50 + i);
+      Map<String, String> header = Parser.parseHeader(new StringReader(sgf));
+      assertEquals(Sgf.createFromString(sgf).getProperties(), header);
+    }
+  }
+
+  @Test
+  public void testRootNodeProperties() {
+    // B and L are game properties in the root node, W is not
+    Map<String, String> header = Parser.parseHeader(new StringReader("(;GM[1]AB[aa][bb]C[Hello \\; there]B[cc]W[dd];B[ee])"));
+    assertEquals("1", header.get("GM"));
+    assertEquals("aa,bb", header.get("AB"));
+    assertEquals("Hello \\; there", header.get("C"));
+    assertEquals("cc", header.get("B"));
+    assertFalse(header.containsKey("W"));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertTrue(Parser.parseHeader(new StringReader("")).isEmpty());
+    assertTrue(Parser.parseHeader(new StringReader("()")).isEmpty());
+  }
+}
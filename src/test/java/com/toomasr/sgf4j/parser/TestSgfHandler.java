@@ -0,0 +1,173 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestSgfHandler extends TestCase {
+
+  @Test
+  public void testEvents() {
+    RecordingHandler handler = new RecordingHandler();
+    Parser.parse(new StringReader("(;GM[1];B[aa]LB[aa:A][bb:B](;W[bb])(;W[cc]))"), handler);
+
+    String expected = "startGame startNode GM=1 endNode startNode B=aa LB=aa:A][bb:B endNode"
+        + " startVariation startNode W=bb endNode endVariation"
+        + " startVariation startNode W=cc endNode endVariation endGame";
+    assertEquals(expected, String.join(" ", handler.events));
+  }
+
+  @Test
+  public void testMultipleGamesAndTruncatedInput() {
+    RecordingHandler handler = new RecordingHandler();
+    Parser.parse(new StringReader("(;GM[1])\n(;GM[1];B[aa](;W[bb]"), handler);
+
+    String expected = "startGame startNode GM=1 endNode endGame"
+        + " startGame startNode GM=1 endNode startNode B=aa endNode"
+        + " startVariation startNode W=bb endNode endVariation endGame";
+    assertEquals(expected, String.join(" ", handler.events));
+  }
+
+  @Test
+  public void testChunkBoundaries() throws Exception {
+    List<String> inputs = new ArrayList<>();
+    for (Path path : TestSgfLexer.sgfResources()) {
+      inputs.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+    SgfGenerator generator = new SgfGenerator(3);
+    inputs.add(generator.game(3000));
+
+    for (String sgf : inputs) {
+      RecordingHandler whole = new RecordingHandler();
+      Parser.parse(new StringReader(sgf), whole);
+
+      RecordingHandler oneByOne = new RecordingHandler();
+      Parser.parse(new OneCharReader(sgf), oneByOne);
+
+      assertEquals(whole.events, oneByOne.events);
+    }
+  }
+
+  @Test
+  public void testHeaderAndMainLine() {
+    SgfGenerator generator = new SgfGenerator(11);
+    StringBuilder collection = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      collection.append(generator.game(100 + i));
+    }
+
+    final List<String> players = new ArrayList<>();
+    final int[] mainLineMoves = new int[1];
+    SgfHandler handler = new SgfHandler() {
+      private int depth;
+      private int nodeNo;
+
+      public void startGame() {
+        depth = 0;
+        nodeNo = 0;
+      }
+
+      public void endGame() {
+      }
+
+      public void startVariation() {
+        depth++;
+      }
+
+      public void endVariation() {
+        depth--;
+      }
+
+      public void startNode() {
+        nodeNo++;
+      }
+
+      public void endNode() {
+      }
+
+      public void property(String key, String value) {
+        if (nodeNo == 1 && "PB".equals(key)) {
+          players.add(value);
+        }
+        // the generator puts the main line in the last variation
+        // so lets just count the moves at the top level
+        if (depth == 0 && ("B".equals(key) || "W".equals(key))) {
+          mainLineMoves[0]++;
+        }
+      }
+    };
+    byte[] bytes = collection.toString().getBytes(StandardCharsets.UTF_8);
+    Sgf.parse(new ByteArrayInputStream(bytes), handler);
+
+    assertEquals(20, players.size());
+    assertTrue(players.get(0).startsWith("Black "));
+    assertTrue(mainLineMoves[0] > 20);
+  }
+
+  private static class RecordingHandler implements SgfHandler {
+    private final List<String> events = new ArrayList<>();
+
+    public void startGame() {
+      events.add("startGame");
+    }
+
+    public void endGame() {
+      events.add("endGame");
+    }
+
+    public void startVariation() {
+      events.add("startVariation");
+    }
+
+    public void endVariation() {
+      events.add("endVariation");
+    }
+
+    public void startNode() {
+      events.add("startNode");
+    }
+
+    public void endNode() {
+      events.add("endNode");
+    }
+
+    public void property(String key, String value) {
+      events.add(key + "=" + value);
+    }
+  }
+
+  /*
+   * Hands out the input one character at a time to make sure the
+   * tokens crossing the chunk boundaries are handled.
+   */
+  private static class OneCharReader extends Reader {
+    private final String input;
+    private int pos = 0;
+
+    OneCharReader(String input) {
+      this.input = input;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+      if (pos == input.length()) {
+        return -1;
+      }
+      cbuf[off] = input.charAt(pos++);
+      return 1;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
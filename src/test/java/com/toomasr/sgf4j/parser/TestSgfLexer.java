@@ -0,0 +1,99 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestSgfLexer extends TestCase {
+
+  @Test
+  public void testTokens() {
+    SgfLexer lexer = new SgfLexer("(;GM[1]AB[aa]\n[bb];B[cc]C[a \\] b]\n(;W[dd])(;W[ee]))");
+    assertEquals(SgfLexer.Token.TREE_START, lexer.next());
+    assertEquals(SgfLexer.Token.NODE, lexer.next());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals("GM", lexer.getKey());
+    assertEquals("1", lexer.getValue());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals("AB", lexer.getKey());
+    assertEquals(2, lexer.getValueCount());
+    assertEquals("aa][bb", lexer.getValue());
+    assertEquals("aa,bb", lexer.getValue(","));
+    assertEquals(SgfLexer.Token.NODE, lexer.next());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals("B", lexer.getKey());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals("C", lexer.getKey());
+    assertEquals("a \\] b", lexer.getValue());
+    assertEquals(SgfLexer.Token.TREE_START, lexer.next());
+    assertEquals(SgfLexer.Token.NODE, lexer.next());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals("dd", lexer.getValue());
+    assertEquals(SgfLexer.Token.TREE_END, lexer.next());
+    assertEquals(SgfLexer.Token.TREE_START, lexer.next());
+    assertEquals(SgfLexer.Token.NODE, lexer.next());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals(SgfLexer.Token.TREE_END, lexer.next());
+    assertEquals(SgfLexer.Token.TREE_END, lexer.next());
+    assertEquals(SgfLexer.Token.EOF, lexer.next());
+  }
+
+  @Test
+  public void testSpecialCharsInsideValues() {
+    SgfLexer lexer = new SgfLexer("(;C[ ; ( ) ]N[x])");
+    assertEquals(SgfLexer.Token.TREE_START, lexer.next());
+    assertEquals(SgfLexer.Token.NODE, lexer.next());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals(" ; ( ) ", lexer.getValue());
+    assertEquals(SgfLexer.Token.PROPERTY, lexer.next());
+    assertEquals("N", lexer.getKey());
+    assertEquals(SgfLexer.Token.TREE_END, lexer.next());
+    assertEquals(SgfLexer.Token.EOF, lexer.next());
+  }
+
+  @Test
+  public void testSameAsLegacyParserOnResources() throws Exception {
+    for (Path path : sgfResources()) {
+      String sgf = new String(Files.readAllBytes(path), "UTF-8");
+      assertSameAsLegacy(path.toString(), sgf);
+    }
+  }
+
+  @Test
+  public void testSameAsLegacyParserOnGeneratedGames() throws Exception {
+    SgfGenerator generator = new SgfGenerator(42);
+    for (int i = 0; i < 50; i++) {
+      assertSameAsLegacy("generated game " + i, generator.game(50 + i * 5));
+    }
+  }
+
+  private void assertSameAsLegacy(String name, String sgf) {
+    Game legacy = new LegacyParser(sgf).parse();
+    legacy.postProcess();
+
+    Game game = new Parser(sgf).parse();
+    game.postProcess();
+
+    assertTrue("Games differ for " + name, legacy.isSameGame(game));
+    assertEquals(name, legacy.getProperties(), game.getProperties());
+  }
+
+  public static List<Path> sgfResources() throws IOException {
+    List<Path> rtrn = new ArrayList<>();
+    for (String dir : new String[] { "src/main/resources", "src/test/resources" }) {
+      try (Stream<Path> files = Files.list(Paths.get(dir))) {
+        rtrn.addAll(files.filter(p -> p.toString().endsWith(".sgf")).sorted().collect(Collectors.toList()));
+      }
+    }
+    return rtrn;
+  }
+}
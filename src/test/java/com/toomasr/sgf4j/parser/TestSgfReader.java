@@ -0,0 +1,102 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestSgfReader extends TestCase {
+
+  @Test
+  public void testTokens() {
+    SgfReader reader = new SgfReader("(;GM[1]AB[aa][bb];B[cc](;W[dd])(;W[ee]))");
+    assertEquals(SgfReader.Token.GAME_START, reader.next());
+    assertEquals(1, reader.getDepth());
+    assertEquals(SgfReader.Token.NODE, reader.next());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals("GM", reader.getKey());
+    assertEquals("1", reader.getValue());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals("AB", reader.getKey());
+    assertEquals("aa][bb", reader.getValue());
+    assertEquals(2, reader.getValueCount());
+    assertEquals(SgfReader.Token.NODE, reader.next());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals(SgfReader.Token.VARIATION_START, reader.next());
+    assertEquals(2, reader.getDepth());
+    assertEquals(SgfReader.Token.NODE, reader.next());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals("dd", reader.getValue());
+    assertEquals(SgfReader.Token.VARIATION_END, reader.next());
+    assertEquals(SgfReader.Token.VARIATION_START, reader.next());
+    assertEquals(SgfReader.Token.NODE, reader.next());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals(SgfReader.Token.VARIATION_END, reader.next());
+    assertEquals(SgfReader.Token.GAME_END, reader.next());
+    assertEquals(0, reader.getDepth());
+    assertEquals(SgfReader.Token.END, reader.next());
+    assertEquals(SgfReader.Token.END, reader.next());
+  }
+
+  @Test
+  public void testTruncatedInputIsClosed() {
+    SgfReader reader = new SgfReader(")(;GM[1](;B[aa]");
+    assertEquals(SgfReader.Token.GAME_START, reader.next());
+    assertEquals(SgfReader.Token.NODE, reader.next());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals(SgfReader.Token.VARIATION_START, reader.next());
+    assertEquals(SgfReader.Token.NODE, reader.next());
+    assertEquals(SgfReader.Token.PROPERTY, reader.next());
+    assertEquals(SgfReader.Token.VARIATION_END, reader.next());
+    assertEquals(SgfReader.Token.GAME_END, reader.next());
+    assertEquals(SgfReader.Token.END, reader.next());
+  }
+
+  @Test
+  public void testStopAfterRootNode() throws Exception {
+    String sgf = new SgfGenerator(5).game(5000);
+    CountingReader counting = new CountingReader(new StringReader(sgf));
+
+    Map<String, String> header = new LinkedHashMap<>();
+    try (SgfReader reader = new SgfReader(counting)) {
+      assertEquals(SgfReader.Token.GAME_START, reader.next());
+      assertEquals(SgfReader.Token.NODE, reader.next());
+      while (reader.next() == SgfReader.Token.PROPERTY) {
+        header.put(reader.getKey(), reader.getValue());
+      }
+    }
+
+    assertEquals("19", header.get("SZ"));
+    assertTrue(header.get("PB").startsWith("Black"));
+    // only the first chunk was needed
+    assertTrue(counting.read < sgf.length());
+  }
+
+  private static class CountingReader extends Reader {
+    private final Reader reader;
+    private long read = 0;
+
+    CountingReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int rtrn = reader.read(cbuf, off, len);
+      if (rtrn > 0) {
+        read += rtrn;
+      }
+      return rtrn;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
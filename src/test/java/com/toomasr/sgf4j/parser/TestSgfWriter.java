@@ -0,0 +1,115 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestSgfWriter extends TestCase {
+
+  @Test
+  public void testSameAsGeneratedSgf() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      StringWriter out = new StringWriter();
+      try (SgfWriter writer = new SgfWriter(out)) {
+        writer.write(game);
+      }
+      assertEquals(path.toString(), game.getGeneratedSgf(), out.toString());
+    }
+  }
+
+  @Test
+  public void testManyGamesToOneStream() throws Exception {
+    List<Game> games = new ArrayList<>();
+    for (Path path : TestSgfLexer.sgfResources()) {
+      games.add(Sgf.createFromPath(path));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (SgfWriter writer = new SgfWriter(bytes)) {
+      for (Game game : games) {
+        writer.write(game);
+      }
+      assertEquals(games.size(), writer.getGamesWritten());
+    }
+
+    List<Game> reRead;
+    try (Stream<Game> stream = Sgf.createStreamFromInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      reRead = stream.collect(Collectors.toList());
+    }
+    assertEquals(games.size(), reRead.size());
+    for (int i = 0; i < games.size(); i++) {
+      // a game read back from its own SGF
+      Game expected = Sgf.createFromString(games.get(i).getGeneratedSgf());
+      assertEquals(expected.getGeneratedSgf(), reRead.get(i).getGeneratedSgf());
+    }
+  }
+
+  @Test
+  public void testUnmappableCharacter() {
+    Game game = Sgf.createFromString("(;GM[1]SZ[19]PB[한국];B[aa])");
+    try (SgfWriter writer = new SgfWriter(new ByteArrayOutputStream(), "ISO-8859-1")) {
+      writer.write(game);
+      writer.flush();
+      fail("the name can't be written in ISO-8859-1");
+    }
+    catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testStreamsSmallPieces() {
+    Game game = Sgf.createFromString(TestDeepTree.longGame(100_000, 1_000));
+    Counter counter = new Counter();
+    try (SgfWriter writer = new SgfWriter(counter)) {
+      writer.write(game);
+      writer.write(game);
+    }
+    // the output is never built up in memory, only a property at a time
+    // goes to the writer
+    assertEquals(2 * game.getGeneratedSgf().length() + 1, counter.chars);
+    assertTrue("largest write " + counter.largest, counter.largest < 32);
+  }
+
+  /*
+   * Counts the characters and throws them away.
+   */
+  private static class Counter extends Writer {
+    private long chars = 0;
+    private int largest = 0;
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      count(len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+      count(len);
+    }
+
+    private void count(int len) {
+      chars += len;
+      largest = Math.max(largest, len);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
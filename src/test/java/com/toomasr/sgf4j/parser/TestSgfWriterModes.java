@@ -0,0 +1,104 @@
+package com.toomasr.sgf4j.parser;
+
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.toomasr.sgf4j.parser.SgfWriter.Mode;
+
+import junit.framework.TestCase;
+
+public class TestSgfWriterModes extends TestCase {
+
+  @Test
+  public void testModesReadBackToSameGame() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      String canonical = game.getGeneratedSgf(Mode.CANONICAL);
+      for (Mode mode : Mode.values()) {
+        if (mode == Mode.DEFAULT) {
+          continue;
+        }
+        Game reRead = Sgf.createFromString(game.getGeneratedSgf(mode));
+        assertEquals(path + " " + mode, canonical, reRead.getGeneratedSgf(Mode.CANONICAL));
+      }
+    }
+  }
+
+  @Test
+  public void testDefaultIsUnchanged() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      assertEquals(game.getGeneratedSgf(), game.getGeneratedSgf(Mode.DEFAULT));
+    }
+  }
+
+  @Test
+  public void testCanonicalIgnoresLayout() {
+    Game first = Sgf.createFromString("(;SZ[9]PB[Black]AB[aa][ab][ba]C[line \\\none\r\nand \\a two];B[cc]TR[dd][de])");
+    Game second = Sgf.createFromString("(\n;AB[ba][aa:ab]\nC[line one\nand a two]PB[Black]SZ[9]\n;TR[dd:de]B[cc]\n)");
+    assertEquals(first.getGeneratedSgf(Mode.CANONICAL), second.getGeneratedSgf(Mode.CANONICAL));
+    assertEquals("(;AB[aa][ab][ba]C[line one\nand a two]PB[Black]SZ[9];B[cc]TR[dd][de])",
+        first.getGeneratedSgf(Mode.CANONICAL));
+  }
+
+  @Test
+  public void testCanonicalKeepsNeededEscapes() {
+    Game game = Sgf.createFromString("(;SZ[9];B[aa]C[a\\]b\\\\c\\:d])");
+    assertEquals("(;SZ[9];B[aa]C[a\\]b\\\\c:d])", game.getGeneratedSgf(Mode.CANONICAL));
+
+    // the same text gives the same output however the colons are written
+    Game plain = Sgf.createFromString("(;SZ[9];B[aa]C[a:b])");
+    Game escaped = Sgf.createFromString("(;SZ[9];B[aa]C[a\\:b])");
+    assertEquals(plain.getGeneratedSgf(Mode.CANONICAL), escaped.getGeneratedSgf(Mode.CANONICAL));
+    assertEquals("(;SZ[9];B[aa]C[a:b])", escaped.getGeneratedSgf(Mode.CANONICAL));
+
+    // in composed values only the first colon separates the parts
+    game = Sgf.createFromString("(;SZ[9]AP[my\\:app:1.0];B[aa]LB[bb:x:y][cc:z])");
+    assertEquals("(;AP[my\\:app:1.0]SZ[9];B[aa]LB[bb:x\\:y][cc:z])", game.getGeneratedSgf(Mode.CANONICAL));
+    game = Sgf.createFromString("(;SZ[9]AP[my\\:app:1.0];B[aa]LB[bb:x\\:y][cc:z])");
+    assertEquals("(;AP[my\\:app:1.0]SZ[9];B[aa]LB[bb:x\\:y][cc:z])", game.getGeneratedSgf(Mode.CANONICAL));
+  }
+
+  @Test
+  public void testCompactRectangles() {
+    Game game = Sgf.createFromString("(;SZ[9]AB[aa][ba][ca][ab][bb][cb][ee]AW[gg:hh][ii];B[cc]AE[dd][de][df]SQ[aa][ab])");
+    assertEquals("(;SZ[9]AB[aa:cb][ee]AW[gg:hh][ii];B[cc]AE[dd:df]SQ[aa:ab])", game.getGeneratedSgf(Mode.COMPACT));
+  }
+
+  @Test
+  public void testCompactIsSmaller() throws Exception {
+    for (Path path : TestSgfLexer.sgfResources()) {
+      Game game = Sgf.createFromPath(path);
+      String compact = game.getGeneratedSgf(Mode.COMPACT);
+      // the default output has setup stones of the nodes as AB[aa,bb],
+      // shorter but not something other programs read
+      assertTrue(path.toString(), compact.length() <= game.getGeneratedSgf(Mode.CANONICAL).length());
+      assertTrue(path.toString(), compact.length() < game.getGeneratedSgf(Mode.PRETTY).length());
+      assertEquals(path.toString(), -1, compact.indexOf(")\n"));
+    }
+  }
+
+  @Test
+  public void testPrettyIndentsVariations() {
+    Game game = Sgf.createFromString("(;SZ[9];B[aa](;W[bb])(;W[cc];B[dd]))");
+    assertEquals("(\n"
+        + "  ;SZ[9]\n"
+        + "  ;B[aa]\n"
+        + "  (\n"
+        + "    ;W[bb]\n"
+        + "  )\n"
+        + "  (\n"
+        + "    ;W[cc]\n"
+        + "    ;B[dd]\n"
+        + "  )\n"
+        + ")\n", game.getGeneratedSgf(Mode.PRETTY));
+  }
+
+  @Test
+  public void testNotAPointList() {
+    // kept as it is when the value is not points
+    Game game = Sgf.createFromString("(;SZ[9];B[aa]TR[a])");
+    assertEquals("(;SZ[9];B[aa]TR[a])", game.getGeneratedSgf(Mode.COMPACT));
+  }
+}
@@ -0,0 +1,136 @@
+package com.toomasr.sgf4j.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestWriteToFile extends TestCase {
+  private static final String GAME = "(;GM[1]SZ[19]PB[Black];B[aa];W[bb])";
+
+  @Test
+  public void testWritesNewFile() throws Exception {
+    Path dir = Files.createTempDirectory("save");
+    try {
+      Path destination = dir.resolve("game.sgf");
+      Game game = Sgf.createFromString(GAME);
+      Sgf.writeToFile(game, destination, "UTF-8", false, true);
+      assertEquals(game.getGeneratedSgf(), new String(Files.readAllBytes(destination), "UTF-8"));
+      assertEquals(List.of(destination), files(dir));
+    }
+    finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testBackupKeepsOriginal() throws Exception {
+    Path dir = Files.createTempDirectory("save");
+    try {
+      Path destination = dir.resolve("game.sgf");
+      Files.write(destination, "original".getBytes("UTF-8"));
+      boolean posix = Files.getFileStore(dir).supportsFileAttributeView("posix");
+      Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+      if (posix) {
+        Files.setPosixFilePermissions(destination, permissions);
+      }
+
+      Game game = Sgf.createFromString(GAME);
+      Sgf.writeToFile(game, destination, "UTF-8", true);
+      assertEquals(game.getGeneratedSgf(), new String(Files.readAllBytes(destination), "UTF-8"));
+      if (posix) {
+        assertEquals(permissions, Files.getPosixFilePermissions(destination));
+      }
+
+      List<Path> files = files(dir);
+      assertEquals(2, files.size());
+      Path backup = files.get(0).equals(destination) ? files.get(1) : files.get(0);
+      assertTrue(backup.getFileName().toString().startsWith("game.sgf.orig."));
+      assertEquals("original", new String(Files.readAllBytes(backup), "UTF-8"));
+    }
+    finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testFailedWriteLeavesOriginal() throws Exception {
+    Path dir = Files.createTempDirectory("save");
+    try {
+      Path destination = dir.resolve("game.sgf");
+      Files.write(destination, "original".getBytes("UTF-8"));
+      Game game = Sgf.createFromString("(;GM[1]SZ[19]PB[한국];B[aa])");
+      try {
+        Sgf.writeToFile(game, destination, "ISO-8859-1");
+        fail("the name can't be written in ISO-8859-1");
+      }
+      catch (RuntimeException e) {
+        // expected
+      }
+      assertEquals("original", new String(Files.readAllBytes(destination), "UTF-8"));
+      // no temporary files left behind
+      assertEquals(List.of(destination), files(dir));
+    }
+    finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testWritesThroughSymbolicLink() throws Exception {
+    Path realDir = Files.createTempDirectory("save");
+    Path linkDir = Files.createTempDirectory("save-link");
+    try {
+      Path real = realDir.resolve("game.sgf");
+      Files.write(real, "original".getBytes("UTF-8"));
+      Path link = linkDir.resolve("game.sgf");
+      Path dangling = linkDir.resolve("new.sgf");
+      try {
+        Files.createSymbolicLink(link, real);
+        Files.createSymbolicLink(dangling, realDir.resolve("new.sgf"));
+      }
+      catch (UnsupportedOperationException | IOException e) {
+        // no symbolic links on this file system
+        return;
+      }
+
+      Game game = Sgf.createFromString(GAME);
+      Sgf.writeToFile(game, link, "UTF-8", true, true);
+      assertTrue(Files.isSymbolicLink(link));
+      assertEquals(game.getGeneratedSgf(), new String(Files.readAllBytes(real), "UTF-8"));
+      // the backup is next to the real file
+      assertEquals(2, files(realDir).size());
+
+      Sgf.writeToFile(game, dangling, "UTF-8", false, false);
+      assertTrue(Files.isSymbolicLink(dangling));
+      assertEquals(game.getGeneratedSgf(), new String(Files.readAllBytes(realDir.resolve("new.sgf")), "UTF-8"));
+      assertEquals(2, files(linkDir).size());
+    }
+    finally {
+      delete(linkDir);
+      delete(realDir);
+    }
+  }
+
+  private static List<Path> files(Path dir) throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  private static void delete(Path dir) throws Exception {
+    for (Path file : files(dir)) {
+      Files.delete(file);
+    }
+    Files.delete(dir);
+  }
+}